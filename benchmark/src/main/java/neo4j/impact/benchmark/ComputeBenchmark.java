@@ -0,0 +1,38 @@
+package neo4j.impact.benchmark;
+
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end : neo4j.impact.compute called through Cypher from the start node of the topology, for each engine,
+ * all its results consumed.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ComputeBenchmark extends ImpactGraphState {
+    private static final String QUERY = "CALL neo4j.impact.compute($start, 'IMPACTS>', $limits, $options) YIELD node " +
+            "RETURN count(node) AS impacted";
+
+    //'' : traversal engine
+    @Param({"", "worklist", "kernel", "scc", "stream", "severity"})
+    public String options;
+
+    //unbounded by default, but for the time : the traversal engine doesn't end on DENSE_DIAMONDS beyond a few layers
+    @Param({"1000000hops,30s,100000000results"})
+    public String limits;
+
+    @Benchmark
+    public long compute() {
+        try (Transaction tx = this.db.beginTx();
+             Result result = tx.execute(QUERY, Map.of("start", this.startNodeId, "limits", this.limits, "options", this.options))) {
+            return (long) result.next().get("impacted");
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package neo4j.impact.benchmark;
+
+import neo4j.impact.Impact;
+import neo4j.impact.ImpactEvaluator;
+import neo4j.impact.NodeStateMap;
+import neo4j.impact.RelationshipSequenceExpander;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Path;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.Evaluators;
+import org.neo4j.graphdb.traversal.TraversalDescription;
+import org.neo4j.graphdb.traversal.Uniqueness;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The traversal engine without the procedure & Cypher layers : the breadth-first traversal of the start node, expanded
+ * by RelationshipSequenceExpander and evaluated by ImpactEvaluator, as neo4j.impact.compute configures it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class EvaluatorBenchmark extends ImpactGraphState {
+    private static final List<Pair<RelationshipType, Direction>> RELS_AND_DIRS =
+            List.of(Pair.of(Impact.ImpactRelationshipTypes.IMPACTS, Direction.OUTGOING));
+
+    //the traversal engine evaluates every path : bounded in depth, so that DENSE_DIAMONDS ends
+    @Param({"10"})
+    public int maxHops;
+
+    @Benchmark
+    public int traverse(Blackhole blackhole) {
+        try (Transaction tx = this.db.beginTx()) {
+            List<Node> startNodes = List.of(startNode(tx));
+            NodeStateMap nodesMap = new NodeStateMap();
+            nodesMap.put(this.startNodeId, Impact.State.FAILED);
+            TraversalDescription td = tx.traversalDescription()
+                    .breadthFirst()
+                    .expand(new RelationshipSequenceExpander("IMPACTS>", true))
+                    .evaluator(new ImpactEvaluator(new long[]{this.startNodeId}, nodesMap, RELS_AND_DIRS, -1, -1))
+                    .evaluator(Evaluators.toDepth(this.maxHops))
+                    .uniqueness(Uniqueness.NODE_PATH);
+            for (Path path : td.traverse(startNodes)) {
+                blackhole.consume(path);
+            }
+            return nodesMap.size();
+        }
+    }
+}
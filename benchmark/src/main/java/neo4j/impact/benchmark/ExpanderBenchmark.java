@@ -0,0 +1,58 @@
+package neo4j.impact.benchmark;
+
+import neo4j.impact.Impact;
+import neo4j.impact.RelationshipSequenceExpander;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.PathExpander;
+import org.neo4j.graphdb.PathExpanders;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.traversal.BranchState;
+import org.neo4j.graphdb.traversal.Paths;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The expansion of a single node, cycling through all the nodes of the topology : RelationshipSequenceExpander
+ * ('sequence') against neo4j's own expander of one type & direction ('standard').
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ExpanderBenchmark extends ImpactGraphState {
+    @SuppressWarnings("unchecked")
+    private static final BranchState<Object> NO_STATE = BranchState.NO_STATE;
+
+    @Param({"sequence", "standard"})
+    public String expander;
+
+    private PathExpander<Object> pathExpander;
+    private Transaction tx;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void beginTransaction() {
+        this.pathExpander = this.expander.equals("sequence")
+                ? new RelationshipSequenceExpander("IMPACTS>", true)
+                : PathExpanders.forTypeAndDirection(Impact.ImpactRelationshipTypes.IMPACTS, Direction.OUTGOING);
+        this.tx = this.db.beginTx();
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeTransaction() {
+        this.tx.close();
+    }
+
+    @Benchmark
+    public void expand(Blackhole blackhole) {
+        long nodeId = this.nodeIds[this.next];
+        this.next = (this.next + 1) % this.nodeIds.length;
+        for (Relationship r : this.pathExpander.expand(Paths.singleNodePath(this.tx.getNodeById(nodeId)), NO_STATE)) {
+            blackhole.consume(r);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package neo4j.impact.benchmark;
+
+import neo4j.impact.Impact;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
+import org.neo4j.exceptions.KernelException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.kernel.api.procedure.GlobalProcedures;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.neo4j.configuration.GraphDatabaseSettings.DEFAULT_DATABASE_NAME;
+
+/**
+ * Embedded DBMS, in a temporary directory, holding a generated topology of 'size' nodes, with the impact procedures
+ * registered. Created once per trial : generating 10^7 nodes takes minutes.
+ */
+@State(Scope.Benchmark)
+public abstract class ImpactGraphState {
+    //nodes & relationships created per transaction
+    private static final int BATCH_SIZE = 50_000;
+    private static final Label NODE = Label.label("Node");
+
+    @Param({"CHAIN", "FAN_OUT_TREE", "DENSE_DIAMONDS", "IMPACT_LOOPS", "SUPERNODES", "MIXED_GROUPS"})
+    public Topology topology;
+
+    //from 10^3 to 10^7 nodes (-p size=1000,10000,100000,1000000,10000000)
+    @Param({"1000", "100000"})
+    public int size;
+
+    protected Path directory;
+    protected DatabaseManagementService dbms;
+    protected GraphDatabaseService db;
+    //ids of the nodes of the topology, by index : the start node first
+    protected long[] nodeIds;
+    protected long startNodeId;
+
+    @Setup(Level.Trial)
+    public void startDatabase() throws IOException, KernelException {
+        this.directory = Files.createTempDirectory("impact-benchmark");
+        this.dbms = new DatabaseManagementServiceBuilder(this.directory).build();
+        this.db = this.dbms.database(DEFAULT_DATABASE_NAME);
+        GlobalProcedures globalProcedures = ((GraphDatabaseAPI) this.db).getDependencyResolver().resolveDependency(GlobalProcedures.class);
+        globalProcedures.registerProcedure(Impact.class, true);
+        this.nodeIds = generate(this.db, this.topology, this.size);
+        this.startNodeId = this.nodeIds[0];
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDatabase() throws IOException {
+        this.dbms.shutdown();
+        try (Stream<Path> files = Files.walk(this.directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    //creates the nodes & IMPACTS relationships of the topology, returns the ids of its nodes
+    static long[] generate(GraphDatabaseService db, Topology topology, int size) {
+        long[] nodeIds = new long[size];
+        for (int from = 0; from < size; from += BATCH_SIZE) {
+            try (Transaction tx = db.beginTx()) {
+                for (int i = from; i < Math.min(size, from + BATCH_SIZE); i++) {
+                    nodeIds[i] = tx.createNode(NODE).getId();
+                }
+                tx.commit();
+            }
+        }
+        Transaction[] tx = {db.beginTx()};
+        int[] batched = {0};
+        topology.relationships(size, (from, to, propagation, group) -> {
+            Relationship r = tx[0].getNodeById(nodeIds[from]).createRelationshipTo(tx[0].getNodeById(nodeIds[to]), Impact.ImpactRelationshipTypes.IMPACTS);
+            if (propagation != null) { r.setProperty("impact_propagation", propagation); }
+            if (group != null) { r.setProperty("impact_group", group); }
+            if (++batched[0] % BATCH_SIZE == 0) {
+                tx[0].commit();
+                tx[0].close();
+                tx[0] = db.beginTx();
+            }
+        });
+        tx[0].commit();
+        tx[0].close();
+        return nodeIds;
+    }
+
+    //the start node, in the given transaction
+    protected Node startNode(Transaction tx) {
+        return tx.getNodeById(this.startNodeId);
+    }
+}
@@ -0,0 +1,92 @@
+package neo4j.impact.benchmark;
+
+import java.util.Random;
+
+/**
+ * Synthetic impact graphs of a given number of nodes : node 0 is the failed start node, the impact relationships are
+ * described by the indexes of the nodes they link. Generation is deterministic (fixed seed), so that runs compare.
+ */
+public enum Topology {
+    //0 -> 1 -> 2 -> ... : one path, as deep as the graph
+    CHAIN {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            for (int i = 1; i < size; i++) { out.accept(i - 1, i, null, null); }
+        }
+    },
+    //tree where each node impacts FAN_OUT children : one path per node, shallow
+    FAN_OUT_TREE {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            for (int i = 1; i < size; i++) { out.accept((i - 1) / FAN_OUT, i, null, null); }
+        }
+    },
+    //layers of WIDTH nodes, each impacting every node of the next layer : the number of paths grows exponentially with the depth
+    DENSE_DIAMONDS {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            for (int i = 1; i <= WIDTH && i < size; i++) { out.accept(0, i, null, null); }
+            for (int i = 1 + WIDTH; i < size; i++) {
+                int layerStart = 1 + ((i - 1) / WIDTH - 1) * WIDTH;
+                for (int j = layerStart; j < layerStart + WIDTH; j++) { out.accept(j, i, null, null); }
+            }
+        }
+    },
+    //chain where every LOOP_LENGTH-th node impacts back the first node of its segment : as many impact cycles
+    IMPACT_LOOPS {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            for (int i = 1; i < size; i++) {
+                out.accept(i - 1, i, null, null);
+                if (i % LOOP_LENGTH == 0) { out.accept(i, i - LOOP_LENGTH + 1, null, null); }
+            }
+        }
+    },
+    //the start node impacts a hub impacting all the other nodes, which all impact a second hub
+    SUPERNODES {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            if (size < 3) return;
+            out.accept(0, 1, null, null);
+            for (int i = 3; i < size; i++) {
+                out.accept(1, i, null, null);
+                out.accept(i, 2, null, null);
+            }
+        }
+    },
+    //layers of WIDTH nodes, each node impacted by PARENTS random nodes of the previous layer, through PROTECTION groups
+    //(redundant pairs) or LEAST_SEVERE & MOST_SEVERE relationships
+    MIXED_GROUPS {
+        @Override
+        void relationships(int size, RelationshipConsumer out) {
+            Random random = new Random(SEED);
+            for (int i = 1; i <= WIDTH && i < size; i++) { out.accept(0, i, null, null); }
+            for (int i = 1 + WIDTH; i < size; i++) {
+                int layerStart = 1 + ((i - 1) / WIDTH - 1) * WIDTH;
+                int group = random.nextInt(3);
+                for (int p = 0; p < PARENTS; p++) {
+                    int parent = layerStart + random.nextInt(WIDTH);
+                    switch (group) {
+                        case 0: out.accept(parent, i, "PROTECTION", p / 2); break;
+                        case 1: out.accept(parent, i, "LEAST_SEVERE", null); break;
+                        default: out.accept(parent, i, null, null);
+                    }
+                }
+            }
+        }
+    };
+
+    static final int FAN_OUT = 10;
+    static final int WIDTH = 10;
+    static final int LOOP_LENGTH = 10;
+    static final int PARENTS = 4;
+    static final long SEED = 42L;
+
+    //impact relationship from the node of index 'from' to the node of index 'to', with its impact_propagation and
+    //impact_group properties (none if null)
+    interface RelationshipConsumer {
+        void accept(int from, int to, String propagation, Object group);
+    }
+
+    abstract void relationships(int size, RelationshipConsumer out);
+}
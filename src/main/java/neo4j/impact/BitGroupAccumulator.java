@@ -0,0 +1,165 @@
+package neo4j.impact;
+
+import java.util.Arrays;
+
+/**
+ * Bit-parallel version of GroupAccumulator : evaluates up to 64 independent scenarios at once.
+ * A state is held as 2 bit-planes (hi, lo) of 64 lanes, one lane per scenario, with the 2-bit state value
+ * of each lane split across both words (WORKING=00, AT_RISK=01, DEGRADED=10, FAILED=11).
+ * Max, min and the "exactly one WORKING" count needed by the propagation rules are computed with bitwise operations.
+ */
+public class BitGroupAccumulator {
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private long[] maxHi, maxLo, minHi, minLo;
+    //lanes with at least one, and with at least two WORKING impacting nodes
+    private long[] workingOne, workingTwo;
+    private int[] used;
+    private int usedCount;
+    private int mask;
+
+    //result of the last call to result()
+    private long resultHi, resultLo;
+
+    public BitGroupAccumulator() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.maxHi = new long[capacity];
+        this.maxLo = new long[capacity];
+        this.minHi = new long[capacity];
+        this.minLo = new long[capacity];
+        this.workingOne = new long[capacity];
+        this.workingTwo = new long[capacity];
+        this.used = new int[capacity];
+        this.usedCount = 0;
+        this.mask = capacity - 1;
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.usedCount; i++) {
+            this.keys[this.used[i]] = EMPTY;
+        }
+        this.usedCount = 0;
+    }
+
+    //adds the states (in each lane) of one impacting node to the group
+    public void add(int groupKey, long hi, long lo) {
+        if (this.usedCount * 2 >= this.keys.length) { grow(); }
+        int index = slot(groupKey);
+        long working = ~(hi | lo);
+        if (this.keys[index] == EMPTY) {
+            this.keys[index] = groupKey;
+            this.maxHi[index] = hi;
+            this.maxLo[index] = lo;
+            this.minHi[index] = hi;
+            this.minLo[index] = lo;
+            this.workingOne[index] = working;
+            this.workingTwo[index] = 0L;
+            this.used[this.usedCount++] = index;
+        } else {
+            long gt = greaterThan(hi, lo, this.maxHi[index], this.maxLo[index]);
+            this.maxHi[index] = (hi & gt) | (this.maxHi[index] & ~gt);
+            this.maxLo[index] = (lo & gt) | (this.maxLo[index] & ~gt);
+            long lt = greaterThan(this.minHi[index], this.minLo[index], hi, lo);
+            this.minHi[index] = (hi & lt) | (this.minHi[index] & ~lt);
+            this.minLo[index] = (lo & lt) | (this.minLo[index] & ~lt);
+            this.workingTwo[index] |= this.workingOne[index] & working;
+            this.workingOne[index] |= working;
+        }
+    }
+
+    //lanes where (aHi, aLo) > (bHi, bLo)
+    static long greaterThan(long aHi, long aLo, long bHi, long bLo) {
+        return (aHi & ~bHi) | (~(aHi ^ bHi) & aLo & ~bLo);
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        int index = (h ^ (h >>> 16)) & this.mask;
+        while (this.keys[index] != EMPTY && this.keys[index] != key) {
+            index = (index + 1) & this.mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = this.keys, oldUsed = this.used;
+        long[] oldMaxHi = this.maxHi, oldMaxLo = this.maxLo, oldMinHi = this.minHi, oldMinLo = this.minLo;
+        long[] oldOne = this.workingOne, oldTwo = this.workingTwo;
+        int oldUsedCount = this.usedCount;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldUsedCount; i++) {
+            int old = oldUsed[i];
+            int index = slot(oldKeys[old]);
+            this.keys[index] = oldKeys[old];
+            this.maxHi[index] = oldMaxHi[old];
+            this.maxLo[index] = oldMaxLo[old];
+            this.minHi[index] = oldMinHi[old];
+            this.minLo[index] = oldMinLo[old];
+            this.workingOne[index] = oldOne[old];
+            this.workingTwo[index] = oldTwo[old];
+            this.used[this.usedCount++] = index;
+        }
+    }
+
+    //computes the worst of all group states, in each lane. Read it with resultHi() & resultLo()
+    public void result() {
+        long worstHi = 0L, worstLo = 0L;
+        for (int i = 0; i < this.usedCount; i++) {
+            int index = this.used[i];
+            long hi, lo;
+            switch (GroupAccumulator.ruleOf(this.keys[index])) {
+                case MOST_SEVERE:
+                    hi = this.maxHi[index];
+                    lo = this.maxLo[index];
+                    break;
+                case LEAST_SEVERE:
+                    hi = this.minHi[index];
+                    lo = this.minLo[index];
+                    break;
+                case PROTECTION:
+                    //AT_RISK where exactly one impacting node is WORKING, least severe state elsewhere
+                    long exactlyOne = this.workingOne[index] & ~this.workingTwo[index];
+                    hi = this.minHi[index] & ~exactlyOne;
+                    lo = (this.minLo[index] & ~exactlyOne) | exactlyOne;
+                    break;
+                case DEGRADATION:
+                    //most severe, capped to DEGRADED
+                    hi = this.maxHi[index];
+                    lo = this.maxLo[index] & ~this.maxHi[index];
+                    break;
+                case RISK_PROPAGATION:
+                    //most severe, capped to AT_RISK
+                    hi = 0L;
+                    lo = this.maxHi[index] | this.maxLo[index];
+                    break;
+                default:
+                    hi = 0L;
+                    lo = 0L;
+            }
+            long gt = greaterThan(hi, lo, worstHi, worstLo);
+            worstHi = (hi & gt) | (worstHi & ~gt);
+            worstLo = (lo & gt) | (worstLo & ~gt);
+        }
+        this.resultHi = worstHi;
+        this.resultLo = worstLo;
+    }
+
+    public long resultHi() {
+        return this.resultHi;
+    }
+
+    public long resultLo() {
+        return this.resultLo;
+    }
+
+    //state of one lane of a (hi, lo) pair
+    static Impact.State laneState(long hi, long lo, int lane) {
+        return Impact.State.of((int) (((hi >>> lane) & 1L) << 1 | ((lo >>> lane) & 1L)));
+    }
+}
@@ -0,0 +1,191 @@
+package neo4j.impact;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * StateStore safe for concurrent use, for the parallel propagation engine.
+ * One byte per node id, in lazily allocated pages, updated with compare-and-set. Besides the state, each byte holds
+ * the 'discovered' and 'queued' flags of the node, so that the frontier can be deduplicated without locking.
+ */
+public class ConcurrentStateStore implements StateStore {
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final VarHandle BYTES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    //byte layout : state value + 1 in the low bits (0 : not reached), then the flags
+    private static final int STATE_MASK = 0x7;
+    private static final int DISCOVERED = 0x8;
+    private static final int QUEUED = 0x10;
+
+    private volatile AtomicReferenceArray<byte[]> pages = new AtomicReferenceArray<>(16);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final AtomicInteger pageCount = new AtomicInteger();
+
+    private byte[] page(long nodeId, boolean create) {
+        int pageIndex = (int) (nodeId >>> PAGE_SHIFT);
+        AtomicReferenceArray<byte[]> directory = this.pages;
+        byte[] page = (pageIndex < directory.length()) ? directory.get(pageIndex) : null;
+        if (page == null && create) page = createPage(pageIndex);
+        return page;
+    }
+
+    //pages are created & the directory grown under the same lock : a page is never created in a directory that is being
+    //copied, and once created, it is the page of its index in every later directory
+    private synchronized byte[] createPage(int pageIndex) {
+        AtomicReferenceArray<byte[]> directory = this.pages;
+        if (pageIndex >= directory.length()) {
+            int length = directory.length();
+            while (length <= pageIndex) { length <<= 1; }
+            AtomicReferenceArray<byte[]> grown = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < directory.length(); i++) { grown.set(i, directory.get(i)); }
+            this.pages = grown;
+            directory = grown;
+        }
+        byte[] page = directory.get(pageIndex);
+        if (page == null) {
+            page = new byte[PAGE_SIZE];
+            directory.set(pageIndex, page);
+            this.pageCount.incrementAndGet();
+        }
+        return page;
+    }
+
+    private int flags(long nodeId) {
+        byte[] page = page(nodeId, false);
+        return (page == null) ? 0 : (byte) BYTES.getVolatile(page, (int) (nodeId & PAGE_MASK));
+    }
+
+    @Override
+    public Impact.State get(long nodeId) {
+        int stateBits = flags(nodeId) & STATE_MASK;
+        return (stateBits == 0) ? null : Impact.State.of(stateBits - 1);
+    }
+
+    @Override
+    public boolean contains(long nodeId) {
+        return (flags(nodeId) & STATE_MASK) != 0;
+    }
+
+    @Override
+    public void put(long nodeId, Impact.State state) {
+        update(nodeId, state, false);
+    }
+
+    //sets the state of the node if it is worse than its current state. Returns true if the state changed
+    public boolean worsen(long nodeId, Impact.State state) {
+        return update(nodeId, state, true);
+    }
+
+    private boolean update(long nodeId, Impact.State state, boolean onlyWorse) {
+        byte[] page = page(nodeId, true);
+        int index = (int) (nodeId & PAGE_MASK);
+        while (true) {
+            byte current = (byte) BYTES.getVolatile(page, index);
+            int stateBits = current & STATE_MASK;
+            if (onlyWorse && stateBits != 0 && stateBits - 1 >= state.getStateValue()) return false;
+            byte updated = (byte) ((current & ~STATE_MASK) | (state.getStateValue() + 1));
+            if (BYTES.compareAndSet(page, index, current, updated)) {
+                if (stateBits == 0) this.size.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    //sets a flag, returns true if this call set it
+    private boolean setFlag(long nodeId, int flag) {
+        byte[] page = page(nodeId, true);
+        int index = (int) (nodeId & PAGE_MASK);
+        while (true) {
+            byte current = (byte) BYTES.getVolatile(page, index);
+            if ((current & flag) != 0) return false;
+            if (BYTES.compareAndSet(page, index, current, (byte) (current | flag))) return true;
+        }
+    }
+
+    private void clearFlag(long nodeId, int flag) {
+        byte[] page = page(nodeId, true);
+        int index = (int) (nodeId & PAGE_MASK);
+        while (true) {
+            byte current = (byte) BYTES.getVolatile(page, index);
+            if ((current & flag) == 0) return;
+            if (BYTES.compareAndSet(page, index, current, (byte) (current & ~flag))) return;
+        }
+    }
+
+    //marks the node as discovered (within the hop limit). Returns true for the first caller only
+    public boolean discover(long nodeId) {
+        return setFlag(nodeId, DISCOVERED);
+    }
+
+    public boolean isDiscovered(long nodeId) {
+        return (flags(nodeId) & DISCOVERED) != 0;
+    }
+
+    //marks the node as queued in the next frontier. Returns true for the first caller only
+    public boolean enqueue(long nodeId) {
+        return setFlag(nodeId, QUEUED);
+    }
+
+    public void dequeue(long nodeId) {
+        clearFlag(nodeId, QUEUED);
+    }
+
+    //reserves a result slot for a node about to be reached for the first time : false if the result limit is reached
+    public boolean reserve(long resultLimit) {
+        while (true) {
+            int current = this.reserved.get();
+            if (resultLimit > 0 && current >= resultLimit) return false;
+            if (this.reserved.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    @Override
+    public int size() {
+        return this.size.get();
+    }
+
+    @Override
+    public long memoryUsage() {
+        return this.pageCount.get() * (long) PAGE_SIZE + this.pages.length() * (long) Long.BYTES;
+    }
+
+    //cursor over a quiescent store (no concurrent updates)
+    @Override
+    public Cursor cursor() {
+        AtomicReferenceArray<byte[]> directory = this.pages;
+        return new Cursor() {
+            int pageIndex = 0;
+            int index = -1;
+            byte[] page = directory.get(0);
+
+            @Override
+            public boolean next() {
+                while (pageIndex < directory.length()) {
+                    if (page != null) {
+                        while (++index < PAGE_SIZE) {
+                            if ((page[index] & STATE_MASK) != 0) return true;
+                        }
+                    }
+                    if (++pageIndex < directory.length()) page = directory.get(pageIndex);
+                    index = -1;
+                }
+                return false;
+            }
+
+            @Override
+            public long nodeId() {
+                return ((long) pageIndex << PAGE_SHIFT) | index;
+            }
+
+            @Override
+            public Impact.State state() {
+                return Impact.State.of((page[index] & STATE_MASK) - 1);
+            }
+        };
+    }
+}
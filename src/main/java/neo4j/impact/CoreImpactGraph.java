@@ -0,0 +1,107 @@
+package neo4j.impact;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.internal.helpers.collection.Pair;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * ImpactGraph reading through the core API (Node & Relationship proxies)
+ */
+public class CoreImpactGraph implements ImpactGraph {
+    private final Transaction tx;
+    private final List<Pair<RelationshipType, Direction>> relsAndDirs;
+    private final GroupDictionary groupIds;
+    //per pattern : group key declared by its type, or NO_KEY
+    private final int[] declaredKeys;
+    private final Cursor cursor = new Cursor();
+
+    public CoreImpactGraph(Transaction tx, List<Pair<RelationshipType, Direction>> relsAndDirs, GroupDictionary groupIds) {
+        this.tx = tx;
+        this.relsAndDirs = relsAndDirs;
+        this.groupIds = groupIds;
+        this.declaredKeys = declaredKeys(relsAndDirs, groupIds);
+    }
+
+    //group key declared by the type of each pattern (RuledRelationshipType), NO_KEY if read from the properties
+    static int[] declaredKeys(List<Pair<RelationshipType, Direction>> relsAndDirs, GroupDictionary groupIds) {
+        int[] keys = new int[relsAndDirs.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = RuledRelationshipType.groupKey(relsAndDirs.get(i).first(), groupIds);
+        }
+        return keys;
+    }
+
+    @Override
+    public RelationshipCursor impacted(long nodeId) {
+        this.cursor.init(this.tx.getNodeById(nodeId), false);
+        return this.cursor;
+    }
+
+    @Override
+    public RelationshipCursor impacting(long nodeId) {
+        this.cursor.init(this.tx.getNodeById(nodeId), true);
+        return this.cursor;
+    }
+
+    @Override
+    public GroupDictionary groupIds() {
+        return this.groupIds;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    //group of the relation, based on impact_propagation and impact_group properties
+    //if no impact_group specified : they're all together in a default group (per propagation rule)
+    static int groupKey(Relationship r, GroupDictionary groupIds) {
+        Impact.PropagationRule propagationRule = Impact.PropagationRule.validate((String) r.getProperty("impact_propagation", null));
+        return GroupAccumulator.key(propagationRule, groupIds.idOf(r.getProperty("impact_group", null)));
+    }
+
+    private class Cursor implements RelationshipCursor {
+        Node node;
+        boolean incoming;
+        int pattern;
+        Iterator<Relationship> relationships;
+        Relationship current;
+
+        void init(Node node, boolean incoming) {
+            this.node = node;
+            this.incoming = incoming;
+            this.pattern = -1;
+            this.relationships = Collections.emptyIterator();
+        }
+
+        @Override
+        public boolean next() {
+            while (!this.relationships.hasNext()) {
+                if (++this.pattern >= relsAndDirs.size()) return false;
+                Pair<RelationshipType, Direction> relAndDir = relsAndDirs.get(this.pattern);
+                Direction direction = this.incoming ? relAndDir.other().reverse() : relAndDir.other();
+                this.relationships = this.node.getRelationships(direction, relAndDir.first()).iterator();
+            }
+            this.current = this.relationships.next();
+            return true;
+        }
+
+        @Override
+        public long otherNodeId() {
+            return this.current.getOtherNodeId(this.node.getId());
+        }
+
+        @Override
+        public int groupKey() {
+            int key = declaredKeys[this.pattern];
+            return key != RuledRelationshipType.NO_KEY ? key : CoreImpactGraph.groupKey(this.current, groupIds);
+        }
+
+        @Override
+        public boolean readsProperties() {
+            return declaredKeys[this.pattern] == RuledRelationshipType.NO_KEY;
+        }
+    }
+}
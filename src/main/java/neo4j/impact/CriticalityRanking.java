@@ -0,0 +1,173 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Blast radius of every node of the impact graph : how many nodes would end up FAILED, DEGRADED or AT_RISK if that node
+ * alone failed (itself included, as in the results of neo4j.impact.compute).
+ * Without a hop limit, results are shared where the propagation rules guarantee they're the same :
+ * - nodes that make each other fail (a cycle of MOST_SEVERE relationships) all have the same blast radius,
+ * - a node outside of any cycle whose only impacted node it makes fail (MOST_SEVERE) has that node's blast radius,
+ * plus itself. Those are resolved in reverse topological order of the strongly connected components, once the others
+ * are computed : by batches of 64 bit-parallel scenarios (ScenarioPropagator), spread over a pool of workers.
+ */
+public class CriticalityRanking {
+    CsrImpactGraph graph;
+    long maxLevel;
+    long timeoutMs;
+    int threads;
+    long startTime;
+
+    //per node index
+    int[] failedCounts;
+    int[] degradedCounts;
+    int[] atRiskCounts;
+    boolean[] computed;
+
+    public CriticalityRanking(CsrImpactGraph graph, long maxLevel, long timeout, int threads) {
+        this.graph = graph ;
+        this.maxLevel = maxLevel ;
+        this.timeoutMs = timeout * 1000 ;
+        this.threads = Math.max(1, threads) ;
+        this.startTime = System.currentTimeMillis();
+        int nodeCount = graph.nodeCount();
+        this.failedCounts = new int[nodeCount];
+        this.degradedCounts = new int[nodeCount];
+        this.atRiskCounts = new int[nodeCount];
+        this.computed = new boolean[nodeCount];
+    }
+
+    public void compute() throws InterruptedException, ExecutionException {
+        int nodeCount = this.graph.nodeCount();
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(this.graph, key -> true);
+        //node whose blast radius is reused, -1 if it needs its own propagation
+        int[] shared = new int[nodeCount];
+        boolean[] chained = new boolean[nodeCount];
+        Arrays.fill(shared, -1);
+        //with a hop limit, the blast radius depends on the distance to the failed node : nothing can be shared
+        if (this.maxLevel < 0) {
+            StronglyConnectedComponents failingTogether = StronglyConnectedComponents.of(this.graph,
+                    key -> GroupAccumulator.ruleOf(key) == Impact.PropagationRule.MOST_SEVERE);
+            for (int c = 0; c < failingTogether.count(); c++) {
+                int representative = failingTogether.members[failingTogether.offsets[c]];
+                for (int m = failingTogether.offsets[c] + 1; m < failingTogether.offsets[c + 1]; m++) {
+                    shared[failingTogether.members[m]] = representative;
+                }
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                if (shared[node] >= 0 || components.size(components.componentOf(node)) > 1) continue;
+                int impacted = singleFailingImpactedNode(node);
+                if (impacted >= 0) {
+                    shared[node] = impacted;
+                    chained[node] = true;
+                }
+            }
+        }
+
+        IntArrayList batch = new IntArrayList();
+        for (int node = 0; node < nodeCount; node++) {
+            if (shared[node] < 0) batch.add(node);
+        }
+        computeBatches(batch.toArray());
+
+        //the components a node impacts come first : the shared results are always resolved before they're reused
+        for (int c = 0; c < components.count(); c++) {
+            for (int m = components.offsets[c]; m < components.offsets[c + 1]; m++) {
+                int node = components.members[m];
+                int source = shared[node];
+                if (source < 0 || !this.computed[source]) continue;
+                this.failedCounts[node] = this.failedCounts[source] + (chained[node] ? 1 : 0);
+                this.degradedCounts[node] = this.degradedCounts[source];
+                this.atRiskCounts[node] = this.atRiskCounts[source];
+                this.computed[node] = true;
+            }
+        }
+    }
+
+    //the only node impacted by 'node', if at least one of their relationships makes it fail; -1 otherwise
+    private int singleFailingImpactedNode(int node) {
+        int impacted = -1;
+        boolean failing = false;
+        for (int r = this.graph.impactedOffsets[node]; r < this.graph.impactedOffsets[node + 1]; r++) {
+            int other = this.graph.impactedNodes[r];
+            if (other == node || (impacted >= 0 && other != impacted)) return -1;
+            impacted = other;
+            failing |= GroupAccumulator.ruleOf(this.graph.impactedKeys[r]) == Impact.PropagationRule.MOST_SEVERE;
+        }
+        return failing ? impacted : -1;
+    }
+
+    //one scenario per node, 64 per sweep. Batches not started (or not finished) within the time limit have no result
+    private void computeBatches(int[] nodes) throws InterruptedException, ExecutionException {
+        int batchCount = (nodes.length + ScenarioPropagator.MAX_SCENARIOS - 1) / ScenarioPropagator.MAX_SCENARIOS;
+        if (batchCount == 0) return;
+        AtomicInteger nextBatch = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(this.threads, batchCount); w++) {
+                CsrImpactGraph view = this.graph.view();
+                workers.add(pool.submit(() -> {
+                    int batch;
+                    while ((batch = nextBatch.getAndIncrement()) < batchCount && !timedOut()) {
+                        int offset = batch * ScenarioPropagator.MAX_SCENARIOS;
+                        computeBatch(view, Arrays.copyOfRange(nodes, offset, Math.min(offset + ScenarioPropagator.MAX_SCENARIOS, nodes.length)));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) { worker.get(); }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void computeBatch(CsrImpactGraph view, int[] nodes) {
+        long[][] startSets = new long[nodes.length][];
+        for (int lane = 0; lane < nodes.length; lane++) { startSets[lane] = new long[]{this.graph.nodeId(nodes[lane])}; }
+        ScenarioPropagator propagator = new ScenarioPropagator(view, this.maxLevel, -1, this.timeoutMs / 1000);
+        propagator.propagate(startSets);
+        if (!propagator.isComplete()) return;
+
+        int[][] counts = new int[nodes.length][Impact.State.values().length];
+        for (int index = 0; index < propagator.nodeCount(); index++) {
+            for (long lanes = propagator.resultLanes(index); lanes != 0; lanes &= lanes - 1) {
+                int lane = Long.numberOfTrailingZeros(lanes);
+                counts[lane][propagator.state(index, lane).getStateValue()]++;
+            }
+        }
+        for (int lane = 0; lane < nodes.length; lane++) {
+            this.failedCounts[nodes[lane]] = counts[lane][Impact.State.FAILED.getStateValue()];
+            this.degradedCounts[nodes[lane]] = counts[lane][Impact.State.DEGRADED.getStateValue()];
+            this.atRiskCounts[nodes[lane]] = counts[lane][Impact.State.AT_RISK.getStateValue()];
+            this.computed[nodes[lane]] = true;
+        }
+    }
+
+    private boolean timedOut() {
+        return this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs);
+    }
+
+    public boolean isComputed(int index) {
+        return this.computed[index];
+    }
+
+    public int failedCount(int index) {
+        return this.failedCounts[index];
+    }
+
+    public int degradedCount(int index) {
+        return this.degradedCounts[index];
+    }
+
+    public int atRiskCount(int index) {
+        return this.atRiskCounts[index];
+    }
+}
@@ -0,0 +1,203 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.*;
+import org.neo4j.kernel.api.KernelTransaction;
+
+import java.util.List;
+
+/**
+ * In-memory snapshot of the impact relationships, in compressed sparse row arrays : nodes are renumbered densely,
+ * and the impacted & impacting relationships of each node are contiguous ranges of neighbour indexes & group keys.
+ * Loaded with one relationship type scan per pattern of the relationship filter, then read-only : views share its
+ * arrays with their own cursor, so that several workers can read it concurrently.
+ */
+public class CsrImpactGraph implements ImpactGraph {
+    //dense index <-> node id
+    final long[] nodeIds;
+    final LongIntHashMap indexes;
+    //relationships of node i : [offsets[i], offsets[i+1]) in the neighbour & key arrays
+    final int[] impactedOffsets;
+    final int[] impactedNodes;
+    final int[] impactedKeys;
+    final int[] impactingOffsets;
+    final int[] impactingNodes;
+    final int[] impactingKeys;
+    final GroupDictionary groupIds;
+    private final Cursor cursor = new Cursor();
+
+    private CsrImpactGraph(long[] nodeIds, LongIntHashMap indexes,
+                           int[] impactedOffsets, int[] impactedNodes, int[] impactedKeys,
+                           int[] impactingOffsets, int[] impactingNodes, int[] impactingKeys, GroupDictionary groupIds) {
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+        this.impactedOffsets = impactedOffsets;
+        this.impactedNodes = impactedNodes;
+        this.impactedKeys = impactedKeys;
+        this.impactingOffsets = impactingOffsets;
+        this.impactingNodes = impactingNodes;
+        this.impactingKeys = impactingKeys;
+        this.groupIds = groupIds;
+    }
+
+    public static CsrImpactGraph load(KernelTransaction ktx, List<Pair<RelationshipType, Direction>> relsAndDirs, GroupDictionary groupIds) {
+        Read read = ktx.dataRead();
+        TokenRead tokenRead = ktx.tokenRead();
+        int propagationKey = tokenRead.propertyKey("impact_propagation");
+        int groupKey = tokenRead.propertyKey("impact_group");
+
+        LongIntHashMap indexes = new LongIntHashMap();
+        LongArrayList nodeIds = new LongArrayList();
+        //one entry per impact relationship, from the impacting node to the impacted node
+        IntArrayList sources = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        IntArrayList keys = new IntArrayList();
+        try (RelationshipScanCursor relationships = ktx.cursors().allocateRelationshipScanCursor(ktx.pageCursorTracer());
+             PropertyCursor properties = ktx.cursors().allocatePropertyCursor(ktx.pageCursorTracer(), ktx.memoryTracker())) {
+            for (Pair<RelationshipType, Direction> relAndDir : relsAndDirs) {
+                int type = tokenRead.relationshipType(relAndDir.first().name());
+                //a type that doesn't exist in the database has no relationships to load
+                if (type == TokenRead.NO_TOKEN) continue;
+                boolean outgoing = relAndDir.other() != Direction.INCOMING;
+                int declaredKey = RuledRelationshipType.groupKey(relAndDir.first(), groupIds);
+                read.relationshipTypeScan(type, relationships);
+                while (relationships.next()) {
+                    int start = index(relationships.sourceNodeReference(), indexes, nodeIds);
+                    int end = index(relationships.targetNodeReference(), indexes, nodeIds);
+                    sources.add(outgoing ? start : end);
+                    targets.add(outgoing ? end : start);
+                    keys.add(declaredKey != RuledRelationshipType.NO_KEY ? declaredKey
+                            : KernelImpactGraph.readGroupKey(relationships, properties, propagationKey, groupKey, groupIds));
+                }
+            }
+        }
+
+        int nodeCount = nodeIds.size();
+        int[] impactedOffsets = offsets(sources, nodeCount);
+        int[] impactingOffsets = offsets(targets, nodeCount);
+        int[] impactedNodes = new int[sources.size()];
+        int[] impactedKeys = new int[sources.size()];
+        int[] impactingNodes = new int[sources.size()];
+        int[] impactingKeys = new int[sources.size()];
+        int[] impactedPositions = impactedOffsets.clone();
+        int[] impactingPositions = impactingOffsets.clone();
+        for (int r = 0; r < sources.size(); r++) {
+            int source = sources.get(r), target = targets.get(r);
+            int impacted = impactedPositions[source]++;
+            impactedNodes[impacted] = target;
+            impactedKeys[impacted] = keys.get(r);
+            int impacting = impactingPositions[target]++;
+            impactingNodes[impacting] = source;
+            impactingKeys[impacting] = keys.get(r);
+        }
+        return new CsrImpactGraph(nodeIds.toArray(), indexes, impactedOffsets, impactedNodes, impactedKeys,
+                impactingOffsets, impactingNodes, impactingKeys, groupIds);
+    }
+
+    private static int index(long nodeId, LongIntHashMap indexes, LongArrayList nodeIds) {
+        int index = indexes.getIfAbsent(nodeId, -1);
+        if (index < 0) {
+            index = nodeIds.size();
+            nodeIds.add(nodeId);
+            indexes.put(nodeId, index);
+        }
+        return index;
+    }
+
+    //start offset of each node's range, from the number of relationships per node
+    static int[] offsets(IntArrayList nodes, int nodeCount) {
+        int[] offsets = new int[nodeCount + 1];
+        for (int r = 0; r < nodes.size(); r++) { offsets[nodes.get(r) + 1]++; }
+        for (int i = 0; i < nodeCount; i++) { offsets[i + 1] += offsets[i]; }
+        return offsets;
+    }
+
+    //a graph sharing the same arrays, with its own cursor
+    public CsrImpactGraph view() {
+        return new CsrImpactGraph(this.nodeIds, this.indexes, this.impactedOffsets, this.impactedNodes, this.impactedKeys,
+                this.impactingOffsets, this.impactingNodes, this.impactingKeys, this.groupIds);
+    }
+
+    public int nodeCount() {
+        return this.nodeIds.length;
+    }
+
+    public int relationshipCount() {
+        return this.impactedNodes.length;
+    }
+
+    //approximate heap usage, in bytes
+    public long memoryUsage() {
+        return estimateMemory(nodeCount(), relationshipCount());
+    }
+
+    //node ids, node id -> index map (at most 1/4 full : 4 longs & 4 ints per node), offsets, neighbours & group keys
+    //on both sides of each relationship
+    public static long estimateMemory(long nodeCount, long relationshipCount) {
+        return nodeCount * (Long.BYTES + 4 * (Long.BYTES + Integer.BYTES) + 2 * Integer.BYTES) + relationshipCount * 4 * Integer.BYTES;
+    }
+
+    public long nodeId(int index) {
+        return this.nodeIds[index];
+    }
+
+    //dense index of the node, -1 if it has no impact relationship
+    public int indexOf(long nodeId) {
+        return this.indexes.getIfAbsent(nodeId, -1);
+    }
+
+    @Override
+    public RelationshipCursor impacted(long nodeId) {
+        this.cursor.init(indexOf(nodeId), this.impactedOffsets, this.impactedNodes, this.impactedKeys);
+        return this.cursor;
+    }
+
+    @Override
+    public RelationshipCursor impacting(long nodeId) {
+        this.cursor.init(indexOf(nodeId), this.impactingOffsets, this.impactingNodes, this.impactingKeys);
+        return this.cursor;
+    }
+
+    @Override
+    public GroupDictionary groupIds() {
+        return this.groupIds;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private class Cursor implements RelationshipCursor {
+        int[] nodes;
+        int[] keys;
+        int position;
+        int end;
+
+        void init(int index, int[] offsets, int[] nodes, int[] keys) {
+            this.nodes = nodes;
+            this.keys = keys;
+            this.position = index < 0 ? 0 : offsets[index] - 1;
+            this.end = index < 0 ? 0 : offsets[index + 1];
+        }
+
+        @Override
+        public boolean next() {
+            return ++this.position < this.end;
+        }
+
+        @Override
+        public long otherNodeId() {
+            return nodeIds[this.nodes[this.position]];
+        }
+
+        @Override
+        public int groupKey() {
+            return this.keys[this.position];
+        }
+    }
+}
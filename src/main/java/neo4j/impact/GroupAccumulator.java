@@ -0,0 +1,187 @@
+package neo4j.impact;
+
+import java.util.Arrays;
+
+/**
+ * Scratch structure computing the state of one impacted node in a single pass over its incoming impact relationships.
+ * Keeps, per (propagation rule, impact group), the most and least severe incoming states and the number of WORKING
+ * impacting nodes, which is all the propagation rules need.
+ * Meant to be reset and reused for every evaluated node : no allocation once it has grown to the largest group count.
+ */
+public class GroupAccumulator {
+    private static final int EMPTY = -1;
+    private static final int RULES = Impact.PropagationRule.values().length;
+
+    private int[] keys;
+    private byte[] max;
+    private byte[] min;
+    //an impacting node in the most & least severe state, -1 if not given
+    private long[] maxNodes;
+    private long[] minNodes;
+    private int[] working;
+    //slots in use, in insertion order, so that reset & result don't scan the whole table
+    private int[] used;
+    private int usedCount;
+    private int mask;
+
+    public GroupAccumulator() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.max = new byte[capacity];
+        this.min = new byte[capacity];
+        this.maxNodes = new long[capacity];
+        this.minNodes = new long[capacity];
+        this.working = new int[capacity];
+        this.used = new int[capacity];
+        this.usedCount = 0;
+        this.mask = capacity - 1;
+    }
+
+    public void reset() {
+        for (int i = 0; i < this.usedCount; i++) {
+            this.keys[this.used[i]] = EMPTY;
+        }
+        this.usedCount = 0;
+    }
+
+    public void add(Impact.PropagationRule rule, int groupId, Impact.State state) {
+        add(key(rule, groupId), state);
+    }
+
+    public void add(int groupKey, Impact.State state) {
+        add(groupKey, state.getStateValue(), state == Impact.State.WORKING ? 1 : 0, -1);
+    }
+
+    //also keeps the impacting node, as the cause of the group state
+    public void add(int groupKey, Impact.State state, long nodeId) {
+        add(groupKey, state.getStateValue(), state == Impact.State.WORKING ? 1 : 0, nodeId);
+    }
+
+    //packs a (propagation rule, impact group) pair into a single int
+    static int key(Impact.PropagationRule rule, int groupId) {
+        return groupId * RULES + rule.ordinal();
+    }
+    static Impact.PropagationRule ruleOf(int key) {
+        return Impact.PropagationRule.of(key % RULES);
+    }
+    static int groupIdOf(int key) {
+        return key / RULES;
+    }
+
+    private void add(int key, int stateValue, int workingCount, long nodeId) {
+        if (this.usedCount * 2 >= this.keys.length) { grow(); }
+        int index = slot(key);
+        if (this.keys[index] == EMPTY) {
+            this.keys[index] = key;
+            this.max[index] = (byte) stateValue;
+            this.min[index] = (byte) stateValue;
+            this.maxNodes[index] = nodeId;
+            this.minNodes[index] = nodeId;
+            this.working[index] = workingCount;
+            this.used[this.usedCount++] = index;
+        } else {
+            if (stateValue > this.max[index]) {
+                this.max[index] = (byte) stateValue;
+                this.maxNodes[index] = nodeId;
+            }
+            if (stateValue < this.min[index]) {
+                this.min[index] = (byte) stateValue;
+                this.minNodes[index] = nodeId;
+            }
+            this.working[index] += workingCount;
+        }
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        int index = (h ^ (h >>> 16)) & this.mask;
+        while (this.keys[index] != EMPTY && this.keys[index] != key) {
+            index = (index + 1) & this.mask;
+        }
+        return index;
+    }
+
+    private void grow() {
+        int[] oldKeys = this.keys;
+        byte[] oldMax = this.max, oldMin = this.min;
+        long[] oldMaxNodes = this.maxNodes, oldMinNodes = this.minNodes;
+        int[] oldWorking = this.working, oldUsed = this.used;
+        int oldUsedCount = this.usedCount;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldUsedCount; i++) {
+            int index = slot(oldKeys[oldUsed[i]]);
+            this.keys[index] = oldKeys[oldUsed[i]];
+            this.max[index] = oldMax[oldUsed[i]];
+            this.min[index] = oldMin[oldUsed[i]];
+            this.maxNodes[index] = oldMaxNodes[oldUsed[i]];
+            this.minNodes[index] = oldMinNodes[oldUsed[i]];
+            this.working[index] = oldWorking[oldUsed[i]];
+            this.used[this.usedCount++] = index;
+        }
+    }
+
+    //the worst of all group states
+    public Impact.State result() {
+        Impact.State worstState = Impact.State.WORKING;
+        for (int i = 0; i < this.usedCount; i++) {
+            int index = this.used[i];
+            Impact.PropagationRule rule = ruleOf(this.keys[index]);
+            Impact.State groupState = groupState(rule, Impact.State.of(this.max[index]), Impact.State.of(this.min[index]), this.working[index]);
+            if (groupState.getStateValue() > worstState.getStateValue()) worstState = groupState;
+        }
+        return worstState;
+    }
+
+    //slot of the group whose state is the result, -1 if the result is WORKING
+    private int decidingSlot() {
+        int deciding = -1;
+        Impact.State worstState = Impact.State.WORKING;
+        for (int i = 0; i < this.usedCount; i++) {
+            int index = this.used[i];
+            Impact.State groupState = groupState(ruleOf(this.keys[index]), Impact.State.of(this.max[index]), Impact.State.of(this.min[index]), this.working[index]);
+            if (groupState.getStateValue() > worstState.getStateValue()) {
+                worstState = groupState;
+                deciding = index;
+            }
+        }
+        return deciding;
+    }
+
+    //key of the group that decided the result, -1 if the result is WORKING
+    public int decidingKey() {
+        int slot = decidingSlot();
+        return (slot < 0) ? -1 : this.keys[slot];
+    }
+
+    //the impacting node that decided the result (as given to add), -1 if the result is WORKING :
+    //the least severe node of the groups whose state is their least severe state, the most severe node otherwise
+    public long decidingNode() {
+        int slot = decidingSlot();
+        if (slot < 0) return -1;
+        Impact.PropagationRule rule = ruleOf(this.keys[slot]);
+        boolean least = rule == Impact.PropagationRule.LEAST_SEVERE || (rule == Impact.PropagationRule.PROTECTION && this.working[slot] != 1);
+        return least ? this.minNodes[slot] : this.maxNodes[slot];
+    }
+
+    //state of a group of impacting nodes, given the propagation rule of the group
+    static Impact.State groupState(Impact.PropagationRule rule, Impact.State maxState, Impact.State minState, int numWorking) {
+        switch (rule) {
+            case MOST_SEVERE:
+                return maxState;
+            case LEAST_SEVERE:
+                return minState;
+            case PROTECTION:
+                return (numWorking == 1) ? Impact.State.AT_RISK : minState;
+            case DEGRADATION:
+                return (maxState.getStateValue() > Impact.State.DEGRADED.getStateValue() ) ? Impact.State.DEGRADED : maxState ;
+            case RISK_PROPAGATION:
+                return (maxState.getStateValue() > Impact.State.AT_RISK.getStateValue() ) ? Impact.State.AT_RISK : maxState ;
+            default:
+                return Impact.State.WORKING;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Running aggregates of the incoming impact states of each impacted node : per (propagation rule, impact group),
+ * the number of impacting nodes in each state.
+ * A node's counters are built by a single scan of its incoming impact relationships, then kept up to date as
+ * its impacting nodes change state, so that re-evaluating a node costs O(groups) instead of O(degree).
+ */
+public class GroupCounters {
+    private static final int STATES = Impact.State.values().length;
+    //per node : [groupCount, (groupKey, count per state) * groupCount]
+    private static final int STRIDE = 1 + STATES;
+
+    //approximate heap usage of a node's entry, besides its counters : hash table slots & array header
+    private static final int NODE_BYTES = 32;
+
+    private final LongObjectHashMap<int[]> countersByNode = new LongObjectHashMap<>();
+    //total length of the counter arrays
+    private long counterLength;
+
+    public boolean isInitialized(long nodeId) {
+        return this.countersByNode.containsKey(nodeId);
+    }
+
+    public void initialize(long nodeId) {
+        this.countersByNode.put(nodeId, new int[1 + 2 * STRIDE]);
+        this.counterLength += 1 + 2 * STRIDE;
+    }
+
+    //counts one more impacting node in the given state
+    public void add(long nodeId, int groupKey, Impact.State state) {
+        int[] counters = this.countersByNode.get(nodeId);
+        int offset = offsetOf(counters, groupKey);
+        if (offset < 0) {
+            int groupCount = counters[0];
+            if (1 + (groupCount + 1) * STRIDE > counters.length) {
+                int[] grown = Arrays.copyOf(counters, 1 + groupCount * 2 * STRIDE);
+                this.counterLength += grown.length - counters.length;
+                counters = grown;
+                this.countersByNode.put(nodeId, counters);
+            }
+            offset = 1 + groupCount * STRIDE;
+            counters[offset] = groupKey;
+            counters[0] = groupCount + 1;
+        }
+        counters[offset + 1 + state.getStateValue()]++;
+    }
+
+    //an impacting node changed state : moves it from one counter to the other, if the node is tracked
+    public void update(long nodeId, int groupKey, Impact.State from, Impact.State to) {
+        int[] counters = this.countersByNode.get(nodeId);
+        if (counters == null) return;
+        int offset = offsetOf(counters, groupKey);
+        if (offset < 0) return;
+        counters[offset + 1 + from.getStateValue()]--;
+        counters[offset + 1 + to.getStateValue()]++;
+    }
+
+    private static int offsetOf(int[] counters, int groupKey) {
+        for (int g = 0, offset = 1; g < counters[0]; g++, offset += STRIDE) {
+            if (counters[offset] == groupKey) return offset;
+        }
+        return -1;
+    }
+
+    //the worst of all group states of the node
+    public Impact.State state(long nodeId) {
+        int[] counters = this.countersByNode.get(nodeId);
+        Impact.State worstState = Impact.State.WORKING;
+        for (int g = 0, offset = 1; g < counters[0]; g++, offset += STRIDE) {
+            int min = -1, max = -1;
+            for (int s = 0; s < STATES; s++) {
+                if (counters[offset + 1 + s] > 0) {
+                    if (min < 0) min = s;
+                    max = s;
+                }
+            }
+            if (max < 0) continue;
+            Impact.State groupState = GroupAccumulator.groupState(GroupAccumulator.ruleOf(counters[offset]),
+                    Impact.State.of(max), Impact.State.of(min), counters[offset + 1 + Impact.State.WORKING.getStateValue()]);
+            if (groupState.getStateValue() > worstState.getStateValue()) worstState = groupState;
+        }
+        return worstState;
+    }
+
+    //number of nodes tracked
+    public int size() {
+        return this.countersByNode.size();
+    }
+
+    //approximate heap usage, in bytes
+    public long memoryUsage() {
+        return this.countersByNode.size() * (long) NODE_BYTES + this.counterLength * Integer.BYTES;
+    }
+}
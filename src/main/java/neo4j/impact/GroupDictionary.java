@@ -0,0 +1,49 @@
+package neo4j.impact;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Assigns a dense int id to each distinct impact_group property value met during a call.
+ * Values are grouped by their string form (as in '1' and 1 being the same group), the absent group being id 0.
+ */
+public class GroupDictionary {
+    public static final int NO_GROUP = 0;
+
+    //raw property values seen so far : avoids building the string form more than once per distinct value
+    private final HashMap<Object, Integer> idsByValue = new HashMap<>();
+    private final HashMap<String, Integer> idsByName = new HashMap<>();
+    //by id - 1
+    private final ArrayList<String> names = new ArrayList<>();
+
+    public int idOf(Object groupValue) {
+        if (groupValue == null) return NO_GROUP;
+        Integer id = this.idsByValue.get(groupValue);
+        if (id == null) {
+            id = idOf(groupValue.toString());
+            this.idsByValue.put(groupValue, id);
+        }
+        return id;
+    }
+
+    public int idOf(String groupName) {
+        if (groupName == null || groupName.isEmpty()) return NO_GROUP;
+        Integer id = this.idsByName.get(groupName);
+        if (id == null) {
+            id = this.idsByName.size() + 1;
+            this.idsByName.put(groupName, id);
+            this.names.add(groupName);
+        }
+        return id;
+    }
+
+    //the group of the id, null for NO_GROUP
+    public String nameOf(int id) {
+        return (id == NO_GROUP) ? null : this.names.get(id - 1);
+    }
+
+    //number of ids in use, including NO_GROUP
+    public int size() {
+        return this.idsByName.size() + 1;
+    }
+}
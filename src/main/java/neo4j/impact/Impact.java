@@ -3,12 +3,22 @@ package neo4j.impact;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.*;
 import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 import apoc.path.PathExplorer;
+import org.eclipse.collections.impl.list.mutable.primitive.ByteArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 
 import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.neo4j.graphdb.Node;
 import static org.neo4j.graphdb.Direction.*;
 
@@ -18,6 +28,7 @@ public class Impact  {
     public enum State  {
         WORKING(0), AT_RISK(1), DEGRADED(2), FAILED(3);
 
+        private static final State[] BY_VALUE = values();
         private final int value;
         State(int value) {
             this.value = value;
@@ -28,6 +39,9 @@ public class Impact  {
         public int compare(State that) {
             return Integer.compare(this.value, that.value);
         }
+        public static State of(int value) {
+            return BY_VALUE[value];
+        }
     }
     public enum ImpactRelationshipTypes implements RelationshipType
     {
@@ -40,12 +54,24 @@ public class Impact  {
         RISK_PROPAGATION,
         LEAST_SEVERE,
         PROTECTION;
+
+        private static final PropagationRule[] BY_ORDINAL = values();
+        private static final Map<String, PropagationRule> BY_NAME = new HashMap<>();
+        static {
+            for (PropagationRule rule : BY_ORDINAL) { BY_NAME.put(rule.name(), rule); }
+        }
+
+        public static PropagationRule of(int ordinal) {
+            return BY_ORDINAL[ordinal];
+        }
+        //null if unknown
+        public static PropagationRule parse(String s) {
+            return s == null ? null : BY_NAME.get(s);
+        }
         public static PropagationRule validate(String s)
         {
-            for(PropagationRule v:values())
-                if (v.name().equals(s))
-                    return v;
-            return PropagationRule.MOST_SEVERE; //defaults to MOST_SEVERE
+            PropagationRule rule = parse(s);
+            return rule == null ? PropagationRule.MOST_SEVERE : rule; //defaults to MOST_SEVERE
         }
     }
 
@@ -59,52 +85,430 @@ public class Impact  {
     public Log log;
 
     @Procedure(value = "neo4j.impact.compute")
-    @Description("neo4j.impact.compute(start <id>|Node|list, 'TYPE_OUT>|<TYPE_IN', limits)\n"+
+    @Description("neo4j.impact.compute(start <id>|Node|list|map, 'TYPE_OUT>|<TYPE_IN', limits)\n"+
             "Computes impacts from the start node(s), following the given impact relationships, within the specified limits.\n"+
-            "'start' : <id>|Node|list of Node|list of <id> \n"+
+            "'start' : <id>|Node|list of Node|list of <id>, FAILED, "+
+            "or {label, property, states, state} : the nodes of the label, read from the label index, with the state mapped by 'states' "+
+            "from the value of their 'property' (ex : {label:'Alarmed', property:'severity', states:{critical:'FAILED', major:'DEGRADED', minor:'AT_RISK'}}). "+
+            "Without 'states', the values are state names ; without 'property', the nodes are FAILED, or 'state'. "+
+            "A start node that isn't FAILED can still get worse. \n"+
             "'relationshipFilter' : [<]RELATIONSHIP_TYPE1[>]|[<]RELATIONSHIP_TYPE2[>]|...\n"+
             "RELATIONSHIP_TYPES must be directional : INCOMING (<) or OUTGOING (>), "+
-            "with OUTGOING assumed if direction is not specified. Defaults to 'IMPACTS>'. \n"+
+            "with OUTGOING assumed if direction is not specified. Defaults to 'IMPACTS>'. "+
+            "A type can declare the propagation rule (& group) of all its relationships, whose properties are then not read : '<RUNS_ON:PROTECTION[:group]'. \n"+
             "'limits' : <hopLimit>hops,<timeout>s,<resultLimit>results\n"+
             "Allows limiting any of the following : "+
             "hop-depth of the traversals (ex: '5hops'), execution time (ex : '10s') or number of results (ex: '1000results'), "+
             "or any combination of them. Defaults to '10hops,60s,1000results'. \n" +
-            "Returns the impacted nodes and their state.")
+            "A number of threads (ex: '8threads') runs a parallel propagation, whose workers only read committed data : " +
+            "in a transaction with changes, the single-threaded worklist engine runs instead. " +
+            "A memory limit (ex: '512MB') stops the propagation once the estimated memory of its states, frontier & counters exceeds it, " +
+            "returning the results computed so far (with a warning in the logs). \n" +
+            "'options' : comma-separated keywords. 'worklist' selects the fixpoint propagation engine instead of the default path traversal, " +
+            "'scc' solves the strongly connected components of the impact graph in topological order (single-threaded), " +
+            "'kernel' makes them read the graph through kernel cursors, 'projection:<name>' makes them read an in-memory projection " +
+            "(created with neo4j.impact.projection.create) instead of the database, ignoring 'relationshipFilter'. " +
+            "'stream' runs the scc engine lazily : once the reachable subgraph is discovered, each node is returned as soon as its state is final. " +
+            "'severity' makes the worklist engine (single-threaded) evaluate first the nodes that can get the most severe state, "+
+            "so that the results kept under a result or time limit are the most severe ones. " +
+            "'cache' returns the results of a previous call with the same start nodes, relationship filter, limits & options, " +
+            "as long as no commit changed the relationships of its types or their impact properties. " +
+            "'explain' records the root cause of each impacted node (single-threaded, not cached). \n" +
+            "Returns the impacted nodes and their state. With 'explain', also the impacting node that decided the state (cause), "+
+            "and the propagation rule & impact group of its relationship. "+
+            "stoppedBy : the limits that stopped the propagation ('time', 'results', 'memory'), null if the results are complete.")
     public Stream<ImpactResult> compute(@Name("start") Object start,
                                          @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
-                                         @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString
+                                         @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                         @Name(value="options", defaultValue = "")  String optionsString
+            ) throws Exception {
+        Impacts impacts = impacts("neo4j.impact.compute", start, pathFilter, limitsString, optionsString, new ImpactProfile(false));
+        return resultStream(impacts.cursor, impacts.size, impacts.causes, impacts::stoppedBy).onClose(impacts::close);
+    }
+
+    @Procedure(value = "neo4j.impact.explain")
+    @Description("neo4j.impact.explain(start <id>|Node|list, nodes <id>|Node|list, 'TYPE_OUT>|<TYPE_IN', limits, options)\n"+
+            "Computes impacts as neo4j.impact.compute with the 'explain' option, and returns the causal chain of each of the 'nodes' : "+
+            "the node, the impacting node that decided its state, the one that decided the state of that node... up to a start node. \n"+
+            "Returns each node, its state, the chain of nodes (from the node to a start node), and the propagation rule & impact group "+
+            "that decided the state of each node of the chain (null for the start node). A node that isn't impacted is WORKING, alone in its chain.")
+    public Stream<ExplanationResult> explain(@Name("start") Object start,
+                                             @Name("nodes") Object nodes,
+                                             @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                             @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                             @Name(value="options", defaultValue = "")  String optionsString
+            ) throws Exception {
+        String explainOptions = (optionsString == null || optionsString.trim().isEmpty()) ? "explain" : optionsString + ",explain";
+        Impacts impacts = impacts("neo4j.impact.explain", start, pathFilter, limitsString, explainOptions, new ImpactProfile(false));
+        StateStore states = new NodeStateMap();
+        try {
+            while (impacts.cursor.next()) { states.put(impacts.cursor.nodeId(), impacts.cursor.state()); }
+        } finally {
+            impacts.close();
+        }
+        return this.startToNodes(nodes).stream().map(node -> {
+            long[] chain = impacts.causes.chain(node.getId());
+            List<Node> chainNodes = new ArrayList<>();
+            List<String> rules = new ArrayList<>();
+            List<String> groups = new ArrayList<>();
+            for (long nodeId : chain) {
+                PropagationRule rule = impacts.causes.ruleOf(nodeId);
+                chainNodes.add(tx.getNodeById(nodeId));
+                rules.add((rule == null) ? null : rule.name());
+                groups.add(impacts.causes.groupOf(nodeId));
+            }
+            return new ExplanationResult(node, states.getOrDefault(node.getId(), State.WORKING), chainNodes, rules, groups);
+        });
+    }
+
+    @Procedure(value = "neo4j.impact.summary")
+    @Description("neo4j.impact.summary(start <id>|Node|list, 'TYPE_OUT>|<TYPE_IN', limits, options, groupBy)\n"+
+            "Computes impacts as neo4j.impact.compute, but only returns the number of impacted nodes per state, and per group. \n"+
+            "'groupBy' : 'label' (default) counts the nodes per label (a node once for each of its labels), "+
+            "the name of a property counts them per value of that property, '' counts them per state only. \n" +
+            "Nodes without a label, or without the property, are counted in a null group. \n" +
+            "Returns the group (label name or property value), the state & the number of nodes.")
+    public Stream<SummaryResult> summary(@Name("start") Object start,
+                                         @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                         @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                         @Name(value="options", defaultValue = "")  String optionsString,
+                                         @Name(value="groupBy", defaultValue = "label")  String groupBy
+            ) throws Exception {
+        Impacts impacts = impacts("neo4j.impact.summary", start, pathFilter, limitsString, optionsString, new ImpactProfile(false));
+        try (ImpactSummary summary = new ImpactSummary(((InternalTransaction) tx).kernelTransaction(), groupBy)) {
+            summary.addAll(impacts.cursor);
+            return summary.results().stream();
+        } finally {
+            impacts.close();
+        }
+    }
+
+    @Procedure(value = "neo4j.impact.profile")
+    @Description("neo4j.impact.profile(start <id>|Node|list, 'TYPE_OUT>|<TYPE_IN', limits, options)\n"+
+            "Computes impacts as neo4j.impact.compute, without returning them : returns the execution profile of the computation. \n"+
+            "Returns the engine, the number of results, the node evaluations (evaluations, distinct nodes evaluated, highest number of "+
+            "evaluations of a node), the relationships & relationship properties read, the paths expanded (traversal engine), "+
+            "the pruning events (failedPrunes : already FAILED nodes, timeoutPrunes, resultLimitPrunes, memoryLimitPrunes), "+
+            "the time spent parsing the parameters, propagating & streaming the results, and the peak estimated memory in bytes.")
+    public Stream<ProfileResult> profile(@Name("start") Object start,
+                                         @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                         @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                         @Name(value="options", defaultValue = "")  String optionsString
+            ) throws Exception {
+        ImpactProfile profile = new ImpactProfile(true);
+        Impacts impacts = impacts("neo4j.impact.profile", start, pathFilter, limitsString, optionsString, profile);
+        try {
+            //results are read, but no Node is returned
+            while (impacts.cursor.next()) { }
+        } finally {
+            impacts.close();
+        }
+        return Stream.of(new ProfileResult(profile));
+    }
+
+    @Procedure(value = "neo4j.impact.computeAndWrite", mode = Mode.WRITE)
+    @Description("neo4j.impact.computeAndWrite(start <id>|Node|list, 'TYPE_OUT>|<TYPE_IN', limits, options, property, batchSize, concurrency)\n"+
+            "Computes impacts as neo4j.impact.compute, then writes the state of the impacted nodes to the 'property' (default 'impact_state') "+
+            "and removes it from the nodes not impacted anymore (states of a previous run), without returning the nodes. \n"+
+            "The writes are committed in batches of 'batchSize' nodes (default 10000), each in its own transaction, "+
+            "by 'concurrency' workers (default 4) : a failed batch fails the call, but the batches already committed stay committed. "+
+            "Nodes whose property already has the state are not written. "+
+            "The stale nodes are found among the nodes written by the previous call with the same property ; the first call since "+
+            "the database started (or after a failed call) scans all the nodes of the database instead, reading their properties. \n"+
+            "Returns the number of impacted nodes, of nodes written, unchanged & cleared, of batches, the time spent computing & writing, "+
+            "and the limits that stopped the propagation (stoppedBy, as in neo4j.impact.compute).")
+    public Stream<WriteResult> computeAndWrite(@Name("start") Object start,
+                                               @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                               @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                               @Name(value="options", defaultValue = "")  String optionsString,
+                                               @Name(value="property", defaultValue = "impact_state")  String property,
+                                               @Name(value="batchSize", defaultValue = "10000")  long batchSize,
+                                               @Name(value="concurrency", defaultValue = "4")  long concurrency
             ) throws Exception {
         long startTime = System.currentTimeMillis();
-        log.debug("neo4j.impact.compute("+ start +", "+ pathFilter +", "+ limitsString +") started at "+startTime);
+        if (property == null || property.trim().isEmpty()) {
+            throw new QueryExecutionException("parameter 'property' can't be empty", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        if (batchSize < 1 || batchSize > Integer.MAX_VALUE || concurrency < 1 || concurrency > Short.MAX_VALUE) {
+            throw new QueryExecutionException("parameters 'batchSize' & 'concurrency' must be positive", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        //the batches would wait for the locks of this transaction's changes
+        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+        if (ktx.dataRead().transactionStateHasChanges()) {
+            throw new QueryExecutionException("neo4j.impact.computeAndWrite writes in its own transactions : it can't be called in a transaction with changes",
+                    null, "Neo.ClientError.Transaction.ForbiddenDueToTransactionType");
+        }
+
+        Impacts impacts = impacts("neo4j.impact.computeAndWrite", start, pathFilter, limitsString, optionsString, new ImpactProfile(false));
+        LongArrayList nodeIds = new LongArrayList();
+        ByteArrayList states = new ByteArrayList();
+        try {
+            while (impacts.cursor.next()) {
+                nodeIds.add(impacts.cursor.nodeId());
+                states.add((byte) impacts.cursor.state().getStateValue());
+            }
+        } finally {
+            impacts.close();
+        }
+        ImpactWriter writer = new ImpactWriter((GraphDatabaseAPI) db, ((InternalTransaction) tx).securityContext(),
+                property.trim(), (int) batchSize, (int) concurrency);
+        long[] staleNodeIds = writer.staleNodes(ktx, LongHashSet.newSetWith(nodeIds.toArray()));
+        long computeMillis = System.currentTimeMillis() - startTime;
+
+        writer.write(nodeIds.toArray(), states.toArray(), staleNodeIds);
+        long writeMillis = System.currentTimeMillis() - startTime - computeMillis;
+        log.debug("neo4j.impact.computeAndWrite completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodeIds.size()
+                + " impacted nodes, "+ writer.getWrittenCount() + " written, "+ writer.getClearedCount() + " cleared in "+ writer.getBatchCount() + " batches"
+                + (writer.isFullScan() ? ", stale nodes found with a scan of all the nodes." : "."));
+        return Stream.of(new WriteResult(nodeIds.size(), writer, computeMillis, writeMillis, impacts.stoppedBy()));
+    }
 
-        //parse 'limits'
+    @Procedure(value = "neo4j.impact.metrics")
+    @Description("neo4j.impact.metrics()\n"+
+            "Returns the counters of all the impact computations since the database started (as in neo4j.impact.profile), "+
+            "also exposed over JMX as neo4j.impact:type=Metrics.")
+    public Stream<MetricResult> metrics() {
+        return ImpactMetrics.get().values().entrySet().stream().map(entry -> new MetricResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure(value = "neo4j.impact.cache.stats")
+    @Description("neo4j.impact.cache.stats()\n"+
+            "Returns the counters of the result cache of the database (calls with the 'cache' option) : entries, cached results, "+
+            "hits, misses, evictions (least recently used entries, beyond "+ ImpactCache.MAX_ENTRIES +" entries or "+ ImpactCache.MAX_RESULTS +" results) "+
+            "and invalidations (entries found stale, after a commit changed their relationship types or deleted nodes).")
+    public Stream<MetricResult> cacheStats() {
+        return ImpactCache.of((GraphDatabaseAPI) db).stats().entrySet().stream().map(entry -> new MetricResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure(value = "neo4j.impact.cache.clear")
+    @Description("neo4j.impact.cache.clear()\n"+
+            "Removes all the entries of the result cache of the database, and returns their number.")
+    public Stream<MetricResult> clearCache() {
+        return Stream.of(new MetricResult("entries", ImpactCache.of((GraphDatabaseAPI) db).clear()));
+    }
+
+    //the states computed by the engine of the options. Their cursor may still be running the propagation ('stream') :
+    //close once it's consumed, to complete the profile of the call
+    private class Impacts implements AutoCloseable {
+        final String procedure;
+        final StateStore nodesMap;
+        final StateStore.Cursor cursor;
+        final long size; //-1 if unknown
+        final ImpactProfile profile;
+        final MemoryLimit memoryLimit;
+        final ImpactCauses causes; //null without 'explain'
+        final Runnable onClose;
+
+        Impacts(String procedure, StateStore nodesMap, StateStore.Cursor cursor, long size, ImpactProfile profile,
+                MemoryLimit memoryLimit, ImpactCauses causes, Runnable onClose) {
+            this.procedure = procedure;
+            this.nodesMap = nodesMap;
+            this.cursor = cursor;
+            this.size = size;
+            this.profile = profile;
+            this.memoryLimit = memoryLimit;
+            this.causes = causes;
+            this.onClose = onClose;
+            profile.propagated();
+            //the propagation is over, unless streamed : the warning comes before the results
+            if (size >= 0) warnIfIncomplete();
+        }
+
+        Impacts(String procedure, StateStore nodesMap, ImpactProfile profile, MemoryLimit memoryLimit, ImpactCauses causes) {
+            this(procedure, nodesMap, nodesMap.cursor(), nodesMap.size(), profile, memoryLimit, causes, () -> {});
+        }
+
+        @Override
+        public void close() {
+            this.onClose.run();
+            this.profile.streamed();
+            this.profile.results = this.size >= 0 ? this.size : this.nodesMap.size();
+            this.profile.peakMemoryBytes = this.memoryLimit.getPeakBytes();
+            if (this.memoryLimit.isExceeded()) this.profile.memoryLimitPrunes = 1;
+            if (this.size < 0) warnIfIncomplete();
+            ImpactMetrics.get().record(this.profile);
+        }
+
+        //a propagation stopped by its memory limit returns the states computed so far, as with a time limit
+        private void warnIfIncomplete() {
+            if (this.memoryLimit.isExceeded()) {
+                log.warn(this.procedure +" stopped at its memory limit of "+ (this.memoryLimit.getMaxBytes() >> 20) + "MB : the results are incomplete.");
+            }
+        }
+
+        //the limits that stopped the propagation so far ('time', 'results', 'memory', comma-separated), null if none
+        String stoppedBy() {
+            List<String> limits = new ArrayList<>();
+            if (this.profile.timeoutPrunes > 0) limits.add("time");
+            if (this.profile.resultLimitPrunes.sum() > 0) limits.add("results");
+            if (this.memoryLimit.isExceeded()) limits.add("memory");
+            return limits.isEmpty() ? null : String.join(",", limits);
+        }
+    }
+
+    private Impacts impacts(String procedure, Object start, String pathFilter, String limitsString, String optionsString,
+                            ImpactProfile profile) throws Exception {
+        long startTime = System.currentTimeMillis();
+        log.debug(procedure +"("+ start +", "+ pathFilter +", "+ limitsString +", "+ optionsString +") started at "+startTime);
+
+        //parse 'limits' & 'options'
         long[] limits=parseLimits(limitsString);
+        ImpactOptions options = ImpactOptions.parse(optionsString);
+        MemoryLimit memoryLimit = new MemoryLimit(limits[4]);
 
-        //parse 'start' with startToNodes (from PathExplorer) to support Node, nodeId, list of Nodes, list of nodeIds
-        List<Node> nodes = this.startToNodes(start);
-        HashMap<Node, State> nodesMap = new HashMap<>();
-        for (Node n : nodes) { nodesMap.put(n, State.FAILED); }
+        //parse 'start' with startToNodes (from PathExplorer) to support Node, nodeId, list of Nodes, list of nodeIds,
+        //or read the start nodes & their states from a label index scan
+        StateStore nodesMap = new NodeStateMap();
+        long[] startNodes;
+        if (start instanceof Map) {
+            startNodes = ImpactSeeds.parse((Map<String, Object>) start).read(((InternalTransaction) tx).kernelTransaction(), nodesMap);
+        } else {
+            startNodes = nodeIds(this.startToNodes(start));
+            for (long n : startNodes) { nodesMap.put(n, State.FAILED); }
+        }
 
         //parse 'relationshipFilter' : create a PathExpander
         PathExpander<State> pex;
-        List<Pair<RelationshipType, Direction>> relsAndDirs;
+        List<Pair<RelationshipType, Direction>> relsAndDirs = relsAndDirs(pathFilter);
         if (pathFilter != null && !pathFilter.trim().isEmpty()) {
-            relsAndDirs = parsePathFilter(pathFilter.trim());
             pex = new RelationshipSequenceExpander(pathFilter.trim(), true); //copy of apoc CLass
         } else { //if no relationTypes specified, use default :IMPACTS
             pex = PathExpanders.forTypeAndDirection(ImpactRelationshipTypes.IMPACTS, Direction.OUTGOING);
-            relsAndDirs = new ArrayList<>();
-            relsAndDirs.add(Pair.of(ImpactRelationshipTypes.IMPACTS, Direction.OUTGOING));
+        }
+        profile.parsed();
+
+        //the results of the same call, unless the transaction has changes that the cached results can't include.
+        //The causes of the results aren't cached, nor the results of start nodes read from labels & properties, whose
+        //changes don't invalidate the cache
+        ImpactCache cache = null;
+        ImpactCache.Key cacheKey = null;
+        long[] cacheVersions = null;
+        if (options.isCached() && !options.isExplained() && !(start instanceof Map)
+                && !((InternalTransaction) tx).kernelTransaction().dataRead().transactionStateHasChanges()) {
+            cache = ImpactCache.of((GraphDatabaseAPI) db);
+            cacheKey = new ImpactCache.Key(startNodes, relsAndDirs, limits, options, ((InternalTransaction) tx).securityContext());
+            ImpactCache.Entry cached = cache.get(cacheKey);
+            if (cached != null) {
+                profile.engine = "cache";
+                log.debug(procedure +" returned "+ cached.size() + " cached impacted nodes.");
+                return new Impacts(procedure, nodesMap, cached.cursor(), cached.size(), profile, memoryLimit, null, () -> {});
+            }
+            cacheVersions = cache.versions(cacheKey);
+        }
+
+        Impacts impacts = propagate(procedure, startTime, startNodes, nodesMap, relsAndDirs, pex, limits, options, memoryLimit, profile);
+        //streamed results are only known once consumed, incomplete ones (time, result or memory limit) may differ next time
+        if (cache != null && !options.isStreaming() && profile.timeoutPrunes == 0 && profile.resultLimitPrunes.sum() == 0
+                && !memoryLimit.isExceeded()) {
+            cache.put(cacheKey, cacheVersions, impacts.nodesMap);
+        }
+        return impacts;
+    }
+
+    private Impacts propagate(String procedure, long startTime, long[] startNodes, StateStore nodesMap,
+                              List<Pair<RelationshipType, Direction>> relsAndDirs, PathExpander<State> pex,
+                              long[] limits, ImpactOptions options, MemoryLimit memoryLimit, ImpactProfile profile) throws Exception {
+        if (options.isStreaming()) {
+            profile.engine = "stream";
+            ImpactGraph graph = profile.graph(impactGraph(options, relsAndDirs, (InternalTransaction) tx));
+            SccImpactPropagator propagator = new SccImpactPropagator(graph, startNodes, nodesMap, limits[0], limits[2], limits[1]);
+            propagator.setMemoryLimit(memoryLimit);
+            propagator.setProfile(profile);
+            ImpactCauses causes = options.isExplained() ? new ImpactCauses(graph.groupIds()) : null;
+            propagator.setCauses(causes);
+            return new Impacts(procedure, nodesMap, propagator.settledNodes(), -1, profile, memoryLimit, causes, () -> {
+                graph.close();
+                log.debug(procedure +" closed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodesMap.size()+ " impacted nodes.");
+            });
+        }
+
+        if (options.getEngine() == ImpactOptions.Engine.SCC) {
+            profile.engine = "scc";
+            ImpactCauses causes = null;
+            try (ImpactGraph graph = profile.graph(impactGraph(options, relsAndDirs, (InternalTransaction) tx))) {
+                SccImpactPropagator propagator = new SccImpactPropagator(graph, startNodes, nodesMap, limits[0], limits[2], limits[1]);
+                propagator.setMemoryLimit(memoryLimit);
+                propagator.setProfile(profile);
+                causes = options.isExplained() ? new ImpactCauses(graph.groupIds()) : null;
+                propagator.setCauses(causes);
+                propagator.propagate();
+            }
+            log.debug(procedure +" completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodesMap.size()+ " impacted nodes.");
+            return new Impacts(procedure, nodesMap, profile, memoryLimit, causes);
+        }
+
+        //the parallel engine has no global evaluation order : severity-first is single-threaded, and so is explain,
+        //whose causes are recorded in the order of the state changes.
+        //Its workers read the database in their own transactions, which can't see the changes of this one : the worklist
+        //engine, single-threaded, runs instead
+        boolean parallel = limits[3] > 1 && !options.isSeverityFirst() && !options.isExplained();
+        boolean uncommitted = parallel && options.getProjection() == null
+                && ((InternalTransaction) tx).kernelTransaction().dataRead().transactionStateHasChanges();
+        if (uncommitted) {
+            log.debug(procedure +" runs single-threaded : the transaction has changes that the parallel workers can't read.");
+        }
+        if (parallel && !uncommitted) {
+            profile.engine = "parallel";
+            ConcurrentStateStore concurrentNodesMap = new ConcurrentStateStore();
+            List<InternalTransaction> workerTxs = new ArrayList<>();
+            List<ImpactGraph> graphs = new ArrayList<>();
+            try {
+                //each worker reads with its own transaction & cursors
+                for (int w = 0; w < limits[3]; w++) {
+                    //a projection is read from memory only, the workers share it
+                    if (options.getProjection() != null) {
+                        graphs.add(profile.graph(impactGraph(options, relsAndDirs, (InternalTransaction) tx)));
+                        continue;
+                    }
+                    InternalTransaction workerTx = ((GraphDatabaseAPI) db).beginTransaction(KernelTransaction.Type.EXPLICIT,
+                            ((InternalTransaction) tx).securityContext());
+                    workerTxs.add(workerTx);
+                    graphs.add(profile.graph(impactGraph(options, relsAndDirs, workerTx)));
+                }
+                ParallelImpactPropagator propagator = new ParallelImpactPropagator(graphs, startNodes, concurrentNodesMap, limits[0], limits[2], limits[1]);
+                propagator.setStartStates(nodesMap);
+                propagator.setMemoryLimit(memoryLimit);
+                propagator.setProfile(profile);
+                propagator.propagate();
+            } finally {
+                for (ImpactGraph graph : graphs) { graph.close(); }
+                for (InternalTransaction workerTx : workerTxs) { workerTx.close(); }
+            }
+            log.debug(procedure +" completed after "+ (System.currentTimeMillis() - startTime) + "ms with "+ limits[3] + " threads : " + concurrentNodesMap.size()+ " impacted nodes.");
+            return new Impacts(procedure, concurrentNodesMap, profile, memoryLimit, null);
+        }
+
+        if (options.getEngine() == ImpactOptions.Engine.WORKLIST || uncommitted) {
+            profile.engine = options.isSeverityFirst() ? "severity" : "worklist";
+            ImpactCauses causes = null;
+            try (ImpactGraph graph = profile.graph(impactGraph(options, relsAndDirs, (InternalTransaction) tx))) {
+                ImpactPropagator propagator = new ImpactPropagator(graph, startNodes, nodesMap, limits[0], limits[2], limits[1], options.isSeverityFirst());
+                propagator.setMemoryLimit(memoryLimit);
+                propagator.setProfile(profile);
+                causes = options.isExplained() ? new ImpactCauses(graph.groupIds()) : null;
+                propagator.setCauses(causes);
+                propagator.propagate();
+            }
+            log.debug(procedure +" completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodesMap.size()+ " impacted nodes.");
+            return new Impacts(procedure, nodesMap, profile, memoryLimit, causes);
         }
 
         //configure traversal
+        profile.engine = "traversal";
         TraversalDescription td = tx.traversalDescription(); //supposedly un-deprecated, due to Field riots
         td = td.breadthFirst(); //using breadthFirst to mitigate incomplete state computation when limits truncate the resultset
         td = td.expand(pex);
-        td = td.evaluator(new ImpactEvaluator(nodes, nodesMap, relsAndDirs, limits[2], limits[1]));
+        ImpactEvaluator evaluator = new ImpactEvaluator(startNodes, nodesMap, relsAndDirs, limits[2], limits[1]);
+        evaluator.setMemoryLimit(memoryLimit);
+        evaluator.setProfile(profile);
+        ImpactCauses causes = options.isExplained() ? new ImpactCauses(evaluator.groupIds) : null;
+        evaluator.setCauses(causes);
+        td = td.evaluator(evaluator);
         if (limits[0] > 0) {td = td.evaluator(Evaluators.toDepth((int) limits[0]));}
         td = td.uniqueness(Uniqueness.NODE_PATH); //NODE_PATH ensures the traversal does not loop back through its previous nodes
         // uniqueness should be set as last on the TraversalDescription
+        List<Node> nodes = new ArrayList<>(startNodes.length);
+        for (long startNode : startNodes) { nodes.add(tx.getNodeById(startNode)); }
         Traverser traverser=  td.traverse(nodes);
 
         //run the traversal
@@ -112,12 +516,352 @@ public class Impact  {
             //System.out.println(i++ +":"+System.currentTimeMillis()+" "+p.endNode()+" => "+ nodesMap.get(p.endNode()));
         }
 
-        log.debug("neo4j.impact.compute completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodesMap.size()+ " impacted nodes.");
-        return nodesMap.entrySet().stream().map(e -> new ImpactResult(e.getKey(), e.getValue()));
+        log.debug(procedure +" completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + nodesMap.size()+ " impacted nodes.");
+        return new Impacts(procedure, nodesMap, profile, memoryLimit, causes);
+    }
+
+    //streams the content of the state store : Node proxies are only created as the results are consumed
+    private Stream<ImpactResult> resultStream(StateStore nodesMap) {
+        return resultStream(nodesMap.cursor(), nodesMap.size(), null, () -> null);
+    }
+
+    //the cursor only moves when the next result is needed. size : number of results, -1 if unknown. causes : null if not recorded.
+    //stoppedBy : the limits that stopped the propagation so far, read for each result (streamed, it may stop later)
+    private Stream<ImpactResult> resultStream(StateStore.Cursor cursor, long size, ImpactCauses causes, Supplier<String> stoppedBy) {
+        Iterator<ImpactResult> results = new Iterator<ImpactResult>() {
+            Boolean hasNext;
+
+            @Override
+            public boolean hasNext() {
+                if (hasNext == null) hasNext = cursor.next();
+                return hasNext;
+            }
+
+            @Override
+            public ImpactResult next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                hasNext = null;
+                if (causes == null) return new ImpactResult(tx.getNodeById(cursor.nodeId()), cursor.state(), stoppedBy.get());
+                long cause = causes.causeOf(cursor.nodeId());
+                return new ImpactResult(tx.getNodeById(cursor.nodeId()), cursor.state(), (cause < 0) ? null : tx.getNodeById(cause),
+                        causes.ruleOf(cursor.nodeId()), causes.groupOf(cursor.nodeId()), stoppedBy.get());
+            }
+        };
+        Spliterator<ImpactResult> spliterator = (size < 0) ? Spliterators.spliteratorUnknownSize(results, Spliterator.NONNULL)
+                : Spliterators.spliterator(results, size, Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    @Procedure(value = "neo4j.impact.computeScenarios")
+    @Description("neo4j.impact.computeScenarios([start1, start2, ...], 'TYPE_OUT>|<TYPE_IN', limits, options)\n"+
+            "Computes the impacts of several independent failure scenarios in one sweep of the graph, 64 scenarios at a time.\n"+
+            "Each scenario is a 'start' as in neo4j.impact.compute : <id>|Node|list of Node|list of <id>. \n"+
+            "'relationshipFilter', 'limits' & 'options' : as in neo4j.impact.compute, limits applying to each scenario ('threads' is ignored). \n" +
+            "Returns the impacted nodes and their state, for each scenario (index in the list of scenarios).")
+    public Stream<ScenarioResult> computeScenarios(@Name("starts") List<Object> scenarios,
+                                                   @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                                   @Name(value="limits", defaultValue = "10hops,60s,1000results")  String limitsString,
+                                                   @Name(value="options", defaultValue = "")  String optionsString
+            ) throws Exception {
+        long startTime = System.currentTimeMillis();
+        log.debug("neo4j.impact.computeScenarios("+ (scenarios == null ? 0 : scenarios.size()) +" scenarios, "+ pathFilter +", "+ limitsString +", "+ optionsString +") started at "+startTime);
+        if (scenarios == null || scenarios.isEmpty()) return Stream.empty();
+
+        long[] limits=parseLimits(limitsString);
+        ImpactOptions options = ImpactOptions.parse(optionsString);
+        long[][] startSets = new long[scenarios.size()][];
+        for (int i = 0; i < startSets.length; i++) { startSets[i] = nodeIds(startToNodes(scenarios.get(i))); }
+        List<Pair<RelationshipType, Direction>> relsAndDirs = relsAndDirs(pathFilter);
+
+        //one sweep per block of 64 scenarios, run lazily as the results are consumed
+        ImpactGraph graph = impactGraph(options, relsAndDirs, (InternalTransaction) tx);
+        int blocks = (startSets.length + ScenarioPropagator.MAX_SCENARIOS - 1) / ScenarioPropagator.MAX_SCENARIOS;
+        return IntStream.range(0, blocks).boxed().flatMap(block -> {
+            int offset = block * ScenarioPropagator.MAX_SCENARIOS;
+            long[][] blockStartSets = Arrays.copyOfRange(startSets, offset, Math.min(offset + ScenarioPropagator.MAX_SCENARIOS, startSets.length));
+            ScenarioPropagator propagator = new ScenarioPropagator(graph, limits[0], limits[2], limits[1]);
+            propagator.propagate(blockStartSets);
+            log.debug("neo4j.impact.computeScenarios block "+ block +" completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + propagator.nodeCount()+ " impacted nodes.");
+            return IntStream.range(0, propagator.nodeCount()).boxed().flatMap(index -> {
+                Node node = tx.getNodeById(propagator.nodeId(index));
+                long lanes = propagator.resultLanes(index);
+                List<ScenarioResult> results = new ArrayList<>(Long.bitCount(lanes));
+                for (long remaining = lanes; remaining != 0; remaining &= remaining - 1) {
+                    int lane = Long.numberOfTrailingZeros(remaining);
+                    results.add(new ScenarioResult(offset + lane, node, propagator.state(index, lane)));
+                }
+                return results.stream();
+            });
+        }).onClose(graph::close);
+    }
+
+    @Procedure(value = "neo4j.impact.criticality")
+    @Description("neo4j.impact.criticality('TYPE_OUT>|<TYPE_IN', limits, options)\n"+
+            "Computes the blast radius of every node of the impact graph : the number of nodes that would be FAILED, DEGRADED "+
+            "or AT_RISK if that node alone failed (itself included). \n"+
+            "'relationshipFilter' : as in neo4j.impact.compute. \n"+
+            "'limits' : <hopLimit>hops,<timeout>s,<threads>threads. Defaults to '60s'. "+
+            "Nodes not computed within the time limit are not returned. \n" +
+            "'options' : 'projection:<name>' reads an in-memory projection instead of loading the impact relationships. \n" +
+            "Returns the nodes and their failedCount, degradedCount & atRiskCount.")
+    public Stream<CriticalityResult> criticality(@Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                                 @Name(value="limits", defaultValue = "60s")  String limitsString,
+                                                 @Name(value="options", defaultValue = "")  String optionsString
+            ) throws Exception {
+        long startTime = System.currentTimeMillis();
+        log.debug("neo4j.impact.criticality("+ pathFilter +", "+ limitsString +", "+ optionsString +") started at "+startTime);
+
+        long[] limits=parseLimits(limitsString);
+        ImpactOptions options = ImpactOptions.parse(optionsString);
+        CsrImpactGraph graph = (options.getProjection() != null) ? ImpactProjection.get(db.databaseName(), options.getProjection()).graph()
+                : CsrImpactGraph.load(((InternalTransaction) tx).kernelTransaction(), relsAndDirs(pathFilter), new GroupDictionary());
+        CriticalityRanking ranking = new CriticalityRanking(graph, limits[0], limits[1], (int) limits[3]);
+        ranking.compute();
+        log.debug("neo4j.impact.criticality completed after "+ (System.currentTimeMillis() - startTime) + "ms : " + graph.nodeCount()+ " nodes.");
+        return IntStream.range(0, graph.nodeCount()).filter(ranking::isComputed)
+                .mapToObj(index -> new CriticalityResult(tx.getNodeById(graph.nodeId(index)),
+                        ranking.failedCount(index), ranking.degradedCount(index), ranking.atRiskCount(index)));
+    }
+
+    @Procedure(value = "neo4j.impact.projection.create")
+    @Description("neo4j.impact.projection.create(name, 'TYPE_OUT>|<TYPE_IN')\n"+
+            "Loads the impact relationships of the 'relationshipFilter' (as in neo4j.impact.compute) in an in-memory projection, " +
+            "that the procedures read instead of the database when given the option 'projection:<name>'. \n" +
+            "The projection is a snapshot, not updated by later changes to the graph : drop & create it again to refresh it. \n" +
+            "Returns the projection's name, relationship filter, number of nodes & relationships, and its approximate memory usage in bytes.")
+    public Stream<ProjectionResult> createProjection(@Name("name") String name,
+                                                     @Name(value="relationshipFilter", defaultValue = "")  String pathFilter) {
+        long startTime = System.currentTimeMillis();
+        if (name == null || name.trim().isEmpty()) {
+            throw new QueryExecutionException("parameter 'name' can't be empty", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        CsrImpactGraph graph = CsrImpactGraph.load(((InternalTransaction) tx).kernelTransaction(), relsAndDirs(pathFilter), new GroupDictionary());
+        ImpactProjection projection = ImpactProjection.register(db.databaseName(), name.trim(), pathFilter, graph);
+        log.debug("neo4j.impact.projection.create("+ name +", "+ pathFilter +") completed after "+ (System.currentTimeMillis() - startTime) + "ms : "
+                + graph.nodeCount() + " nodes, " + graph.relationshipCount() + " relationships.");
+        return Stream.of(new ProjectionResult(projection));
+    }
+
+    @Procedure(value = "neo4j.impact.projection.drop")
+    @Description("neo4j.impact.projection.drop(name)\n"+
+            "Drops an in-memory projection, and returns it.")
+    public Stream<ProjectionResult> dropProjection(@Name("name") String name) {
+        return Stream.of(new ProjectionResult(ImpactProjection.drop(db.databaseName(), name)));
+    }
+
+    @Procedure(value = "neo4j.impact.projection.list")
+    @Description("neo4j.impact.projection.list()\n"+
+            "Returns the in-memory projections of the database.")
+    public Stream<ProjectionResult> listProjections() {
+        return ImpactProjection.list(db.databaseName()).stream().map(ProjectionResult::new);
+    }
+
+    @Procedure(value = "neo4j.impact.projection.estimate")
+    @Description("neo4j.impact.projection.estimate('TYPE_OUT>|<TYPE_IN')\n"+
+            "Estimates the memory needed by a projection of the 'relationshipFilter', from the relationship counts of the database. \n"+
+            "Returns the relationship filter, the number of relationships, an upper bound of the number of nodes, and the memory estimate in bytes.")
+    public Stream<ProjectionResult> estimateProjection(@Name(value="relationshipFilter", defaultValue = "")  String pathFilter) {
+        KernelTransaction ktx = ((InternalTransaction) tx).kernelTransaction();
+        long relationshipCount = 0;
+        for (Pair<RelationshipType, Direction> relAndDir : relsAndDirs(pathFilter)) {
+            int type = ktx.tokenRead().relationshipType(relAndDir.first().name());
+            if (type == TokenRead.NO_TOKEN) continue;
+            relationshipCount += ktx.dataRead().countsForRelationship(TokenRead.ANY_LABEL, type, TokenRead.ANY_LABEL);
+        }
+        long nodeCount = Math.min(ktx.dataRead().nodesGetCount(), 2 * relationshipCount);
+        return Stream.of(new ProjectionResult(null, pathFilter, nodeCount, relationshipCount,
+                CsrImpactGraph.estimateMemory(nodeCount, relationshipCount)));
+    }
+
+    @Procedure(value = "neo4j.impact.index.create")
+    @Description("neo4j.impact.index.create(name, failureLabel, 'TYPE_OUT>|<TYPE_IN')\n"+
+            "Computes the impacts of the nodes with the 'failureLabel', following the 'relationshipFilter' (as in neo4j.impact.compute), " +
+            "without limits, and keeps them up to date after each commit : the changes of impact relationships (creation, deletion, " +
+            "impact_propagation & impact_group properties) and of the failure label only propagate again the region downstream of them. \n" +
+            "Returns the index's name, failure label, relationship filter, number of failed & impacted nodes.")
+    public Stream<IndexResult> createIndex(@Name("name") String name,
+                                           @Name("failureLabel") String failureLabel,
+                                           @Name(value="relationshipFilter", defaultValue = "")  String pathFilter) {
+        if (name == null || name.trim().isEmpty() || failureLabel == null || failureLabel.trim().isEmpty()) {
+            throw new QueryExecutionException("parameters 'name' & 'failureLabel' can't be empty", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        ImpactIndex index = new ImpactIndex(db.databaseName(), name.trim(), failureLabel.trim(), pathFilter, relsAndDirs(pathFilter));
+        index.build((InternalTransaction) tx);
+        ImpactIndexListener.registerOn((GraphDatabaseAPI) db);
+        ImpactIndex.register(index);
+        log.debug("neo4j.impact.index.create("+ name +", "+ failureLabel +", "+ pathFilter +") completed after "+ index.lastUpdateMillis + "ms : "
+                + index.states.size() + " impacted nodes.");
+        return Stream.of(new IndexResult(index));
+    }
+
+    @Procedure(value = "neo4j.impact.index.get")
+    @Description("neo4j.impact.index.get(name)\n"+
+            "Returns the current impacted nodes of an impact index, and their state.")
+    public Stream<ImpactResult> getIndex(@Name("name") String name) {
+        return resultStream(ImpactIndex.get(db.databaseName(), name).snapshot());
+    }
+
+    @Procedure(value = "neo4j.impact.index.list")
+    @Description("neo4j.impact.index.list()\n"+
+            "Returns the impact indexes of the database, with the number of updates, the duration of the last one, and its error if it failed.")
+    public Stream<IndexResult> listIndexes() {
+        return ImpactIndex.list(db.databaseName()).stream().map(IndexResult::new);
+    }
+
+    @Procedure(value = "neo4j.impact.index.drop")
+    @Description("neo4j.impact.index.drop(name)\n"+
+            "Drops an impact index, and returns it.")
+    public Stream<IndexResult> dropIndex(@Name("name") String name) {
+        return Stream.of(new IndexResult(ImpactIndex.drop(db.databaseName(), name)));
+    }
+
+    @Procedure(value = "neo4j.impact.reachability.create")
+    @Description("neo4j.impact.reachability.create(name, 'TYPE_OUT>|<TYPE_IN')\n"+
+            "Builds an upstream reachability index of the impact relationships of the 'relationshipFilter' (as in neo4j.impact.compute) : "+
+            "2-hop labels of the strongly connected components, answering whether a node can impact another, and which nodes can impact "+
+            "a node, without traversing the graph. Created impact relationships are added to it after each commit; "+
+            "deleted ones make it stale, and built again by the next call reading it. \n"+
+            "Returns the index's name, relationship filter, number of nodes, components & labels, number of builds & of inserted relationships, "+
+            "whether it's stale, the duration of the last build, and its approximate memory usage in bytes.")
+    public Stream<ReachabilityResult> createReachability(@Name("name") String name,
+                                                         @Name(value="relationshipFilter", defaultValue = "")  String pathFilter) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new QueryExecutionException("parameter 'name' can't be empty", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        ReachabilityIndex index = new ReachabilityIndex(db.databaseName(), name.trim(), pathFilter, relsAndDirs(pathFilter));
+        index.build(((InternalTransaction) tx).kernelTransaction());
+        ReachabilityIndexListener.registerOn((GraphDatabaseAPI) db);
+        ReachabilityIndex.register(index);
+        log.debug("neo4j.impact.reachability.create("+ name +", "+ pathFilter +") completed after "+ index.lastBuildMillis + "ms : "
+                + index.labels.componentCount() + " components, " + index.labels.labelCount() + " labels.");
+        return Stream.of(new ReachabilityResult(index));
+    }
+
+    @Procedure(value = "neo4j.impact.reachability.canImpact")
+    @Description("neo4j.impact.reachability.canImpact(name, from <id>|Node|list, to <id>|Node|list)\n"+
+            "Whether a path of impact relationships of the reachability index leads from each of the 'from' nodes to each of the 'to' nodes. \n"+
+            "Returns the 'from' node, the 'to' node, and canImpact (false for the same node).")
+    public Stream<CanImpactResult> canImpact(@Name("name") String name,
+                                             @Name("from") Object from,
+                                             @Name("to") Object to) throws Exception {
+        ReachabilityIndex index = ReachabilityIndex.get(db.databaseName(), name);
+        List<Node> toNodes = this.startToNodes(to);
+        List<CanImpactResult> results = new ArrayList<>();
+        for (Node fromNode : this.startToNodes(from)) {
+            for (Node toNode : toNodes) {
+                results.add(new CanImpactResult(fromNode, toNode, index.canImpact(db, fromNode.getId(), toNode.getId())));
+            }
+        }
+        return results.stream();
+    }
+
+    @Procedure(value = "neo4j.impact.reachability.upstream")
+    @Description("neo4j.impact.reachability.upstream(name, node <id>|Node)\n"+
+            "Returns the nodes that can impact the node through the impact relationships of the reachability index, "+
+            "whatever the propagation rules (the node itself excluded).")
+    public Stream<NodeResult> upstream(@Name("name") String name,
+                                       @Name("node") Object node) throws Exception {
+        ReachabilityIndex index = ReachabilityIndex.get(db.databaseName(), name);
+        List<Node> nodes = this.startToNodes(node);
+        if (nodes.size() != 1) {
+            throw new QueryExecutionException("parameter 'node' expects a single Node or id", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        return Arrays.stream(index.upstream(db, nodes.get(0).getId())).mapToObj(id -> new NodeResult(tx.getNodeById(id)));
+    }
+
+    @Procedure(value = "neo4j.impact.reachability.list")
+    @Description("neo4j.impact.reachability.list()\n"+
+            "Returns the reachability indexes of the database.")
+    public Stream<ReachabilityResult> listReachability() {
+        return ReachabilityIndex.list(db.databaseName()).stream().map(ReachabilityResult::new);
+    }
+
+    @Procedure(value = "neo4j.impact.reachability.drop")
+    @Description("neo4j.impact.reachability.drop(name)\n"+
+            "Drops a reachability index, and returns it.")
+    public Stream<ReachabilityResult> dropReachability(@Name("name") String name) {
+        return Stream.of(new ReachabilityResult(ReachabilityIndex.drop(db.databaseName(), name)));
+    }
+
+    @Procedure(value = "neo4j.impact.session.create")
+    @Description("neo4j.impact.session.create(name, 'TYPE_OUT>|<TYPE_IN', options)\n"+
+            "Creates an incident session : a failure set (initially empty) and the states of its impacted nodes, without limits, " +
+            "held in memory between calls. 'relationshipFilter' & 'options' : as in neo4j.impact.compute. \n" +
+            "Returns the session's name, relationship filter, number of failed & impacted nodes.")
+    public Stream<SessionResult> createSession(@Name("name") String name,
+                                               @Name(value="relationshipFilter", defaultValue = "")  String pathFilter,
+                                               @Name(value="options", defaultValue = "")  String optionsString) {
+        if (name == null || name.trim().isEmpty()) {
+            throw new QueryExecutionException("parameter 'name' can't be empty", null, "Neo.ClientError.Statement.ArgumentError");
+        }
+        ImpactOptions.parse(optionsString);
+        ImpactSession session = new ImpactSession(db.databaseName(), name.trim(), pathFilter, optionsString);
+        ImpactSession.register(session);
+        return Stream.of(new SessionResult(session));
+    }
+
+    @Procedure(value = "neo4j.impact.session.fail")
+    @Description("neo4j.impact.session.fail(name, start <id>|Node|list)\n"+
+            "Adds failed node(s) to an incident session, and propagates only their consequences. \n" +
+            "Returns the nodes whose state changed, with their previous state (null if they weren't impacted) and their new state.")
+    public Stream<ChangeResult> failInSession(@Name("name") String name, @Name("start") Object start) throws Exception {
+        return applyToSession(name, start, true);
+    }
+
+    @Procedure(value = "neo4j.impact.session.recover")
+    @Description("neo4j.impact.session.recover(name, start <id>|Node|list)\n"+
+            "Clears failed node(s) of an incident session, and propagates again only the region downstream of them. \n" +
+            "Returns the nodes whose state changed, with their previous state and their new state (null if they're not impacted anymore).")
+    public Stream<ChangeResult> recoverInSession(@Name("name") String name, @Name("start") Object start) throws Exception {
+        return applyToSession(name, start, false);
+    }
+
+    private Stream<ChangeResult> applyToSession(String name, Object start, boolean fail) throws Exception {
+        long startTime = System.currentTimeMillis();
+        ImpactSession session = ImpactSession.get(db.databaseName(), name);
+        List<ChangeResult> changes = new ArrayList<>();
+        try (ImpactGraph graph = impactGraph(ImpactOptions.parse(session.options), relsAndDirs(session.relationshipFilter), (InternalTransaction) tx)) {
+            session.apply(graph, nodeIds(startToNodes(start)), fail, (node, previousState, state) ->
+                    changes.add(new ChangeResult(tx.getNodeById(node), previousState, state)));
+        }
+        log.debug("neo4j.impact.session." + (fail ? "fail" : "recover") + "(" + name + ", " + start + ") completed after "
+                + (System.currentTimeMillis() - startTime) + "ms : " + changes.size() + " changed nodes.");
+        return changes.stream();
+    }
+
+    @Procedure(value = "neo4j.impact.session.get")
+    @Description("neo4j.impact.session.get(name)\n"+
+            "Returns the current impacted nodes of an incident session, and their state.")
+    public Stream<ImpactResult> getSession(@Name("name") String name) {
+        return resultStream(ImpactSession.get(db.databaseName(), name).snapshot());
+    }
+
+    @Procedure(value = "neo4j.impact.session.drop")
+    @Description("neo4j.impact.session.drop(name)\n"+
+            "Drops an incident session, and returns it.")
+    public Stream<SessionResult> dropSession(@Name("name") String name) {
+        return Stream.of(new SessionResult(ImpactSession.drop(db.databaseName(), name)));
+    }
+
+    private ImpactGraph impactGraph(ImpactOptions options, List<Pair<RelationshipType, Direction>> relsAndDirs,
+                                    InternalTransaction tx) {
+        if (options.getProjection() != null) {
+            return ImpactProjection.get(db.databaseName(), options.getProjection()).graph();
+        }
+        if (options.getGraphAccess() == ImpactOptions.GraphAccess.KERNEL) {
+            return new KernelImpactGraph(tx.kernelTransaction(), relsAndDirs, new GroupDictionary());
+        }
+        return new CoreImpactGraph(tx, relsAndDirs, new GroupDictionary());
+    }
+
+    private static long[] nodeIds(List<Node> nodes) {
+        long[] ids = new long[nodes.size()];
+        for (int i = 0; i < ids.length; i++) { ids[i] = nodes.get(i).getId(); }
+        return ids;
     }
 
     private static long[] parseLimits(String limitsString) throws QueryExecutionException {
-        long timeout=-1, maxLevel=-1, resultLimit=-1;
+        long timeout=-1, maxLevel=-1, resultLimit=-1, threads=1, memoryBytes=-1;
         String[] limits = limitsString.trim().split(",");
         for (String limit : limits) {
             String trimmedValue = limit.trim();
@@ -127,11 +871,25 @@ public class Impact  {
                 maxLevel = Integer.parseInt(trimmedValue.replaceFirst("hops", ""));
             } else if (trimmedValue.matches("^[0-9]+results$")) {
                 resultLimit = Integer.parseInt(trimmedValue.replaceFirst("results", ""));
+            } else if (trimmedValue.matches("^[0-9]+threads$")) {
+                threads = Math.max(1, Integer.parseInt(trimmedValue.replaceFirst("threads", "")));
+            } else if (trimmedValue.matches("^[0-9]+MB$")) {
+                memoryBytes = Long.parseLong(trimmedValue.replaceFirst("MB", "")) << 20;
             } else {
-                throw new QueryExecutionException("parameter 'limit' expects one (or several, with a comma separating them) of the following formats : limit in seconds (ex : '10s'), hop limit (ex: '5hops'), or result limit (ex: '1000results'). Found '" + limit + "'", null, "Neo.ClientError.Statement.SyntaxError");
+                throw new QueryExecutionException("parameter 'limit' expects one (or several, with a comma separating them) of the following formats : limit in seconds (ex : '10s'), hop limit (ex: '5hops'), result limit (ex: '1000results'), number of threads (ex: '8threads'), or memory limit in megabytes (ex: '512MB'). Found '" + limit + "'", null, "Neo.ClientError.Statement.SyntaxError");
             }
         }
-        return new long[]{maxLevel, timeout, resultLimit};
+        return new long[]{maxLevel, timeout, resultLimit, threads, memoryBytes};
+    }
+
+    //impact relationship types & directions of the 'relationshipFilter', defaulting to IMPACTS>
+    private static List<Pair<RelationshipType, Direction>> relsAndDirs(String pathFilter) {
+        if (pathFilter != null && !pathFilter.trim().isEmpty()) {
+            return parsePathFilter(pathFilter.trim());
+        }
+        List<Pair<RelationshipType, Direction>> relsAndDirs = new ArrayList<>();
+        relsAndDirs.add(Pair.of(ImpactRelationshipTypes.IMPACTS, Direction.OUTGOING));
+        return relsAndDirs;
     }
 
     //uses a copy of apoc RelationshipTypeAndDirections (could be replaced by apoc dependency)
@@ -182,10 +940,284 @@ public class Impact  {
         // yield
         public final Node node;
         public final String state;
+        //'explain' only
+        public final Node cause;
+        public final String rule;
+        public final String group;
+        //the limits that stopped the propagation : 'time', 'results', 'memory' (comma-separated), null if complete
+        public final String stoppedBy;
+
+        public ImpactResult(Node node, State state, String stoppedBy) {
+            this(node, state, null, null, null, stoppedBy);
+        }
 
-        public ImpactResult(Node node, State state) {
+        public ImpactResult(Node node, State state, Node cause, PropagationRule rule, String group, String stoppedBy) {
             this.node = node;
             this.state = state.name();
+            this.cause = cause;
+            this.rule = (rule == null) ? null : rule.name();
+            this.group = group;
+            this.stoppedBy = stoppedBy;
+        }
+    }
+
+    public static class ExplanationResult {
+        // yield
+        public final Node node;
+        public final String state;
+        public final List<Node> chain;
+        public final List<String> rules;
+        public final List<String> groups;
+
+        public ExplanationResult(Node node, State state, List<Node> chain, List<String> rules, List<String> groups) {
+            this.node = node;
+            this.state = state.name();
+            this.chain = chain;
+            this.rules = rules;
+            this.groups = groups;
+        }
+    }
+
+    public static class ScenarioResult {
+        // yield
+        public final long scenario;
+        public final Node node;
+        public final String state;
+
+        public ScenarioResult(long scenario, Node node, State state) {
+            this.scenario = scenario;
+            this.node = node;
+            this.state = state.name();
+        }
+    }
+
+    public static class SummaryResult {
+        // yield
+        public final Object group;
+        public final String state;
+        public final long count;
+
+        public SummaryResult(Object group, State state, long count) {
+            this.group = group;
+            this.state = state.name();
+            this.count = count;
+        }
+    }
+
+    public static class ProfileResult {
+        // yield
+        public final String engine;
+        public final long results;
+        public final long evaluations;
+        public final long nodesEvaluated;
+        public final long maxEvaluationsPerNode;
+        public final long relationshipsRead;
+        public final long propertyReads;
+        public final long pathsExpanded;
+        public final long failedPrunes;
+        public final long timeoutPrunes;
+        public final long resultLimitPrunes;
+        public final long memoryLimitPrunes;
+        public final long parseMillis;
+        public final long propagateMillis;
+        public final long streamMillis;
+        public final long peakMemoryBytes;
+
+        public ProfileResult(ImpactProfile profile) {
+            this.engine = profile.engine;
+            this.results = profile.results;
+            this.evaluations = profile.evaluations.sum();
+            this.nodesEvaluated = profile.nodesEvaluated();
+            this.maxEvaluationsPerNode = profile.maxEvaluations();
+            this.relationshipsRead = profile.relationshipsRead.sum();
+            this.propertyReads = profile.propertyReads.sum();
+            this.pathsExpanded = profile.pathsExpanded;
+            this.failedPrunes = profile.failedPrunes.sum();
+            this.timeoutPrunes = profile.timeoutPrunes;
+            this.resultLimitPrunes = profile.resultLimitPrunes.sum();
+            this.memoryLimitPrunes = profile.memoryLimitPrunes;
+            this.parseMillis = profile.parseMillis;
+            this.propagateMillis = profile.propagateMillis;
+            this.streamMillis = profile.streamMillis;
+            this.peakMemoryBytes = profile.peakMemoryBytes;
+        }
+    }
+
+    public static class WriteResult {
+        // yield
+        public final long impactedCount;
+        public final long writtenCount;
+        public final long unchangedCount;
+        public final long clearedCount;
+        public final long batchCount;
+        public final long computeMillis;
+        public final long writeMillis;
+        //the limits that stopped the propagation, as in neo4j.impact.compute : the states written are incomplete
+        public final String stoppedBy;
+
+        public WriteResult(long impactedCount, ImpactWriter writer, long computeMillis, long writeMillis, String stoppedBy) {
+            this.impactedCount = impactedCount;
+            this.writtenCount = writer.getWrittenCount();
+            this.unchangedCount = writer.getUnchangedCount();
+            this.clearedCount = writer.getClearedCount();
+            this.batchCount = writer.getBatchCount();
+            this.computeMillis = computeMillis;
+            this.writeMillis = writeMillis;
+            this.stoppedBy = stoppedBy;
+        }
+    }
+
+    public static class MetricResult {
+        // yield
+        public final String name;
+        public final long value;
+
+        public MetricResult(String name, long value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    public static class CriticalityResult {
+        // yield
+        public final Node node;
+        public final long failedCount;
+        public final long degradedCount;
+        public final long atRiskCount;
+
+        public CriticalityResult(Node node, long failedCount, long degradedCount, long atRiskCount) {
+            this.node = node;
+            this.failedCount = failedCount;
+            this.degradedCount = degradedCount;
+            this.atRiskCount = atRiskCount;
+        }
+    }
+
+    public static class ProjectionResult {
+        // yield
+        public final String name;
+        public final String relationshipFilter;
+        public final long nodeCount;
+        public final long relationshipCount;
+        public final long memoryBytes;
+
+        public ProjectionResult(String name, String relationshipFilter, long nodeCount, long relationshipCount, long memoryBytes) {
+            this.name = name;
+            this.relationshipFilter = relationshipFilter;
+            this.nodeCount = nodeCount;
+            this.relationshipCount = relationshipCount;
+            this.memoryBytes = memoryBytes;
+        }
+
+        public ProjectionResult(ImpactProjection projection) {
+            this(projection.getName(), projection.getRelationshipFilter(), projection.graph.nodeCount(),
+                    projection.graph.relationshipCount(), projection.graph.memoryUsage());
+        }
+    }
+
+    public static class IndexResult {
+        // yield
+        public final String name;
+        public final String failureLabel;
+        public final String relationshipFilter;
+        public final long failedCount;
+        public final long impactedCount;
+        public final long updateCount;
+        public final long lastUpdateMillis;
+        public final String lastError;
+
+        public IndexResult(ImpactIndex index) {
+            synchronized (index) {
+                this.name = index.name;
+                this.failureLabel = index.failureLabel;
+                this.relationshipFilter = index.relationshipFilter;
+                this.failedCount = index.failedNodes.size();
+                this.impactedCount = index.states.size();
+                this.updateCount = index.updateCount;
+                this.lastUpdateMillis = index.lastUpdateMillis;
+                this.lastError = index.lastError;
+            }
+        }
+    }
+
+    public static class ReachabilityResult {
+        // yield
+        public final String name;
+        public final String relationshipFilter;
+        public final long nodeCount;
+        public final long componentCount;
+        public final long labelCount;
+        public final long buildCount;
+        public final long insertCount;
+        public final boolean stale;
+        public final long lastBuildMillis;
+        public final long memoryBytes;
+
+        public ReachabilityResult(ReachabilityIndex index) {
+            synchronized (index) {
+                this.name = index.name;
+                this.relationshipFilter = index.relationshipFilter;
+                this.nodeCount = index.labels.nodeCount();
+                this.componentCount = index.labels.componentCount();
+                this.labelCount = index.labels.labelCount();
+                this.buildCount = index.buildCount;
+                this.insertCount = index.insertCount;
+                this.stale = index.stale;
+                this.lastBuildMillis = index.lastBuildMillis;
+                this.memoryBytes = index.labels.memoryUsage();
+            }
+        }
+    }
+
+    public static class CanImpactResult {
+        // yield
+        public final Node from;
+        public final Node to;
+        public final boolean canImpact;
+
+        public CanImpactResult(Node from, Node to, boolean canImpact) {
+            this.from = from;
+            this.to = to;
+            this.canImpact = canImpact;
+        }
+    }
+
+    public static class NodeResult {
+        // yield
+        public final Node node;
+
+        public NodeResult(Node node) {
+            this.node = node;
+        }
+    }
+
+    public static class SessionResult {
+        // yield
+        public final String name;
+        public final String relationshipFilter;
+        public final long failedCount;
+        public final long impactedCount;
+
+        public SessionResult(ImpactSession session) {
+            synchronized (session) {
+                this.name = session.name;
+                this.relationshipFilter = session.relationshipFilter;
+                this.failedCount = session.failedNodes.size();
+                this.impactedCount = session.states.size();
+            }
+        }
+    }
+
+    public static class ChangeResult {
+        // yield
+        public final Node node;
+        public final String previousState;
+        public final String state;
+
+        public ChangeResult(Node node, State previousState, State state) {
+            this.node = node;
+            this.previousState = (previousState == null) ? null : previousState.name();
+            this.state = (state == null) ? null : state.name();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,210 @@
+package neo4j.impact;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.security.SecurityContext;
+import org.neo4j.kernel.database.NamedDatabaseId;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.*;
+
+/**
+ * Results of the neo4j.impact.compute calls with the 'cache' option, per database : the (nodeId, state) pairs of a call
+ * are returned again to the calls with the same start nodes, relationship filter, limits & engine, without propagating.
+ * An entry is valid as long as no commit changed the relationships of its types, their impact properties, or deleted
+ * nodes : the ImpactCacheListener counts these commits in versions, that the entries are checked against.
+ * Bounded in number of entries & of cached results, the least recently used entries being evicted first.
+ */
+public class ImpactCache {
+    static final int MAX_ENTRIES = 256;
+    static final long MAX_RESULTS = 2_000_000;
+    //per database id : a database dropped & created again with the same name gets a new id, and an empty cache
+    private static final Map<NamedDatabaseId, ImpactCache> CACHES = new HashMap<>();
+
+    //commits that changed the relationships of a type (or their impact properties), or deleted nodes
+    private final Map<String, Long> typeVersions = new HashMap<>();
+    private long nodeVersion;
+    //in access order : the eldest is the least recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long resultCount;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    //the cache of the database, created with its listener on first use
+    public static synchronized ImpactCache of(GraphDatabaseAPI db) {
+        ImpactCache cache = CACHES.get(db.databaseId());
+        if (cache == null) {
+            cache = new ImpactCache();
+            CACHES.put(db.databaseId(), cache);
+            db.getDependencyResolver().resolveDependency(DatabaseManagementService.class)
+                    .registerTransactionEventListener(db.databaseName(), new ImpactCacheListener(cache));
+        }
+        return cache;
+    }
+
+    //the current versions of the key's types, then of the nodes : to be taken before propagating, so that results
+    //computed while a relevant commit happens are stored as already stale
+    public synchronized long[] versions(Key key) {
+        long[] versions = new long[key.types.length + 1];
+        for (int i = 0; i < key.types.length; i++) { versions[i] = this.typeVersions.getOrDefault(key.types[i], 0L); }
+        versions[key.types.length] = this.nodeVersion;
+        return versions;
+    }
+
+    //the cached results of the key, null if none or stale
+    public synchronized Entry get(Key key) {
+        Entry entry = this.entries.get(key);
+        if (entry != null && !Arrays.equals(entry.versions, versions(key))) {
+            remove(key);
+            this.invalidations++;
+            entry = null;
+        }
+        if (entry == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return entry;
+    }
+
+    public synchronized void put(Key key, long[] versions, StateStore states) {
+        if (states.size() > MAX_RESULTS || !Arrays.equals(versions, versions(key))) return;
+        remove(key);
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while (eldest.hasNext() && (this.entries.size() >= MAX_ENTRIES || this.resultCount + states.size() > MAX_RESULTS)) {
+            this.resultCount -= eldest.next().size();
+            eldest.remove();
+            this.evictions++;
+        }
+        Entry entry = new Entry(states, versions);
+        this.entries.put(key, entry);
+        this.resultCount += entry.size();
+    }
+
+    //a commit changed the relationships (or impact properties) of these types, and/or deleted nodes
+    synchronized void changed(Set<String> types, boolean nodesDeleted) {
+        for (String type : types) { this.typeVersions.merge(type, 1L, Long::sum); }
+        if (nodesDeleted) this.nodeVersion++;
+    }
+
+    public synchronized Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("entries", (long) this.entries.size());
+        stats.put("results", this.resultCount);
+        stats.put("hits", this.hits);
+        stats.put("misses", this.misses);
+        stats.put("evictions", this.evictions);
+        stats.put("invalidations", this.invalidations);
+        return stats;
+    }
+
+    //removes all the entries, returns their number
+    public synchronized int clear() {
+        int size = this.entries.size();
+        this.entries.clear();
+        this.resultCount = 0;
+        return size;
+    }
+
+    private void remove(Key key) {
+        Entry entry = this.entries.remove(key);
+        if (entry != null) this.resultCount -= entry.size();
+    }
+
+    /**
+     * Normalized parameters of a call : distinct sorted start ids, parsed relationship filter (with the declared rules),
+     * parsed limits, and the engine options. And the user, roles & access mode of the caller : the results only include
+     * what their privileges let them read, they aren't returned to other users.
+     */
+    public static class Key {
+        final long[] startIds;
+        final String[] types;
+        final String filter;
+        final String limits;
+        final String options;
+        final String security;
+        private final int hash;
+
+        public Key(long[] startIds, List<Pair<RelationshipType, Direction>> relsAndDirs, long[] limits, ImpactOptions options,
+                   SecurityContext securityContext) {
+            this.startIds = Arrays.stream(startIds).distinct().sorted().toArray();
+            StringBuilder filter = new StringBuilder();
+            SortedSet<String> types = new TreeSet<>();
+            for (Pair<RelationshipType, Direction> relAndDir : relsAndDirs) {
+                filter.append(relAndDir.other()).append(' ')
+                        .append(relAndDir.first() instanceof RuledRelationshipType ? relAndDir.first().toString() : relAndDir.first().name()).append('|');
+                types.add(relAndDir.first().name());
+            }
+            this.types = types.toArray(new String[0]);
+            this.filter = filter.toString();
+            this.limits = Arrays.toString(limits);
+            this.options = options.key();
+            this.security = securityContext.subject().username() + " " + new TreeSet<>(securityContext.roles())
+                    + " " + securityContext.mode().name();
+            this.hash = Objects.hash(Arrays.hashCode(this.startIds), this.filter, this.limits, this.options, this.security);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Arrays.equals(this.startIds, key.startIds) && this.filter.equals(key.filter)
+                    && this.limits.equals(key.limits) && this.options.equals(key.options) && this.security.equals(key.security);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /**
+     * Results of a call, as parallel arrays of node ids & state values
+     */
+    public static class Entry {
+        private final long[] nodeIds;
+        private final byte[] states;
+        final long[] versions;
+
+        Entry(StateStore states, long[] versions) {
+            this.nodeIds = new long[states.size()];
+            this.states = new byte[this.nodeIds.length];
+            StateStore.Cursor cursor = states.cursor();
+            for (int i = 0; i < this.nodeIds.length && cursor.next(); i++) {
+                this.nodeIds[i] = cursor.nodeId();
+                this.states[i] = (byte) cursor.state().getStateValue();
+            }
+            this.versions = versions;
+        }
+
+        public int size() {
+            return this.nodeIds.length;
+        }
+
+        public StateStore.Cursor cursor() {
+            return new StateStore.Cursor() {
+                int position = -1;
+
+                @Override
+                public boolean next() {
+                    return ++this.position < nodeIds.length;
+                }
+
+                @Override
+                public long nodeId() {
+                    return nodeIds[this.position];
+                }
+
+                @Override
+                public Impact.State state() {
+                    return Impact.State.of(states[this.position]);
+                }
+            };
+        }
+    }
+}
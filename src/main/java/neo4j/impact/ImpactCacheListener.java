@@ -0,0 +1,63 @@
+package neo4j.impact;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Invalidates the ImpactCache of a database : the relationship types whose relationships or impact properties changed
+ * are collected before the commit (while the deleted relationships can still be read), and their versions increased
+ * after it. Registered on a database with its cache.
+ */
+public class ImpactCacheListener implements TransactionEventListener<ImpactCacheListener.Changes> {
+    private final ImpactCache cache;
+
+    ImpactCacheListener(ImpactCache cache) {
+        this.cache = cache;
+    }
+
+    static class Changes {
+        final Set<String> types = new HashSet<>();
+        boolean nodesDeleted;
+
+        boolean isEmpty() {
+            return this.types.isEmpty() && !this.nodesDeleted;
+        }
+    }
+
+    @Override
+    public Changes beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+        //even with an empty cache : results being computed meanwhile are stored with the versions taken before
+        Changes changes = new Changes();
+        for (Relationship relationship : data.createdRelationships()) { changes.types.add(relationship.getType().name()); }
+        for (Relationship relationship : data.deletedRelationships()) { changes.types.add(relationship.getType().name()); }
+        for (PropertyEntry<Relationship> property : data.assignedRelationshipProperties()) {
+            if (isImpactProperty(property.key())) changes.types.add(property.entity().getType().name());
+        }
+        for (PropertyEntry<Relationship> property : data.removedRelationshipProperties()) {
+            if (isImpactProperty(property.key())) changes.types.add(property.entity().getType().name());
+        }
+        changes.nodesDeleted = data.deletedNodes().iterator().hasNext();
+        return changes.isEmpty() ? null : changes;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+        if (changes == null) return;
+        this.cache.changed(changes.types, changes.nodesDeleted);
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Changes changes, GraphDatabaseService databaseService) {
+    }
+
+    private static boolean isImpactProperty(String key) {
+        return key.equals("impact_propagation") || key.equals("impact_group");
+    }
+}
@@ -0,0 +1,74 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Root cause pointers of a propagation ('explain' option) : per impacted node, the impacting node & the (propagation
+ * rule, impact group) key of the group that decided its state, recorded by the engines whenever the node gets worse.
+ * A pointer is recorded from states already known at that time : following the pointers from a node leads back to a
+ * start node, in as many steps as the causal chain is long, without reading the graph again.
+ */
+public class ImpactCauses {
+    private final LongLongHashMap causes = new LongLongHashMap();
+    private final LongIntHashMap keys = new LongIntHashMap();
+    //scratch structure, for the engines keeping group counters instead of the impacting nodes
+    private final GroupAccumulator groups = new GroupAccumulator();
+    //names of the groups of the keys
+    private final GroupDictionary groupIds;
+
+    public ImpactCauses(GroupDictionary groupIds) {
+        this.groupIds = groupIds;
+    }
+
+    //the node's state was just computed by the accumulator, from the impacting nodes given to it
+    public void record(long nodeId, GroupAccumulator groups) {
+        long cause = groups.decidingNode();
+        if (cause < 0) return;
+        this.causes.put(nodeId, cause);
+        this.keys.put(nodeId, groups.decidingKey());
+    }
+
+    //the node's state was just computed from the current states of its impacting nodes : scans them again
+    public void record(long nodeId, ImpactGraph graph, StateStore nodesMap) {
+        this.groups.reset();
+        ImpactGraph.RelationshipCursor impacting = graph.impacting(nodeId);
+        while (impacting.next()) {
+            long impactingNode = impacting.otherNodeId();
+            this.groups.add(impacting.groupKey(), nodesMap.getOrDefault(impactingNode, Impact.State.WORKING), impactingNode);
+        }
+        record(nodeId, this.groups);
+    }
+
+    //the impacting node that decided the node's state, -1 for start & WORKING nodes
+    public long causeOf(long nodeId) {
+        return this.causes.getIfAbsent(nodeId, -1);
+    }
+
+    public Impact.PropagationRule ruleOf(long nodeId) {
+        return this.keys.containsKey(nodeId) ? GroupAccumulator.ruleOf(this.keys.get(nodeId)) : null;
+    }
+
+    //impact_group of the group that decided the node's state, null if none
+    public String groupOf(long nodeId) {
+        return this.keys.containsKey(nodeId) ? this.groupIds.nameOf(GroupAccumulator.groupIdOf(this.keys.get(nodeId))) : null;
+    }
+
+    //the node, its cause, the cause of its cause... up to a node without cause (a start node), or to a node already in
+    //the chain : the pointers of a cycle are recorded at different times, and may point at each other
+    public long[] chain(long nodeId) {
+        LongArrayList chain = new LongArrayList();
+        LongHashSet visited = new LongHashSet();
+        for (long node = nodeId; node >= 0 && visited.add(node); node = causeOf(node)) {
+            chain.add(node);
+        }
+        return chain.toArray();
+    }
+
+    //primitive hash tables : about 16 bytes per long key & long value, 12 with an int value
+    public long memoryUsage() {
+        return this.causes.size() * 28L;
+    }
+}
@@ -1,6 +1,7 @@
 package neo4j.impact;
 
 
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.Evaluation;
 import org.neo4j.graphdb.traversal.Evaluator;
@@ -9,97 +10,118 @@ import java.util.*;
 
 
 public class ImpactEvaluator implements Evaluator {//extends PathEvaluator.Adapter<Integer>  {
-    HashMap<Node, Impact.State> nodesMap = new HashMap<Node, Impact.State>();
-    List<Node> startNodes;
+    //approximate heap usage of a traversal branch kept by the breadth-first traverser (path element & expansion state)
+    private static final int BRANCH_BYTES = 128;
+    StateStore nodesMap;
+    LongHashSet startNodes;
     List<Pair<RelationshipType, Direction>> relsAndDirs;
     long resultLimit;
     long timeoutMs;
     long startTime;
+    MemoryLimit memoryLimit = new MemoryLimit(-1);
+    ImpactProfile profile = new ImpactProfile(false);
+    ImpactCauses causes;
+    long branchCount;
+    //scratch structures, reused for every evaluated node
+    final GroupAccumulator groups = new GroupAccumulator();
+    final GroupDictionary groupIds = new GroupDictionary();
+    //per relationship type : group key declared by the type, or NO_KEY
+    final int[] declaredKeys;
 
-    public ImpactEvaluator(List<Node> startNodes, HashMap nodesMap, List<Pair<RelationshipType, Direction>> relsAndDirs,
+    public ImpactEvaluator(long[] startNodes, StateStore nodesMap, List<Pair<RelationshipType, Direction>> relsAndDirs,
                             long resultLimit, long timeout) {
         this.nodesMap = nodesMap ;
-        this.startNodes = startNodes ;
+        this.startNodes = LongHashSet.newSetWith(startNodes) ;
         this.relsAndDirs=relsAndDirs ;
+        this.declaredKeys = CoreImpactGraph.declaredKeys(relsAndDirs, this.groupIds);
         this.resultLimit=resultLimit ;
         this.timeoutMs = timeout * 1000 ;
         this.startTime = System.currentTimeMillis();
     }
 
+    public void setMemoryLimit(MemoryLimit memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void setProfile(ImpactProfile profile) {
+        this.profile = profile;
+    }
+
+    //records the cause of each state change
+    public void setCauses(ImpactCauses causes) {
+        this.causes = causes;
+    }
+
     @Override
     public Evaluation evaluate(Path path) {
         //bail out if time or result limit reached
+        this.profile.pathsExpanded++;
         if (this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs)) {
+            this.profile.timeoutPrunes++;
             return Evaluation.EXCLUDE_AND_PRUNE;
         }
         if (this.resultLimit > 0 &&  (this.nodesMap.size() >= this.resultLimit)) {
+            this.profile.resultLimitPrunes.increment();
+            return Evaluation.EXCLUDE_AND_PRUNE;
+        }
+        //continued branches are never released before the traversal ends : their count bounds the traverser's memory
+        if (!this.memoryLimit.check(this.nodesMap.memoryUsage() + this.branchCount * BRANCH_BYTES)) {
             return Evaluation.EXCLUDE_AND_PRUNE;
         }
         Node node = path.endNode();
         //System.out.println("Evaluating end node ("+node.getId() +") from path " + path.toString());
 
-        //start nodes are FAILED, no need to compute their incoming impact state
-        if (this.startNodes.contains(node)) {return Evaluation.INCLUDE_AND_CONTINUE;}
+        //start nodes are FAILED, no need to compute their incoming impact state, unless given a lesser start state :
+        //reached from another node, they're evaluated as any other node
+        if (this.startNodes.contains(node.getId()) && (path.length() == 0
+                || this.nodesMap.getOrDefault(node.getId(), Impact.State.FAILED) == Impact.State.FAILED)) {
+            this.branchCount++;
+            return Evaluation.INCLUDE_AND_CONTINUE;
+        }
 
         //if node already exists as failed, it (& its impacted nodes) can't change state anymore. bail out already
-        if (this.nodesMap.getOrDefault(node, Impact.State.WORKING) == Impact.State.FAILED ) {
+        if (this.nodesMap.getOrDefault(node.getId(), Impact.State.WORKING) == Impact.State.FAILED ) {
+            this.profile.failedPrunes.increment();
             return Evaluation.EXCLUDE_AND_PRUNE;
         }
 
-        HashMap<String, List> groups= new HashMap<String, List>();
+        Impact.State previousState = this.nodesMap.get(node.getId());
+        Impact.State state = computeState(node);
+        //a start node keeps at least its start state
+        if (previousState != null && state.compare(previousState) < 0) state = previousState;
+        this.nodesMap.put(node.getId(), state);
+        if (this.causes != null && state != previousState) { this.causes.record(node.getId(), this.groups); }
+
+        this.branchCount++;
+        return Evaluation.INCLUDE_AND_CONTINUE;
+    }
 
+    //compute the state of a node from the states of its impacting nodes, as currently known in nodesMap
+    Impact.State computeState(Node node) {
+        this.groups.reset();
+        long nodeId = node.getId();
+        this.profile.evaluated(nodeId);
         //for each impact relationType
-        for (Pair<RelationshipType, Direction> relAndDir : this.relsAndDirs) {
+        for (int i = 0; i < this.relsAndDirs.size(); i++) {
+            Pair<RelationshipType, Direction> relAndDir = this.relsAndDirs.get(i);
+            int declaredKey = this.declaredKeys[i];
             //for each relation of that type
             for (Relationship r : node.getRelationships(relAndDir.other().reverse(), relAndDir.first())) {
                 //get the state of the impacting node (default to WORKING if node is not in nodesMAp)
-                Impact.State incomingState = nodesMap.getOrDefault(r.getOtherNode(node), Impact.State.WORKING);
-                //assign relation to a group, and add the incomingState to that group
-                String groupKey = computeImpactGroupKey(r);
-                List groupStates = groups.getOrDefault(groupKey, new ArrayList());
-                groupStates.add(incomingState);
-                groups.put(groupKey, groupStates);
-                //System.out.println("    evaluating incoming relation from (" + r.getOtherNodeId(node.getId()) + ") : " + groupKey + " = " + incomingState);
+                long impactingNodeId = r.getOtherNodeId(nodeId);
+                Impact.State incomingState = nodesMap.getOrDefault(impactingNodeId, Impact.State.WORKING);
+                this.profile.relationshipsRead.increment();
+                //accumulate the incomingState in the group of the relation
+                if (declaredKey != RuledRelationshipType.NO_KEY) {
+                    this.groups.add(declaredKey, incomingState, impactingNodeId);
+                } else {
+                    this.profile.propertyReads.increment();
+                    this.groups.add(CoreImpactGraph.groupKey(r, this.groupIds), incomingState, impactingNodeId);
+                }
             }
         }
-        //iterate over groups in groups, and compute the group state, then get the worst computed state of all groups
-        Impact.State worstState = Impact.State.WORKING;
-        for(Map.Entry<String, List> entry : groups.entrySet()) {
-            String groupKey = entry.getKey();
-            List<Impact.State> states = entry.getValue();
-            Impact.State groupState = computeImpactGroupState( groupKey, states);
-            worstState = (groupState.getStateValue() > worstState.getStateValue()) ? groupState : worstState;
-        }
-        //System.out.println("    impact groups : "+groups.toString()+" => node state : "+worstState);
-        this.nodesMap.put(node, worstState);
-
-        return Evaluation.INCLUDE_AND_CONTINUE;
-    }
-
-    //compute a group key for the relation, based on impact_propagation and impact_group properties
-    String computeImpactGroupKey(Relationship r) {
-        Impact.PropagationRule propagationRule  = Impact.PropagationRule.validate((String) r.getProperty("impact_propagation", null));
-        //if no impact_group specified : they're all together in a default group (per propagation rule) : ""
-        return propagationRule.toString()+ "-" + r.getProperty("impact_group", "")   ;
-    }
-
-    Impact.State computeImpactGroupState (String key, List<Impact.State> states) {
-        if (key.startsWith(Impact.PropagationRule.MOST_SEVERE.toString())) {
-            return Collections.max(states, (a,b) -> a.compare(b));
-        } else if (key.startsWith(Impact.PropagationRule.LEAST_SEVERE.toString())) {
-            return Collections.min(states, (a,b) -> a.compare(b));
-        } else if (key.startsWith(Impact.PropagationRule.PROTECTION.toString())) {
-            int numWorking = Collections.frequency(states, Impact.State.WORKING);
-            return (numWorking == 1) ? Impact.State.AT_RISK : Collections.min(states, (a,b) -> a.compare(b));
-        } else if (key.startsWith(Impact.PropagationRule.DEGRADATION.toString())) {
-            Impact.State maxState = Collections.max(states, (a,b) -> a.compare(b));
-            return (maxState.getStateValue() > Impact.State.DEGRADED.getStateValue() ) ? Impact.State.DEGRADED : maxState ;
-        } else if (key.startsWith(Impact.PropagationRule.RISK_PROPAGATION.toString())) {
-            Impact.State maxState = Collections.max(states, (a,b) -> a.compare(b));
-            return (maxState.getStateValue() > Impact.State.AT_RISK.getStateValue() ) ? Impact.State.AT_RISK : maxState ;
-        } else {
-            return Impact.State.WORKING;
-        }
+        //the worst computed state of all groups
+        return this.groups.result();
     }
 
 }
@@ -0,0 +1,35 @@
+package neo4j.impact;
+
+/**
+ * Read access to the impact relationships of the graph, by node id, as needed by the propagation engines.
+ * Implementations hold reusable cursors : a RelationshipCursor is only valid until the next call to impacted/impacting.
+ */
+public interface ImpactGraph extends AutoCloseable {
+
+    //the impact relationships going out of the node, towards the nodes it impacts
+    RelationshipCursor impacted(long nodeId);
+
+    //the impact relationships coming into the node, from its impacting nodes
+    RelationshipCursor impacting(long nodeId);
+
+    //names of the impact groups of the group keys
+    GroupDictionary groupIds();
+
+    @Override
+    void close();
+
+    interface RelationshipCursor {
+        boolean next();
+
+        //the node at the other end of the current relationship
+        long otherNodeId();
+
+        //the (propagation rule, impact group) key of the current relationship, see GroupAccumulator.key
+        int groupKey();
+
+        //whether groupKey reads the properties of the current relationship from the database
+        default boolean readsProperties() {
+            return false;
+        }
+    }
+}
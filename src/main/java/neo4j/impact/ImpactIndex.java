@@ -0,0 +1,172 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Materialized impacts of a failure set (the nodes with a given label) through a relationship filter.
+ * It's kept up to date after each commit by the ImpactIndexListener, with an IncrementalPropagator : only the region
+ * downstream of the changed impact relationships and failures is propagated again, the states of the other nodes can't
+ * have changed.
+ */
+public class ImpactIndex {
+    //per database name & index name
+    private static final ConcurrentMap<String, ImpactIndex> INDEXES = new ConcurrentHashMap<>();
+
+    final String databaseName;
+    final String name;
+    final String failureLabel;
+    final String relationshipFilter;
+    final List<Pair<RelationshipType, Direction>> relsAndDirs;
+    final LongHashSet failedNodes = new LongHashSet();
+    final NodeStateMap states = new NodeStateMap();
+    final IncrementalPropagator propagator = new IncrementalPropagator(this.failedNodes, this.states);
+    long updateCount;
+    long lastUpdateMillis;
+    String lastError;
+
+    ImpactIndex(String databaseName, String name, String failureLabel, String relationshipFilter,
+                List<Pair<RelationshipType, Direction>> relsAndDirs) {
+        this.databaseName = databaseName;
+        this.name = name;
+        this.failureLabel = failureLabel;
+        this.relationshipFilter = relationshipFilter;
+        this.relsAndDirs = relsAndDirs;
+    }
+
+    private static String key(String databaseName, String name) {
+        return databaseName + "/" + name;
+    }
+
+    public static void register(ImpactIndex index) {
+        if (INDEXES.putIfAbsent(key(index.databaseName, index.name), index) != null) {
+            throw new QueryExecutionException("impact index '" + index.name + "' already exists, drop it first", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+    }
+
+    public static ImpactIndex get(String databaseName, String name) {
+        ImpactIndex index = INDEXES.get(key(databaseName, name));
+        if (index == null) {
+            throw new QueryExecutionException("impact index '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return index;
+    }
+
+    public static ImpactIndex drop(String databaseName, String name) {
+        ImpactIndex index = INDEXES.remove(key(databaseName, name));
+        if (index == null) {
+            throw new QueryExecutionException("impact index '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return index;
+    }
+
+    public static List<ImpactIndex> list(String databaseName) {
+        List<ImpactIndex> indexes = new ArrayList<>();
+        for (ImpactIndex index : INDEXES.values()) {
+            if (index.databaseName.equals(databaseName)) indexes.add(index);
+        }
+        return indexes;
+    }
+
+    //full propagation from the nodes with the failure label
+    public synchronized void build(InternalTransaction tx) {
+        long startTime = System.currentTimeMillis();
+        tx.findNodes(Label.label(this.failureLabel)).forEachRemaining(node -> this.failedNodes.add(node.getId()));
+        this.failedNodes.forEach(node -> this.states.put(node, Impact.State.FAILED));
+        try (ImpactGraph graph = new KernelImpactGraph(tx.kernelTransaction(), this.relsAndDirs, new GroupDictionary())) {
+            new SccImpactPropagator(graph, this.failedNodes.toArray(), this.states, -1, -1, -1).propagate();
+        }
+        this.lastUpdateMillis = System.currentTimeMillis() - startTime;
+    }
+
+    //the changes of a transaction that may change the impacts, read before it's committed
+    public Changes changes(TransactionData data) {
+        Changes changes = new Changes();
+        for (Relationship relationship : data.createdRelationships()) { addImpactedNodes(relationship, changes.impactedNodes); }
+        for (Relationship relationship : data.deletedRelationships()) { addImpactedNodes(relationship, changes.impactedNodes); }
+        for (PropertyEntry<Relationship> property : data.assignedRelationshipProperties()) {
+            if (isImpactProperty(property.key())) addImpactedNodes(property.entity(), changes.impactedNodes);
+        }
+        for (PropertyEntry<Relationship> property : data.removedRelationshipProperties()) {
+            if (isImpactProperty(property.key())) addImpactedNodes(property.entity(), changes.impactedNodes);
+        }
+        for (LabelEntry label : data.assignedLabels()) {
+            if (label.label().name().equals(this.failureLabel)) changes.addedFailures.add(label.node().getId());
+        }
+        for (LabelEntry label : data.removedLabels()) {
+            if (label.label().name().equals(this.failureLabel)) changes.removedFailures.add(label.node().getId());
+        }
+        for (Node node : data.deletedNodes()) { changes.deletedNodes.add(node.getId()); }
+        return changes;
+    }
+
+    private static boolean isImpactProperty(String key) {
+        return key.equals("impact_propagation") || key.equals("impact_group");
+    }
+
+    //the node(s) impacted through the relationship, if it's an impact relationship of the filter
+    private void addImpactedNodes(Relationship relationship, LongHashSet impactedNodes) {
+        for (Pair<RelationshipType, Direction> relAndDir : this.relsAndDirs) {
+            if (relationship.isType(relAndDir.first())) {
+                impactedNodes.add(relAndDir.other() == Direction.INCOMING ? relationship.getStartNodeId() : relationship.getEndNodeId());
+            }
+        }
+    }
+
+    //propagates again the region downstream of the changes, after they're committed
+    public synchronized void update(Changes changes, InternalTransaction tx) {
+        long startTime = System.currentTimeMillis();
+        changes.deletedNodes.forEach(this.propagator::forget);
+        changes.removedFailures.forEach(this.failedNodes::remove);
+        changes.addedFailures.removeAll(changes.deletedNodes);
+
+        try (ImpactGraph graph = new KernelImpactGraph(tx.kernelTransaction(), this.relsAndDirs, new GroupDictionary())) {
+            if (changes.impactedNodes.isEmpty() && changes.removedFailures.isEmpty() && changes.deletedNodes.isEmpty()) {
+                //only new failures : states can only get worse
+                this.propagator.fail(graph, changes.addedFailures);
+            } else {
+                changes.addedFailures.forEach(this.failedNodes::add);
+                LongHashSet seeds = new LongHashSet();
+                seeds.addAll(changes.impactedNodes);
+                seeds.addAll(changes.addedFailures);
+                seeds.addAll(changes.removedFailures);
+                seeds.removeAll(changes.deletedNodes);
+                this.propagator.repropagate(graph, seeds);
+            }
+        }
+        this.propagator.drainChanges((node, previousState, state) -> {});
+        this.updateCount++;
+        this.lastUpdateMillis = System.currentTimeMillis() - startTime;
+        this.lastError = null;
+    }
+
+    synchronized void failed(RuntimeException e) {
+        this.lastError = e.toString();
+    }
+
+    //copy of the current states, for reading while the index gets updated
+    public synchronized NodeStateMap snapshot() {
+        return this.states.copy();
+    }
+
+    public static class Changes {
+        final LongHashSet impactedNodes = new LongHashSet();
+        final LongHashSet addedFailures = new LongHashSet();
+        final LongHashSet removedFailures = new LongHashSet();
+        final LongHashSet deletedNodes = new LongHashSet();
+
+        public boolean isEmpty() {
+            return impactedNodes.isEmpty() && addedFailures.isEmpty() && removedFailures.isEmpty() && deletedNodes.isEmpty();
+        }
+    }
+}
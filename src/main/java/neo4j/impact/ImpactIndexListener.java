@@ -0,0 +1,58 @@
+package neo4j.impact;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.database.NamedDatabaseId;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the ImpactIndexes of a database up to date : the changes relevant to each index are collected before the
+ * commit (while the deleted entities can still be read), and propagated after it, in a new transaction.
+ * Registered on a database when its first index is created.
+ */
+public class ImpactIndexListener implements TransactionEventListener<Map<ImpactIndex, ImpactIndex.Changes>> {
+    //per database id : the procedures get a new GraphDatabaseService for each call
+    private static final Set<NamedDatabaseId> REGISTERED = new HashSet<>();
+
+    public static synchronized void registerOn(GraphDatabaseAPI db) {
+        if (!REGISTERED.add(db.databaseId())) return;
+        db.getDependencyResolver().resolveDependency(DatabaseManagementService.class)
+                .registerTransactionEventListener(db.databaseName(), new ImpactIndexListener());
+    }
+
+    @Override
+    public Map<ImpactIndex, ImpactIndex.Changes> beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+        Map<ImpactIndex, ImpactIndex.Changes> changes = new HashMap<>();
+        for (ImpactIndex index : ImpactIndex.list(databaseService.databaseName())) {
+            ImpactIndex.Changes indexChanges = index.changes(data);
+            if (!indexChanges.isEmpty()) changes.put(index, indexChanges);
+        }
+        return changes.isEmpty() ? null : changes;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Map<ImpactIndex, ImpactIndex.Changes> changes, GraphDatabaseService databaseService) {
+        if (changes == null) return;
+        for (Map.Entry<ImpactIndex, ImpactIndex.Changes> indexChanges : changes.entrySet()) {
+            //the transaction is committed : a failed update can only be reported by the index
+            try (Transaction tx = databaseService.beginTx()) {
+                indexChanges.getKey().update(indexChanges.getValue(), (InternalTransaction) tx);
+            } catch (RuntimeException e) {
+                indexChanges.getKey().failed(e);
+            }
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Map<ImpactIndex, ImpactIndex.Changes> changes, GraphDatabaseService databaseService) {
+    }
+}
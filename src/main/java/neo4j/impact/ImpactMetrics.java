@@ -0,0 +1,87 @@
+package neo4j.impact;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of all the propagations since the start of the JVM, summed from the ImpactProfile of each call.
+ * Returned by neo4j.impact.metrics(), and exposed over JMX (neo4j.impact:type=Metrics) for the monitoring tools
+ * that poll MBeans.
+ */
+public class ImpactMetrics implements ImpactMetricsMBean {
+    private static final ImpactMetrics INSTANCE = new ImpactMetrics();
+    private static volatile boolean registered;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder relationshipsRead = new LongAdder();
+    private final LongAdder propertyReads = new LongAdder();
+    private final LongAdder pathsExpanded = new LongAdder();
+    private final LongAdder failedPrunes = new LongAdder();
+    private final LongAdder timeoutPrunes = new LongAdder();
+    private final LongAdder resultLimitPrunes = new LongAdder();
+    private final LongAdder memoryLimitPrunes = new LongAdder();
+    private final LongAdder results = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+
+    public static ImpactMetrics get() {
+        if (!registered) register();
+        return INSTANCE;
+    }
+
+    private static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName("neo4j.impact:type=Metrics"));
+        } catch (JMException e) {
+            //already registered by another class loader : the metrics are still returned by the procedure
+        }
+    }
+
+    public void record(ImpactProfile profile) {
+        this.calls.increment();
+        this.evaluations.add(profile.evaluations.sum());
+        this.relationshipsRead.add(profile.relationshipsRead.sum());
+        this.propertyReads.add(profile.propertyReads.sum());
+        this.pathsExpanded.add(profile.pathsExpanded);
+        this.failedPrunes.add(profile.failedPrunes.sum());
+        this.timeoutPrunes.add(profile.timeoutPrunes);
+        this.resultLimitPrunes.add(profile.resultLimitPrunes.sum());
+        this.memoryLimitPrunes.add(profile.memoryLimitPrunes);
+        this.results.add(profile.results);
+        this.totalMillis.add(profile.parseMillis + profile.propagateMillis + profile.streamMillis);
+    }
+
+    public Map<String, Long> values() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        values.put("calls", getCalls());
+        values.put("evaluations", getEvaluations());
+        values.put("relationshipsRead", getRelationshipsRead());
+        values.put("propertyReads", getPropertyReads());
+        values.put("pathsExpanded", getPathsExpanded());
+        values.put("failedPrunes", getFailedPrunes());
+        values.put("timeoutPrunes", getTimeoutPrunes());
+        values.put("resultLimitPrunes", getResultLimitPrunes());
+        values.put("memoryLimitPrunes", getMemoryLimitPrunes());
+        values.put("results", getResults());
+        values.put("totalMillis", getTotalMillis());
+        return values;
+    }
+
+    @Override public long getCalls() { return this.calls.sum(); }
+    @Override public long getEvaluations() { return this.evaluations.sum(); }
+    @Override public long getRelationshipsRead() { return this.relationshipsRead.sum(); }
+    @Override public long getPropertyReads() { return this.propertyReads.sum(); }
+    @Override public long getPathsExpanded() { return this.pathsExpanded.sum(); }
+    @Override public long getFailedPrunes() { return this.failedPrunes.sum(); }
+    @Override public long getTimeoutPrunes() { return this.timeoutPrunes.sum(); }
+    @Override public long getResultLimitPrunes() { return this.resultLimitPrunes.sum(); }
+    @Override public long getMemoryLimitPrunes() { return this.memoryLimitPrunes.sum(); }
+    @Override public long getResults() { return this.results.sum(); }
+    @Override public long getTotalMillis() { return this.totalMillis.sum(); }
+}
@@ -0,0 +1,18 @@
+package neo4j.impact;
+
+/**
+ * JMX view of the ImpactMetrics
+ */
+public interface ImpactMetricsMBean {
+    long getCalls();
+    long getEvaluations();
+    long getRelationshipsRead();
+    long getPropertyReads();
+    long getPathsExpanded();
+    long getFailedPrunes();
+    long getTimeoutPrunes();
+    long getResultLimitPrunes();
+    long getMemoryLimitPrunes();
+    long getResults();
+    long getTotalMillis();
+}
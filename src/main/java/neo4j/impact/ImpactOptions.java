@@ -0,0 +1,99 @@
+package neo4j.impact;
+
+import org.neo4j.graphdb.QueryExecutionException;
+
+/**
+ * options of neo4j.impact.compute, parsed from a comma-separated list of keywords (ex: 'worklist')
+ */
+public class ImpactOptions {
+
+    public enum Engine {
+        TRAVERSAL,  //default : path traversal (NODE_PATH uniqueness), one evaluation per path
+        WORKLIST,   //fixpoint propagation : one evaluation per node, re-evaluated only when an impacting node changes state
+        SCC         //strongly connected components solved in topological order : nodes outside of cycles are evaluated once
+    }
+
+    public enum GraphAccess {
+        CORE,       //default : Node & Relationship proxies
+        KERNEL      //kernel API cursors (worklist engine only)
+    }
+
+    Engine engine = Engine.TRAVERSAL;
+    GraphAccess graphAccess = GraphAccess.CORE;
+    boolean streaming;      //results returned while the propagation runs, as their state gets final (scc engine)
+    String projection;      //name of an in-memory projection to read instead of the database (ex: 'projection:network')
+    boolean severityFirst;  //worklist ordered by the severity the nodes can get, then depth, instead of breadth-first
+    boolean cached;         //results stored in & returned from the ImpactCache
+    boolean explained;      //root cause of each impacted node recorded (ImpactCauses), single-threaded
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public GraphAccess getGraphAccess() {
+        return graphAccess;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public String getProjection() {
+        return projection;
+    }
+
+    public boolean isSeverityFirst() {
+        return severityFirst;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public boolean isExplained() {
+        return explained;
+    }
+
+    //the options that may change the results, normalized
+    public String key() {
+        return engine + "," + graphAccess + "," + streaming + "," + severityFirst + "," + projection;
+    }
+
+    public static ImpactOptions parse(String optionsString) throws QueryExecutionException {
+        ImpactOptions options = new ImpactOptions();
+        if (optionsString == null || optionsString.trim().isEmpty()) return options;
+        for (String option : optionsString.trim().split(",")) {
+            String trimmedValue = option.trim();
+            if (trimmedValue.equalsIgnoreCase("traversal")) {
+                options.engine = Engine.TRAVERSAL;
+            } else if (trimmedValue.equalsIgnoreCase("worklist")) {
+                options.engine = Engine.WORKLIST;
+            } else if (trimmedValue.equalsIgnoreCase("scc")) {
+                options.engine = Engine.SCC;
+            } else if (trimmedValue.equalsIgnoreCase("stream")) {
+                options.streaming = true;
+            } else if (trimmedValue.equalsIgnoreCase("severity")) {
+                options.severityFirst = true;
+            } else if (trimmedValue.equalsIgnoreCase("cache")) {
+                options.cached = true;
+            } else if (trimmedValue.equalsIgnoreCase("explain")) {
+                options.explained = true;
+            } else if (trimmedValue.equalsIgnoreCase("kernel")) {
+                options.graphAccess = GraphAccess.KERNEL;
+            } else if (trimmedValue.toLowerCase().startsWith("projection:") && trimmedValue.length() > "projection:".length()) {
+                options.projection = trimmedValue.substring("projection:".length()).trim();
+            } else {
+                throw new QueryExecutionException("parameter 'options' expects one (or several, with a comma separating them) of the following keywords : 'traversal', 'worklist', 'scc', 'stream', 'severity', 'kernel', 'projection:<name>', 'cache', 'explain'. Found '" + option + "'", null, "Neo.ClientError.Statement.SyntaxError");
+            }
+        }
+        //only the components of the scc engine are solved in topological order : their nodes are final once solved
+        if (options.streaming) options.engine = Engine.SCC;
+        //only the worklist engine has an evaluation order to choose
+        if (options.severityFirst && !options.streaming) options.engine = Engine.WORKLIST;
+        //the path traversal only works with the core API
+        if ((options.graphAccess != GraphAccess.CORE || options.projection != null) && options.engine == Engine.TRAVERSAL) {
+            options.engine = Engine.WORKLIST;
+        }
+        return options;
+    }
+}
@@ -0,0 +1,142 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counters of one propagation : work done by the engine (node evaluations, relationships & properties read,
+ * paths expanded), the reasons it pruned or stopped, and the time spent per phase.
+ * The counters of every call are added to the ImpactMetrics. Evaluations per node are only tracked when 'detailed'
+ * (neo4j.impact.profile), to report re-evaluations.
+ */
+public class ImpactProfile {
+    final boolean detailed;
+    String engine;
+    //per node evaluation counts, if detailed
+    private final LongIntHashMap evaluationsByNode = new LongIntHashMap();
+
+    //updated by the workers of the parallel engine
+    final LongAdder evaluations = new LongAdder();
+    final LongAdder relationshipsRead = new LongAdder();
+    final LongAdder propertyReads = new LongAdder();
+    final LongAdder failedPrunes = new LongAdder();
+    final LongAdder resultLimitPrunes = new LongAdder();
+    long pathsExpanded;
+    long timeoutPrunes;
+    long memoryLimitPrunes;
+    long results;
+    long parseMillis;
+    long propagateMillis;
+    long streamMillis;
+    long peakMemoryBytes;
+    private long phaseStart = System.currentTimeMillis();
+
+    public ImpactProfile(boolean detailed) {
+        this.detailed = detailed;
+    }
+
+    //end of the parsing of the parameters
+    public void parsed() {
+        this.parseMillis = lap();
+    }
+
+    //end of the propagation (of its preparation, when streaming)
+    public void propagated() {
+        this.propagateMillis = lap();
+    }
+
+    //all results consumed
+    public void streamed() {
+        this.streamMillis = lap();
+    }
+
+    private long lap() {
+        long now = System.currentTimeMillis();
+        long millis = now - this.phaseStart;
+        this.phaseStart = now;
+        return millis;
+    }
+
+    public void evaluated(long nodeId) {
+        this.evaluations.increment();
+        if (this.detailed) {
+            synchronized (this.evaluationsByNode) { this.evaluationsByNode.addToValue(nodeId, 1); }
+        }
+    }
+
+    //number of distinct nodes evaluated (detailed only)
+    public long nodesEvaluated() {
+        return this.evaluationsByNode.size();
+    }
+
+    //highest number of evaluations of a node (detailed only)
+    public long maxEvaluations() {
+        return this.evaluationsByNode.isEmpty() ? 0 : this.evaluationsByNode.max();
+    }
+
+    //the graph, counting the relationships read, and their properties if they're read from the database
+    public ImpactGraph graph(ImpactGraph graph) {
+        return new CountingImpactGraph(graph);
+    }
+
+    private class CountingImpactGraph implements ImpactGraph {
+        private final ImpactGraph graph;
+        private final Cursor cursor = new Cursor();
+        //summed in the profile when closed, each graph being used by one thread only
+        private long relationshipCount;
+        private long propertyReadCount;
+
+        CountingImpactGraph(ImpactGraph graph) {
+            this.graph = graph;
+        }
+
+        @Override
+        public RelationshipCursor impacted(long nodeId) {
+            this.cursor.relationships = this.graph.impacted(nodeId);
+            return this.cursor;
+        }
+
+        @Override
+        public RelationshipCursor impacting(long nodeId) {
+            this.cursor.relationships = this.graph.impacting(nodeId);
+            return this.cursor;
+        }
+
+        @Override
+        public GroupDictionary groupIds() {
+            return this.graph.groupIds();
+        }
+
+        @Override
+        public void close() {
+            relationshipsRead.add(this.relationshipCount);
+            propertyReads.add(this.propertyReadCount);
+            this.relationshipCount = 0;
+            this.propertyReadCount = 0;
+            this.graph.close();
+        }
+
+        private class Cursor implements RelationshipCursor {
+            RelationshipCursor relationships;
+
+            @Override
+            public boolean next() {
+                if (!this.relationships.next()) return false;
+                relationshipCount++;
+                return true;
+            }
+
+            @Override
+            public long otherNodeId() {
+                return this.relationships.otherNodeId();
+            }
+
+            @Override
+            public int groupKey() {
+                if (this.relationships.readsProperties()) propertyReadCount++;
+                return this.relationships.groupKey();
+            }
+        }
+    }
+}
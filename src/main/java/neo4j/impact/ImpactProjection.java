@@ -0,0 +1,81 @@
+package neo4j.impact;
+
+import org.neo4j.graphdb.QueryExecutionException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Named in-memory projection of the impact relationships of a database (CsrImpactGraph), created once and shared by the
+ * procedure calls until it's dropped.
+ * A projection is a snapshot : the impact relationships created, deleted or updated after it's created aren't seen.
+ */
+public class ImpactProjection {
+    //per database name & projection name
+    private static final ConcurrentMap<String, ImpactProjection> PROJECTIONS = new ConcurrentHashMap<>();
+
+    final String databaseName;
+    final String name;
+    final String relationshipFilter;
+    final CsrImpactGraph graph;
+    final long createdAt;
+
+    private ImpactProjection(String databaseName, String name, String relationshipFilter, CsrImpactGraph graph) {
+        this.databaseName = databaseName;
+        this.name = name;
+        this.relationshipFilter = relationshipFilter;
+        this.graph = graph;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    private static String key(String databaseName, String name) {
+        return databaseName + "/" + name;
+    }
+
+    public static ImpactProjection register(String databaseName, String name, String relationshipFilter, CsrImpactGraph graph) {
+        ImpactProjection projection = new ImpactProjection(databaseName, name, relationshipFilter, graph);
+        if (PROJECTIONS.putIfAbsent(key(databaseName, name), projection) != null) {
+            throw new QueryExecutionException("projection '" + name + "' already exists, drop it first", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return projection;
+    }
+
+    public static ImpactProjection get(String databaseName, String name) {
+        ImpactProjection projection = PROJECTIONS.get(key(databaseName, name));
+        if (projection == null) {
+            throw new QueryExecutionException("projection '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return projection;
+    }
+
+    public static ImpactProjection drop(String databaseName, String name) {
+        ImpactProjection projection = PROJECTIONS.remove(key(databaseName, name));
+        if (projection == null) {
+            throw new QueryExecutionException("projection '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return projection;
+    }
+
+    public static List<ImpactProjection> list(String databaseName) {
+        List<ImpactProjection> projections = new ArrayList<>();
+        for (ImpactProjection projection : PROJECTIONS.values()) {
+            if (projection.databaseName.equals(databaseName)) projections.add(projection);
+        }
+        return projections;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRelationshipFilter() {
+        return relationshipFilter;
+    }
+
+    //a view of the projection, with its own cursor
+    public CsrImpactGraph graph() {
+        return graph.view();
+    }
+}
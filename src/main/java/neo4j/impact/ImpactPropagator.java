@@ -0,0 +1,189 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Worklist (fixpoint) propagation engine.
+ * Each node is evaluated when first reached, and only re-evaluated when one of its impacting nodes changed state.
+ * States can only get worse, so the propagation converges after roughly one pass per impact relationship,
+ * instead of one evaluation per path as with the NODE_PATH traversal.
+ * The incoming impact relationships of a node are scanned once, when it is first evaluated : after that, its group
+ * counters are updated in O(1) whenever one of its impacting nodes changes state.
+ * Severity-first, the worklist is a priority queue instead of a FIFO : the nodes that can get the most severe state
+ * (from the state of the node that reached them & the rule of the relationship) are evaluated first, closest first,
+ * so that the nodes kept under a result or time limit are the most severe ones.
+ * Start nodes have their start state in nodesMap (FAILED if none) : a start node that isn't FAILED gets worse as any
+ * other node.
+ */
+public class ImpactPropagator {
+    StateStore nodesMap;
+    LongHashSet startNodes;
+    ImpactGraph graph;
+    GroupCounters counters = new GroupCounters();
+    long maxLevel;
+    long resultLimit;
+    long timeoutMs;
+    long startTime;
+    boolean severityFirst;
+    MemoryLimit memoryLimit = new MemoryLimit(-1);
+    ImpactProfile profile = new ImpactProfile(false);
+    ImpactCauses causes;
+    LongQueue worklist = new LongQueue();
+    LongHashSet queued = new LongHashSet();
+    LongPriorityQueue prioritizedWorklist = new LongPriorityQueue();
+    //hop distance from the closest start node
+    LongIntHashMap depths = new LongIntHashMap();
+    //nodes reached again through a shorter path : nodes beyond the hop limit may now be discovered from them
+    LongHashSet shortened = new LongHashSet();
+
+    public ImpactPropagator(ImpactGraph graph, long[] startNodes, StateStore nodesMap,
+                            long maxLevel, long resultLimit, long timeout) {
+        this(graph, startNodes, nodesMap, maxLevel, resultLimit, timeout, false);
+    }
+
+    public ImpactPropagator(ImpactGraph graph, long[] startNodes, StateStore nodesMap,
+                            long maxLevel, long resultLimit, long timeout, boolean severityFirst) {
+        this.graph = graph ;
+        this.nodesMap = nodesMap ;
+        this.startNodes = LongHashSet.newSetWith(startNodes) ;
+        this.maxLevel = maxLevel ;
+        this.resultLimit = resultLimit ;
+        this.timeoutMs = timeout * 1000 ;
+        this.startTime = System.currentTimeMillis();
+        this.severityFirst = severityFirst ;
+    }
+
+    public void setMemoryLimit(MemoryLimit memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void setProfile(ImpactProfile profile) {
+        this.profile = profile;
+    }
+
+    //records the cause of each state change
+    public void setCauses(ImpactCauses causes) {
+        this.causes = causes;
+    }
+
+    public void propagate() {
+        this.startNodes.forEach(start -> this.depths.put(start, 0));
+        this.startNodes.forEach(start -> {
+            Impact.State startState = this.nodesMap.getOrDefault(start, Impact.State.FAILED);
+            enqueueImpactedNodes(start, 0, startState, startState);
+        });
+
+        while (!isWorklistEmpty()) {
+            //bail out if time limit reached
+            if (this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs)) {
+                this.profile.timeoutPrunes++;
+                break;
+            }
+            //bail out if memory limit reached
+            if (!this.memoryLimit.check(memoryUsage())) {
+                break;
+            }
+            long node = poll();
+            boolean shortened = this.shortened.remove(node);
+
+            //FAILED start nodes can't change state, no need to compute their incoming impact state
+            if (this.startNodes.contains(node) && this.nodesMap.getOrDefault(node, Impact.State.FAILED) == Impact.State.FAILED) { continue; }
+
+            Impact.State previousState = this.nodesMap.get(node);
+            if (previousState == null) {
+                //first evaluation of that node : it adds a result, unless the result limit is reached
+                if (this.resultLimit > 0 && this.nodesMap.size() >= this.resultLimit) {
+                    this.profile.resultLimitPrunes.increment();
+                    continue;
+                }
+            }
+
+            //already failed, it (& its impacted nodes) can't change state anymore
+            Impact.State state;
+            if (previousState == Impact.State.FAILED) {
+                this.profile.failedPrunes.increment();
+                state = previousState;
+            } else {
+                state = computeState(node);
+            }
+            if (previousState != null && state.compare(previousState) <= 0) {
+                //no change : its impacted nodes don't need to be re-evaluated, unless they can now be discovered
+                if (shortened) { enqueueImpactedNodes(node, this.depths.get(node), state, state); }
+                continue;
+            }
+            this.nodesMap.put(node, state);
+            if (this.causes != null) { this.causes.record(node, this.graph, this.nodesMap); }
+            enqueueImpactedNodes(node, this.depths.get(node), previousState, state);
+        }
+    }
+
+    //states, counters, depths & worklist. Primitive hash tables : about 16 bytes per long key, 24 with an int value
+    private long memoryUsage() {
+        long worklistUsage = this.severityFirst ? this.prioritizedWorklist.memoryUsage()
+                : this.worklist.memoryUsage() + this.queued.size() * 16L;
+        return this.nodesMap.memoryUsage() + this.counters.memoryUsage() + this.depths.size() * 24L
+                + this.shortened.size() * 16L + worklistUsage + (this.causes == null ? 0 : this.causes.memoryUsage());
+    }
+
+    private boolean isWorklistEmpty() {
+        return this.severityFirst ? this.prioritizedWorklist.isEmpty() : this.worklist.isEmpty();
+    }
+
+    private long poll() {
+        if (this.severityFirst) { return this.prioritizedWorklist.poll(); }
+        long node = this.worklist.poll();
+        this.queued.remove(node);
+        return node;
+    }
+
+    //severity-first : the worst state the node can get through the relationship (from the new state of the impacting
+    //node) first, then lowest depth
+    private void enqueue(long node, int groupKey, Impact.State impactingState, int depth) {
+        if (this.severityFirst) {
+            Impact.State reachableState = GroupAccumulator.groupState(GroupAccumulator.ruleOf(groupKey), impactingState, impactingState, 0);
+            long priority = ((long) (Impact.State.FAILED.getStateValue() - reachableState.getStateValue()) << 32) | depth;
+            this.prioritizedWorklist.add(node, priority);
+        } else if (this.queued.add(node)) {
+            this.worklist.add(node);
+        }
+    }
+
+    //state of the node from its group counters, built on first evaluation with a full scan of its incoming impact relationships
+    private Impact.State computeState(long node) {
+        this.profile.evaluated(node);
+        if (!this.counters.isInitialized(node)) {
+            this.counters.initialize(node);
+            ImpactGraph.RelationshipCursor impacting = this.graph.impacting(node);
+            while (impacting.next()) {
+                Impact.State incomingState = this.nodesMap.getOrDefault(impacting.otherNodeId(), Impact.State.WORKING);
+                this.counters.add(node, impacting.groupKey(), incomingState);
+            }
+        }
+        return this.counters.state(node);
+    }
+
+    //mark the nodes impacted by 'node' as dirty, and update their counters with the new state of 'node'.
+    //Nodes beyond the hop limit are not discovered, but already known nodes are always re-evaluated
+    private void enqueueImpactedNodes(long node, int depth, Impact.State previousState, Impact.State state) {
+        boolean canDiscover = this.maxLevel < 0 || depth < this.maxLevel;
+        //nodes not yet evaluated were counted as WORKING by the nodes they impact
+        Impact.State countedState = (previousState == null) ? Impact.State.WORKING : previousState;
+        ImpactGraph.RelationshipCursor impacted = this.graph.impacted(node);
+        while (impacted.next()) {
+            long impactedNode = impacted.otherNodeId();
+            if (countedState != state && this.counters.isInitialized(impactedNode)) {
+                this.counters.update(impactedNode, impacted.groupKey(), countedState, state);
+            }
+            if (!this.depths.containsKey(impactedNode)) {
+                if (!canDiscover) { continue; }
+                this.depths.put(impactedNode, depth + 1);
+            } else if (this.maxLevel >= 0 && depth + 1 < this.depths.get(impactedNode)) {
+                //out of breadth-first order (severity-first) : the hop limit counts from the shortest path
+                this.depths.put(impactedNode, depth + 1);
+                this.shortened.add(impactedNode);
+            }
+            enqueue(impactedNode, impacted.groupKey(), state, this.depths.get(impactedNode));
+        }
+    }
+}
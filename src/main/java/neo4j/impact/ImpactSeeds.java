@@ -0,0 +1,126 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.NodeLabelIndexCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.schema.IndexOrder;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.values.storable.Value;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Start nodes read from the graph instead of given as a list : the nodes of a label, each with the state mapped from the
+ * value of one of their properties, ex : {label:'Alarmed', property:'severity', states:{critical:'FAILED', major:'DEGRADED'}}.
+ * Without 'states', the property values are state names. Without 'property', or for the nodes whose value isn't mapped,
+ * the nodes get 'state' (FAILED by default without 'property', none with it : the node isn't a start node).
+ * Read in bulk from the label index, with kernel cursors.
+ */
+public class ImpactSeeds {
+    final String label;
+    final String property; //null : all the nodes of the label get the default state
+    final Map<String, Impact.State> states; //per property value, null : the values are state names
+    final Impact.State defaultState; //null : the nodes without a mapped value aren't start nodes
+
+    ImpactSeeds(String label, String property, Map<String, Impact.State> states, Impact.State defaultState) {
+        this.label = label;
+        this.property = property;
+        this.states = states;
+        this.defaultState = defaultState;
+    }
+
+    public static ImpactSeeds parse(Map<String, Object> start) {
+        for (String key : start.keySet()) {
+            if (!key.equals("label") && !key.equals("property") && !key.equals("states") && !key.equals("state")) {
+                throw argumentError("unknown key '" + key + "' in parameter 'start' : expected label, property, states or state");
+            }
+        }
+        if (!(start.get("label") instanceof String) || ((String) start.get("label")).trim().isEmpty()) {
+            throw argumentError("parameter 'start' : a map of start states needs a 'label'");
+        }
+        String property = (start.get("property") == null) ? null : start.get("property").toString().trim();
+        Map<String, Impact.State> states = null;
+        if (start.get("states") != null) {
+            if (!(start.get("states") instanceof Map) || property == null) {
+                throw argumentError("parameter 'start' : 'states' maps the values of the 'property' to states, ex : {critical:'FAILED'}");
+            }
+            states = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) start.get("states")).entrySet()) {
+                states.put(entry.getKey().toString(), state(entry.getValue()));
+            }
+        }
+        Impact.State defaultState = (start.get("state") != null) ? state(start.get("state"))
+                : (property == null) ? Impact.State.FAILED : null;
+        return new ImpactSeeds(((String) start.get("label")).trim(), property, states, defaultState);
+    }
+
+    private static Impact.State state(Object name) {
+        Impact.State state = stateOf(name);
+        if (state == null) {
+            throw argumentError("parameter 'start' : unknown state '" + name + "', expected FAILED, DEGRADED, AT_RISK or WORKING");
+        }
+        return state;
+    }
+
+    private static Impact.State stateOf(Object name) {
+        try {
+            return Impact.State.valueOf(name.toString().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static QueryExecutionException argumentError(String message) {
+        return new QueryExecutionException(message, null, "Neo.ClientError.Statement.ArgumentError");
+    }
+
+    //puts the state of each start node, returns the start nodes. WORKING nodes aren't start nodes
+    public long[] read(KernelTransaction ktx, StateStore nodesMap) {
+        LongArrayList startNodes = new LongArrayList();
+        int labelId = ktx.tokenRead().nodeLabel(this.label);
+        if (labelId == TokenRead.NO_TOKEN) return startNodes.toArray();
+        int propertyKey = (this.property == null) ? TokenRead.NO_TOKEN : ktx.tokenRead().propertyKey(this.property);
+        try (NodeLabelIndexCursor labelCursor = ktx.cursors().allocateNodeLabelIndexCursor(ktx.pageCursorTracer());
+             NodeCursor nodeCursor = ktx.cursors().allocateNodeCursor(ktx.pageCursorTracer());
+             PropertyCursor propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.pageCursorTracer(), ktx.memoryTracker())) {
+            ktx.dataRead().nodeLabelScan(labelId, labelCursor, IndexOrder.NONE);
+            while (labelCursor.next()) {
+                Impact.State state = this.defaultState;
+                //the property is only read if it exists in the database
+                if (propertyKey != TokenRead.NO_TOKEN) {
+                    labelCursor.node(nodeCursor);
+                    if (!nodeCursor.next()) continue;
+                    nodeCursor.properties(propertyCursor);
+                    while (propertyCursor.next()) {
+                        if (propertyCursor.propertyKey() != propertyKey) continue;
+                        Impact.State mapped = mappedState(propertyCursor.propertyValue());
+                        if (mapped != null) state = mapped;
+                        break;
+                    }
+                }
+                if (state == null || state == Impact.State.WORKING) continue;
+                nodesMap.put(labelCursor.nodeReference(), state);
+                startNodes.add(labelCursor.nodeReference());
+            }
+        }
+        return startNodes.toArray();
+    }
+
+    //state mapped from a property value, null if none
+    private Impact.State mappedState(Value value) {
+        String key = String.valueOf(value.asObjectCopy());
+        return (this.states == null) ? stateOf(key) : this.states.get(key);
+    }
+
+    @Override
+    public String toString() {
+        return "{label:" + this.label + (this.property == null ? "" : ", property:" + this.property)
+                + (this.states == null ? "" : ", states:" + this.states)
+                + (this.defaultState == null ? "" : ", state:" + this.defaultState) + "}";
+    }
+}
@@ -0,0 +1,74 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.QueryExecutionException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Failure set and impacted states of an ongoing incident, held between procedure calls : failures are added or
+ * cleared one at a time, and only their consequences are propagated (IncrementalPropagator).
+ */
+public class ImpactSession {
+    //per database name & session name
+    private static final ConcurrentMap<String, ImpactSession> SESSIONS = new ConcurrentHashMap<>();
+
+    final String databaseName;
+    final String name;
+    final String relationshipFilter;
+    final String options;
+    final LongHashSet failedNodes = new LongHashSet();
+    final NodeStateMap states = new NodeStateMap();
+    final IncrementalPropagator propagator = new IncrementalPropagator(this.failedNodes, this.states);
+
+    ImpactSession(String databaseName, String name, String relationshipFilter, String options) {
+        this.databaseName = databaseName;
+        this.name = name;
+        this.relationshipFilter = relationshipFilter;
+        this.options = options;
+    }
+
+    private static String key(String databaseName, String name) {
+        return databaseName + "/" + name;
+    }
+
+    public static void register(ImpactSession session) {
+        if (SESSIONS.putIfAbsent(key(session.databaseName, session.name), session) != null) {
+            throw new QueryExecutionException("impact session '" + session.name + "' already exists, drop it first", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+    }
+
+    public static ImpactSession get(String databaseName, String name) {
+        ImpactSession session = SESSIONS.get(key(databaseName, name));
+        if (session == null) {
+            throw new QueryExecutionException("impact session '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return session;
+    }
+
+    public static ImpactSession drop(String databaseName, String name) {
+        ImpactSession session = SESSIONS.remove(key(databaseName, name));
+        if (session == null) {
+            throw new QueryExecutionException("impact session '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return session;
+    }
+
+    //adds failed nodes (fail) or clears them (!fail), and reports the nodes whose state changed
+    public synchronized void apply(ImpactGraph graph, long[] nodes, boolean fail, IncrementalPropagator.ChangeConsumer changes) {
+        LongHashSet changedNodes = LongHashSet.newSetWith(nodes);
+        if (fail) {
+            this.propagator.fail(graph, changedNodes);
+        } else {
+            changedNodes.retainAll(this.failedNodes);
+            this.propagator.recover(graph, changedNodes);
+        }
+        this.propagator.drainChanges(changes);
+    }
+
+    //copy of the current states, for reading while the session gets updated
+    public synchronized NodeStateMap snapshot() {
+        return this.states.copy();
+    }
+}
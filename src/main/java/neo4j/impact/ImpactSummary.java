@@ -0,0 +1,125 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.map.mutable.primitive.IntLongHashMap;
+import org.neo4j.internal.kernel.api.*;
+import org.neo4j.internal.kernel.api.exceptions.LabelNotFoundKernelException;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.values.storable.Value;
+import org.neo4j.values.storable.Values;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of the impacted nodes per state, and per label or per value of a property, accumulated from the states of a
+ * propagation : the labels & properties are read with kernel cursors, no Node is created.
+ * A node with several labels is counted once per label, a node without any label or without the property in the group
+ * with no value (null).
+ */
+public class ImpactSummary implements AutoCloseable {
+    private static final int STATES = Impact.State.values().length;
+
+    private enum GroupBy { NONE, LABEL, PROPERTY }
+
+    private final Read read;
+    private final TokenRead tokenRead;
+    private final NodeCursor nodeCursor;
+    private final PropertyCursor propertyCursor;
+    private final GroupBy groupBy;
+    private final int propertyKey;
+    //per label : labelId * STATES + state
+    private final IntLongHashMap labelCounts = new IntLongHashMap();
+    //per property value
+    private final Map<Value, long[]> valueCounts = new HashMap<>();
+    //nodes without a group
+    private final long[] noGroupCounts = new long[STATES];
+
+    //groupBy : 'label', '' (states only) or the key of a property
+    public ImpactSummary(KernelTransaction ktx, String groupBy) {
+        this.read = ktx.dataRead();
+        this.tokenRead = ktx.tokenRead();
+        this.nodeCursor = ktx.cursors().allocateNodeCursor(ktx.pageCursorTracer());
+        this.propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.pageCursorTracer(), ktx.memoryTracker());
+        String group = (groupBy == null) ? "" : groupBy.trim();
+        if (group.isEmpty()) {
+            this.groupBy = GroupBy.NONE;
+            this.propertyKey = TokenRead.NO_TOKEN;
+        } else if (group.equalsIgnoreCase("label")) {
+            this.groupBy = GroupBy.LABEL;
+            this.propertyKey = TokenRead.NO_TOKEN;
+        } else {
+            this.groupBy = GroupBy.PROPERTY;
+            //a property key that doesn't exist in the database : no node has the property
+            this.propertyKey = this.tokenRead.propertyKey(group);
+        }
+    }
+
+    //counts every node of the cursor
+    public void addAll(StateStore.Cursor states) {
+        while (states.next()) {
+            add(states.nodeId(), states.state());
+        }
+    }
+
+    public void add(long nodeId, Impact.State state) {
+        int stateValue = state.getStateValue();
+        if (this.groupBy == GroupBy.NONE) {
+            this.noGroupCounts[stateValue]++;
+            return;
+        }
+        this.read.singleNode(nodeId, this.nodeCursor);
+        if (!this.nodeCursor.next()) return; //deleted meanwhile
+        if (this.groupBy == GroupBy.LABEL) {
+            TokenSet labels = this.nodeCursor.labels();
+            if (labels.numberOfTokens() == 0) this.noGroupCounts[stateValue]++;
+            for (int i = 0; i < labels.numberOfTokens(); i++) {
+                this.labelCounts.addToValue(labels.token(i) * STATES + stateValue, 1);
+            }
+            return;
+        }
+        Value value = Values.NO_VALUE;
+        if (this.propertyKey != TokenRead.NO_TOKEN) {
+            this.nodeCursor.properties(this.propertyCursor);
+            while (this.propertyCursor.next()) {
+                if (this.propertyCursor.propertyKey() == this.propertyKey) {
+                    value = this.propertyCursor.propertyValue();
+                    break;
+                }
+            }
+        }
+        if (value == Values.NO_VALUE) {
+            this.noGroupCounts[stateValue]++;
+        } else {
+            this.valueCounts.computeIfAbsent(value, v -> new long[STATES])[stateValue]++;
+        }
+    }
+
+    //non-zero counts : group (label name, property value or null), state, count
+    public List<Impact.SummaryResult> results() {
+        List<Impact.SummaryResult> results = new ArrayList<>();
+        this.labelCounts.forEachKeyValue((key, count) -> {
+            try {
+                results.add(new Impact.SummaryResult(this.tokenRead.nodeLabelName(key / STATES), Impact.State.of(key % STATES), count));
+            } catch (LabelNotFoundKernelException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        this.valueCounts.forEach((value, counts) -> addResults(value.asObject(), counts, results));
+        addResults(null, this.noGroupCounts, results);
+        return results;
+    }
+
+    private static void addResults(Object group, long[] counts, List<Impact.SummaryResult> results) {
+        for (int state = 0; state < STATES; state++) {
+            if (counts[state] > 0) results.add(new Impact.SummaryResult(group, Impact.State.of(state), counts[state]));
+        }
+    }
+
+    @Override
+    public void close() {
+        this.nodeCursor.close();
+        this.propertyCursor.close();
+    }
+}
@@ -0,0 +1,184 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.internal.kernel.api.NodeCursor;
+import org.neo4j.internal.kernel.api.PropertyCursor;
+import org.neo4j.internal.kernel.api.TokenRead;
+import org.neo4j.internal.kernel.api.security.SecurityContext;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writes the states of a propagation to a node property, and removes it from the nodes that still have it but are no
+ * longer impacted (states of a previous run), in batches of separate transactions committed by a pool of workers.
+ * Batches hold disjoint nodes : the workers never wait for each other's locks. Nodes whose property already has the
+ * state are not written, nodes deleted meanwhile are skipped.
+ * A failed batch fails the write, the batches already committed stay committed.
+ * The nodes written by the last completed write of a database & property are recorded : the stale nodes of the next
+ * write are found among them. Without a record (first write since the database started, previous write failed),
+ * they're found with a scan of all the nodes.
+ */
+public class ImpactWriter {
+    //value of the nodes whose property is removed
+    private static final byte CLEAR = -1;
+    //per database id & property : the nodes written by the last completed writes
+    private static final ConcurrentMap<String, LongHashSet> WRITTEN = new ConcurrentHashMap<>();
+
+    GraphDatabaseAPI db;
+    SecurityContext securityContext;
+    String property;
+    int batchSize;
+    int concurrency;
+
+    AtomicLong writtenCount = new AtomicLong();
+    AtomicLong unchangedCount = new AtomicLong();
+    AtomicLong clearedCount = new AtomicLong();
+    int batchCount;
+    boolean fullScan;
+
+    public ImpactWriter(GraphDatabaseAPI db, SecurityContext securityContext, String property, int batchSize, int concurrency) {
+        this.db = db ;
+        this.securityContext = securityContext ;
+        this.property = property ;
+        this.batchSize = batchSize ;
+        this.concurrency = concurrency ;
+    }
+
+    private String key() {
+        return this.db.databaseId() + "/" + this.property;
+    }
+
+    //the nodes that may have the property but are not impacted : the recorded nodes of the previous write if any
+    //(its record is taken, a concurrent write of the same property scans), or else all the nodes having the property
+    public long[] staleNodes(KernelTransaction ktx, LongHashSet impacted) {
+        LongHashSet previous = WRITTEN.remove(key());
+        this.fullScan = (previous == null);
+        if (this.fullScan) return scanStaleNodes(ktx, this.property, impacted);
+        return previous.reject(impacted::contains).toArray();
+    }
+
+    //the nodes having the property that are not impacted : a scan of all the nodes, with kernel cursors
+    static long[] scanStaleNodes(KernelTransaction ktx, String property, LongHashSet impacted) {
+        int propertyKey = ktx.tokenRead().propertyKey(property);
+        LongArrayList stale = new LongArrayList();
+        if (propertyKey == TokenRead.NO_TOKEN) return stale.toArray();
+        try (NodeCursor nodeCursor = ktx.cursors().allocateNodeCursor(ktx.pageCursorTracer());
+             PropertyCursor propertyCursor = ktx.cursors().allocatePropertyCursor(ktx.pageCursorTracer(), ktx.memoryTracker())) {
+            ktx.dataRead().allNodesScan(nodeCursor);
+            while (nodeCursor.next()) {
+                if (impacted.contains(nodeCursor.nodeReference())) continue;
+                nodeCursor.properties(propertyCursor);
+                while (propertyCursor.next()) {
+                    if (propertyCursor.propertyKey() == propertyKey) {
+                        stale.add(nodeCursor.nodeReference());
+                        break;
+                    }
+                }
+            }
+        }
+        return stale.toArray();
+    }
+
+    //writes the states (as in Impact.State.getStateValue) of the nodes, then clears the stale nodes
+    public void write(long[] nodeIds, byte[] states, long[] staleNodeIds) throws InterruptedException, ExecutionException {
+        int total = nodeIds.length + staleNodeIds.length;
+        long[] ids = new long[total];
+        byte[] values = new byte[total];
+        System.arraycopy(nodeIds, 0, ids, 0, nodeIds.length);
+        System.arraycopy(states, 0, values, 0, nodeIds.length);
+        System.arraycopy(staleNodeIds, 0, ids, nodeIds.length, staleNodeIds.length);
+        for (int i = nodeIds.length; i < total; i++) { values[i] = CLEAR; }
+
+        this.batchCount = (total + this.batchSize - 1) / this.batchSize;
+        AtomicInteger nextBatch = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(this.concurrency, this.batchCount)));
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int w = 0; w < Math.min(this.concurrency, this.batchCount); w++) {
+                workers.add(pool.submit(() -> {
+                    int batch;
+                    while ((batch = nextBatch.getAndIncrement()) < this.batchCount) {
+                        int offset = batch * this.batchSize;
+                        writeBatch(ids, values, offset, Math.min(offset + this.batchSize, total));
+                    }
+                }));
+            }
+            for (Future<?> worker : workers) { worker.get(); }
+        } finally {
+            pool.shutdown();
+        }
+        //merged with the record of a concurrent write of the same property, if any : both may have stale nodes
+        WRITTEN.merge(key(), LongHashSet.newSetWith(nodeIds), (recorded, written) -> {
+            recorded.addAll(written);
+            return recorded;
+        });
+    }
+
+    //one transaction : the counts only include committed batches
+    private void writeBatch(long[] ids, byte[] values, int from, int to) {
+        long written = 0, unchanged = 0, cleared = 0;
+        try (InternalTransaction batchTx = this.db.beginTransaction(KernelTransaction.Type.EXPLICIT, this.securityContext)) {
+            for (int i = from; i < to; i++) {
+                Node node;
+                try {
+                    node = batchTx.getNodeById(ids[i]);
+                } catch (NotFoundException e) {
+                    continue; //deleted meanwhile
+                }
+                Object current = node.getProperty(this.property, null);
+                if (values[i] == CLEAR) {
+                    if (current == null) continue;
+                    node.removeProperty(this.property);
+                    cleared++;
+                    continue;
+                }
+                String state = Impact.State.of(values[i]).name();
+                if (state.equals(current)) {
+                    unchanged++;
+                } else {
+                    node.setProperty(this.property, state);
+                    written++;
+                }
+            }
+            batchTx.commit();
+        }
+        this.writtenCount.addAndGet(written);
+        this.unchangedCount.addAndGet(unchanged);
+        this.clearedCount.addAndGet(cleared);
+    }
+
+    public long getWrittenCount() {
+        return this.writtenCount.get();
+    }
+
+    public long getUnchangedCount() {
+        return this.unchangedCount.get();
+    }
+
+    public long getClearedCount() {
+        return this.clearedCount.get();
+    }
+
+    public int getBatchCount() {
+        return this.batchCount;
+    }
+
+    //whether the stale nodes were found with a scan of all the nodes
+    public boolean isFullScan() {
+        return this.fullScan;
+    }
+}
@@ -0,0 +1,151 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Incremental propagation over materialized states (without limits) : applies changes of the failure set, or of the
+ * impact relationships, to the states of the nodes they can affect only.
+ * - new failures only make states worse : the worklist starts from them, and stops at the nodes that don't change,
+ * - recoveries (& relationship changes) can make states better : the region downstream of them is cleared and
+ * propagated again, from its failed nodes and from the reached nodes around it.
+ * The previous state of the nodes it touches is recorded, so that the changes can be reported.
+ */
+public class IncrementalPropagator {
+    final LongHashSet failedNodes;
+    final NodeStateMap states;
+    GroupAccumulator groups = new GroupAccumulator();
+    //nodes touched since the changes were last drained, and their previous state (absent : not reached)
+    LongHashSet touched = new LongHashSet();
+    NodeStateMap previousStates = new NodeStateMap();
+
+    public IncrementalPropagator(LongHashSet failedNodes, NodeStateMap states) {
+        this.failedNodes = failedNodes;
+        this.states = states;
+    }
+
+    //the nodes become FAILED
+    public void fail(ImpactGraph graph, LongHashSet nodes) {
+        LongQueue queue = new LongQueue();
+        LongHashSet queued = new LongHashSet();
+        nodes.forEach(node -> {
+            if (this.failedNodes.add(node)) setState(node, Impact.State.FAILED);
+        });
+        nodes.forEach(node -> enqueueImpactedNodes(graph, node, null, queue, queued));
+        propagate(graph, null, queue, queued);
+    }
+
+    //the nodes aren't FAILED anymore, unless impacted
+    public void recover(ImpactGraph graph, LongHashSet nodes) {
+        nodes.forEach(this.failedNodes::remove);
+        repropagate(graph, nodes);
+    }
+
+    //the node was deleted
+    public void forget(long node) {
+        this.failedNodes.remove(node);
+        if (this.states.contains(node)) {
+            record(node);
+            this.states.remove(node);
+        }
+    }
+
+    //propagates again the region downstream of the seeds (failed or not)
+    public void repropagate(ImpactGraph graph, LongHashSet seeds) {
+        LongHashSet region = new LongHashSet();
+        LongQueue queue = new LongQueue();
+        seeds.forEach(node -> {
+            if (region.add(node)) queue.add(node);
+        });
+        //every node downstream of a seed may change state
+        while (!queue.isEmpty()) {
+            ImpactGraph.RelationshipCursor impacted = graph.impacted(queue.poll());
+            while (impacted.next()) {
+                if (region.add(impacted.otherNodeId())) queue.add(impacted.otherNodeId());
+            }
+        }
+        region.forEach(node -> {
+            if (this.states.contains(node)) {
+                record(node);
+                this.states.remove(node);
+            }
+        });
+        region.forEach(node -> {
+            if (this.failedNodes.contains(node)) setState(node, Impact.State.FAILED);
+        });
+        LongHashSet queued = new LongHashSet();
+        region.forEach(node -> {
+            if (this.failedNodes.contains(node)) {
+                enqueueImpactedNodes(graph, node, region, queue, queued);
+            } else if (isImpacted(graph, node) && queued.add(node)) {
+                queue.add(node);
+            }
+        });
+        propagate(graph, region, queue, queued);
+    }
+
+    //worklist propagation, within the region if any
+    private void propagate(ImpactGraph graph, LongHashSet region, LongQueue queue, LongHashSet queued) {
+        while (!queue.isEmpty()) {
+            long node = queue.poll();
+            queued.remove(node);
+            this.groups.reset();
+            ImpactGraph.RelationshipCursor impacting = graph.impacting(node);
+            while (impacting.next()) {
+                this.groups.add(impacting.groupKey(), this.states.getOrDefault(impacting.otherNodeId(), Impact.State.WORKING));
+            }
+            Impact.State state = this.groups.result();
+            Impact.State previousState = this.states.get(node);
+            //the first evaluation always counts as a change, so that the impacted nodes get reached
+            if (previousState != null && state.compare(previousState) <= 0) continue;
+            setState(node, state);
+            enqueueImpactedNodes(graph, node, region, queue, queued);
+        }
+    }
+
+    //whether one of its impacting nodes is reached by the propagation
+    private boolean isImpacted(ImpactGraph graph, long node) {
+        ImpactGraph.RelationshipCursor impacting = graph.impacting(node);
+        while (impacting.next()) {
+            if (this.states.contains(impacting.otherNodeId())) return true;
+        }
+        return false;
+    }
+
+    private void enqueueImpactedNodes(ImpactGraph graph, long node, LongHashSet region, LongQueue queue, LongHashSet queued) {
+        ImpactGraph.RelationshipCursor impacted = graph.impacted(node);
+        while (impacted.next()) {
+            long impactedNode = impacted.otherNodeId();
+            //outside of the region, states didn't change
+            if ((region == null || region.contains(impactedNode)) && !this.failedNodes.contains(impactedNode) && queued.add(impactedNode)) {
+                queue.add(impactedNode);
+            }
+        }
+    }
+
+    private void setState(long node, Impact.State state) {
+        record(node);
+        this.states.put(node, state);
+    }
+
+    private void record(long node) {
+        if (this.touched.add(node)) {
+            Impact.State previousState = this.states.get(node);
+            if (previousState != null) this.previousStates.put(node, previousState);
+        }
+    }
+
+    //reports the nodes whose state changed since the last call (null : not reached), and starts recording again
+    public void drainChanges(ChangeConsumer consumer) {
+        this.touched.forEach(node -> {
+            Impact.State previousState = this.previousStates.get(node);
+            Impact.State state = this.states.get(node);
+            if (previousState != state) consumer.accept(node, previousState, state);
+        });
+        this.touched = new LongHashSet();
+        this.previousStates = new NodeStateMap();
+    }
+
+    public interface ChangeConsumer {
+        void accept(long nodeId, Impact.State previousState, Impact.State state);
+    }
+}
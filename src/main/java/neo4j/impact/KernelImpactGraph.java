@@ -0,0 +1,154 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.*;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.storageengine.api.RelationshipSelection;
+import org.neo4j.values.storable.TextValue;
+import org.neo4j.values.storable.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ImpactGraph reading directly through the kernel API : node, relationship traversal & property cursors,
+ * with the relationship type and property key tokens resolved once.
+ * No Node, Relationship or Path proxy is created.
+ */
+public class KernelImpactGraph implements ImpactGraph {
+    private final Read read;
+    private final NodeCursor nodeCursor;
+    private final RelationshipTraversalCursor relationshipCursor;
+    private final PropertyCursor propertyCursor;
+    private final GroupDictionary groupIds;
+    //one selection per pattern of the relationship filter, for each side of the impact relationships
+    private final RelationshipSelection[] impactedSelections;
+    private final RelationshipSelection[] impactingSelections;
+    //per selection : group key declared by its type, or NO_KEY
+    private final int[] declaredKeys;
+    private final int propagationKey;
+    private final int groupKey;
+    private final Cursor cursor = new Cursor();
+
+    public KernelImpactGraph(KernelTransaction ktx, List<Pair<RelationshipType, Direction>> relsAndDirs, GroupDictionary groupIds) {
+        this.read = ktx.dataRead();
+        TokenRead tokenRead = ktx.tokenRead();
+        CursorFactory cursors = ktx.cursors();
+        this.nodeCursor = cursors.allocateNodeCursor(ktx.pageCursorTracer());
+        this.relationshipCursor = cursors.allocateRelationshipTraversalCursor(ktx.pageCursorTracer());
+        this.propertyCursor = cursors.allocatePropertyCursor(ktx.pageCursorTracer(), ktx.memoryTracker());
+        this.groupIds = groupIds;
+        this.propagationKey = tokenRead.propertyKey("impact_propagation");
+        this.groupKey = tokenRead.propertyKey("impact_group");
+
+        List<RelationshipSelection> impacted = new ArrayList<>();
+        List<RelationshipSelection> impacting = new ArrayList<>();
+        IntArrayList declaredKeys = new IntArrayList();
+        for (Pair<RelationshipType, Direction> relAndDir : relsAndDirs) {
+            int type = tokenRead.relationshipType(relAndDir.first().name());
+            //a type that doesn't exist in the database has no relationships to traverse
+            if (type == TokenRead.NO_TOKEN) continue;
+            impacted.add(RelationshipSelection.selection(type, relAndDir.other()));
+            impacting.add(RelationshipSelection.selection(type, relAndDir.other().reverse()));
+            declaredKeys.add(RuledRelationshipType.groupKey(relAndDir.first(), groupIds));
+        }
+        this.impactedSelections = impacted.toArray(new RelationshipSelection[0]);
+        this.impactingSelections = impacting.toArray(new RelationshipSelection[0]);
+        this.declaredKeys = declaredKeys.toArray();
+    }
+
+    @Override
+    public RelationshipCursor impacted(long nodeId) {
+        this.cursor.init(nodeId, this.impactedSelections);
+        return this.cursor;
+    }
+
+    @Override
+    public RelationshipCursor impacting(long nodeId) {
+        this.cursor.init(nodeId, this.impactingSelections);
+        return this.cursor;
+    }
+
+    @Override
+    public GroupDictionary groupIds() {
+        return this.groupIds;
+    }
+
+    @Override
+    public void close() {
+        this.nodeCursor.close();
+        this.relationshipCursor.close();
+        this.propertyCursor.close();
+    }
+
+    private int readGroupKey() {
+        return readGroupKey(this.relationshipCursor, this.propertyCursor, this.propagationKey, this.groupKey, this.groupIds);
+    }
+
+    //same grouping as CoreImpactGraph.groupKey, read from a property cursor
+    static int readGroupKey(RelationshipDataAccessor relationship, PropertyCursor propertyCursor,
+                            int propagationKey, int groupKey, GroupDictionary groupIds) {
+        Impact.PropagationRule propagationRule = Impact.PropagationRule.MOST_SEVERE;
+        int groupId = GroupDictionary.NO_GROUP;
+        relationship.properties(propertyCursor);
+        while (propertyCursor.next()) {
+            int key = propertyCursor.propertyKey();
+            if (key == propagationKey) {
+                Value value = propertyCursor.propertyValue();
+                if (value instanceof TextValue) {
+                    propagationRule = Impact.PropagationRule.validate(((TextValue) value).stringValue());
+                }
+            } else if (key == groupKey) {
+                Value value = propertyCursor.propertyValue();
+                groupId = (value instanceof TextValue) ? groupIds.idOf(((TextValue) value).stringValue())
+                        : groupIds.idOf(value.asObjectCopy());
+            }
+        }
+        return GroupAccumulator.key(propagationRule, groupId);
+    }
+
+    private class Cursor implements RelationshipCursor {
+        long nodeId;
+        RelationshipSelection[] selections;
+        int selection;
+        boolean positioned;
+
+        void init(long nodeId, RelationshipSelection[] selections) {
+            this.nodeId = nodeId;
+            this.selections = selections;
+            this.selection = -1;
+            this.positioned = false;
+        }
+
+        @Override
+        public boolean next() {
+            while (!this.positioned || !relationshipCursor.next()) {
+                if (++this.selection >= this.selections.length) return false;
+                read.singleNode(this.nodeId, nodeCursor);
+                if (!nodeCursor.next()) return false;
+                nodeCursor.relationships(relationshipCursor, this.selections[this.selection]);
+                this.positioned = true;
+            }
+            return true;
+        }
+
+        @Override
+        public long otherNodeId() {
+            return relationshipCursor.otherNodeReference();
+        }
+
+        @Override
+        public int groupKey() {
+            int key = declaredKeys[this.selection];
+            return key != RuledRelationshipType.NO_KEY ? key : readGroupKey();
+        }
+
+        @Override
+        public boolean readsProperties() {
+            return declaredKeys[this.selection] == RuledRelationshipType.NO_KEY;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Priority queue of primitive longs (lowest priority first), backed by a growable binary heap.
+ * A value is queued at most once : adding it again with a lower priority moves it ahead, its previous heap entry
+ * being skipped when it comes up.
+ */
+public class LongPriorityQueue {
+    private long[] values = new long[16];
+    private long[] priorities = new long[16];
+    private int heapSize;
+    //priority of the queued values
+    private final LongLongHashMap queued = new LongLongHashMap();
+
+    public void add(long value, long priority) {
+        if (this.queued.containsKey(value) && this.queued.get(value) <= priority) return;
+        this.queued.put(value, priority);
+        if (this.heapSize == this.values.length) { grow(); }
+        int i = this.heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (this.priorities[parent] <= priority) break;
+            this.values[i] = this.values[parent];
+            this.priorities[i] = this.priorities[parent];
+            i = parent;
+        }
+        this.values[i] = value;
+        this.priorities[i] = priority;
+    }
+
+    public long poll() {
+        while (true) {
+            long value = this.values[0];
+            long priority = this.priorities[0];
+            removeHead();
+            //stale entry : the value was queued again with a lower priority, or already polled
+            if (this.queued.containsKey(value) && this.queued.get(value) == priority) {
+                this.queued.remove(value);
+                return value;
+            }
+        }
+    }
+
+    public boolean isEmpty() {
+        return this.queued.isEmpty();
+    }
+
+    public int size() {
+        return this.queued.size();
+    }
+
+    //approximate heap usage, in bytes : heap arrays & priority table
+    public long memoryUsage() {
+        return this.values.length * 2L * Long.BYTES + this.queued.size() * 4L * Long.BYTES;
+    }
+
+    private void removeHead() {
+        int last = --this.heapSize;
+        long value = this.values[last];
+        long priority = this.priorities[last];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= last) break;
+            if (child + 1 < last && this.priorities[child + 1] < this.priorities[child]) child++;
+            if (this.priorities[child] >= priority) break;
+            this.values[i] = this.values[child];
+            this.priorities[i] = this.priorities[child];
+            i = child;
+        }
+        this.values[i] = value;
+        this.priorities[i] = priority;
+    }
+
+    private void grow() {
+        this.values = Arrays.copyOf(this.values, this.values.length << 1);
+        this.priorities = Arrays.copyOf(this.priorities, this.priorities.length << 1);
+    }
+}
@@ -0,0 +1,60 @@
+package neo4j.impact;
+
+/**
+ * FIFO queue of primitive longs, backed by a growable ring buffer
+ */
+public class LongQueue {
+    private long[] elements;
+    private int head;
+    private int size;
+
+    public LongQueue() {
+        this(16);
+    }
+
+    public LongQueue(int initialCapacity) {
+        int capacity = 16;
+        while (capacity < initialCapacity) { capacity <<= 1; }
+        this.elements = new long[capacity];
+    }
+
+    public void add(long value) {
+        if (this.size == this.elements.length) { grow(); }
+        this.elements[(this.head + this.size) & (this.elements.length - 1)] = value;
+        this.size++;
+    }
+
+    public long poll() {
+        long value = this.elements[this.head];
+        this.head = (this.head + 1) & (this.elements.length - 1);
+        this.size--;
+        return value;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    //heap usage of the ring buffer, in bytes
+    public long memoryUsage() {
+        return this.elements.length * (long) Long.BYTES;
+    }
+
+    public void clear() {
+        this.head = 0;
+        this.size = 0;
+    }
+
+    private void grow() {
+        long[] grown = new long[this.elements.length << 1];
+        for (int i = 0; i < this.size; i++) {
+            grown[i] = this.elements[(this.head + i) & (this.elements.length - 1)];
+        }
+        this.elements = grown;
+        this.head = 0;
+    }
+}
@@ -0,0 +1,38 @@
+package neo4j.impact;
+
+/**
+ * Memory budget of a propagation ('<N>MB' limit) : the engines compare the estimated heap usage of their structures
+ * (states, frontier, group counters, discovered subgraph) to it, and stop as they do on a time limit once it's exceeded.
+ * The estimates count the primitive arrays & hash tables, not the objects created by the graph access.
+ */
+public class MemoryLimit {
+    private final long maxBytes;
+    private volatile boolean exceeded;
+    //highest estimate checked, limit or not
+    private volatile long peakBytes;
+
+    //maxBytes : -1 for no limit
+    public MemoryLimit(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    //false if the estimated usage exceeds the limit, which is then reported as exceeded
+    public boolean check(long estimatedBytes) {
+        if (estimatedBytes > this.peakBytes) this.peakBytes = estimatedBytes;
+        if (this.maxBytes <= 0 || estimatedBytes <= this.maxBytes) return true;
+        this.exceeded = true;
+        return false;
+    }
+
+    public boolean isExceeded() {
+        return this.exceeded;
+    }
+
+    public long getPeakBytes() {
+        return this.peakBytes;
+    }
+
+    public long getMaxBytes() {
+        return this.maxBytes;
+    }
+}
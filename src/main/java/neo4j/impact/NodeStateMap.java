@@ -0,0 +1,153 @@
+package neo4j.impact;
+
+import java.util.Arrays;
+
+/**
+ * StateStore backed by an open-addressing hash table of primitive node ids, with one byte per state.
+ * No allocation per lookup or insertion (besides the occasional table resize).
+ */
+public class NodeStateMap implements StateStore {
+    private static final long EMPTY = -1L; //node ids are never negative
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private byte[] values;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+
+    public NodeStateMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public NodeStateMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) { capacity <<= 1; }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.values = new byte[capacity];
+        this.mask = capacity - 1;
+        this.resizeThreshold = capacity * 3 / 4;
+    }
+
+    private int home(long nodeId) {
+        long h = nodeId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    private int slot(long nodeId) {
+        int index = home(nodeId);
+        while (this.keys[index] != EMPTY && this.keys[index] != nodeId) {
+            index = (index + 1) & this.mask;
+        }
+        return index;
+    }
+
+    @Override
+    public Impact.State get(long nodeId) {
+        int index = slot(nodeId);
+        return (this.keys[index] == EMPTY) ? null : Impact.State.of(this.values[index]);
+    }
+
+    @Override
+    public boolean contains(long nodeId) {
+        return this.keys[slot(nodeId)] != EMPTY;
+    }
+
+    @Override
+    public void put(long nodeId, Impact.State state) {
+        int index = slot(nodeId);
+        if (this.keys[index] == EMPTY) {
+            if (this.size >= this.resizeThreshold) {
+                resize();
+                index = slot(nodeId);
+            }
+            this.keys[index] = nodeId;
+            this.size++;
+        }
+        this.values[index] = (byte) state.getStateValue();
+    }
+
+    //removes the node, returns its previous state (null if it was absent).
+    //Backward shift deletion : the following entries of the probe sequence are moved back, no tombstone is left
+    public Impact.State remove(long nodeId) {
+        int index = slot(nodeId);
+        if (this.keys[index] == EMPTY) return null;
+        Impact.State previousState = Impact.State.of(this.values[index]);
+        int hole = index;
+        for (int next = (index + 1) & this.mask; this.keys[next] != EMPTY; next = (next + 1) & this.mask) {
+            //the entry can fill the hole if its home slot isn't between the hole and itself
+            if (((next - home(this.keys[next])) & this.mask) >= ((next - hole) & this.mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                hole = next;
+            }
+        }
+        this.keys[hole] = EMPTY;
+        this.size--;
+        return previousState;
+    }
+
+    private void resize() {
+        long[] oldKeys = this.keys;
+        byte[] oldValues = this.values;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int index = slot(oldKeys[i]);
+                this.keys[index] = oldKeys[i];
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    public NodeStateMap copy() {
+        NodeStateMap copy = new NodeStateMap();
+        copy.keys = this.keys.clone();
+        copy.values = this.values.clone();
+        copy.size = this.size;
+        copy.mask = this.mask;
+        copy.resizeThreshold = this.resizeThreshold;
+        return copy;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    //estimated heap usage, in bytes
+    @Override
+    public long memoryUsage() {
+        return (long) this.keys.length * (Long.BYTES + 1);
+    }
+
+    @Override
+    public Cursor cursor() {
+        return new Cursor() {
+            int index = -1;
+
+            @Override
+            public boolean next() {
+                while (++index < keys.length) {
+                    if (keys[index] != EMPTY) return true;
+                }
+                return false;
+            }
+
+            @Override
+            public long nodeId() {
+                return keys[index];
+            }
+
+            @Override
+            public Impact.State state() {
+                return Impact.State.of(values[index]);
+            }
+        };
+    }
+}
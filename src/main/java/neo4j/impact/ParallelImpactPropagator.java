@@ -0,0 +1,167 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parallel, level-synchronous version of the worklist propagation engine.
+ * Each level's frontier (the nodes whose impacting nodes changed state) is split in chunks evaluated by a pool of
+ * workers, each with its own ImpactGraph (own transaction & cursors) and scratch structures.
+ * States and frontier flags live in a ConcurrentStateStore : states only get worse, so evaluations racing with the
+ * update of an impacting node are simply redone at the next level, and the result is the same fixpoint as the
+ * single-threaded engines.
+ * Start nodes are FAILED, unless given their start states : a start node that isn't FAILED gets worse as any other node.
+ */
+public class ParallelImpactPropagator {
+    private static final int CHUNK_SIZE = 256;
+
+    ConcurrentStateStore nodesMap;
+    LongHashSet startNodes;
+    List<ImpactGraph> graphs;
+    long maxLevel;
+    long resultLimit;
+    long timeoutMs;
+    long startTime;
+    MemoryLimit memoryLimit = new MemoryLimit(-1);
+    ImpactProfile profile = new ImpactProfile(false);
+    StateStore startStates;
+
+    //one graph per worker
+    public ParallelImpactPropagator(List<ImpactGraph> graphs, long[] startNodes, ConcurrentStateStore nodesMap,
+                                    long maxLevel, long resultLimit, long timeout) {
+        this.graphs = graphs ;
+        this.nodesMap = nodesMap ;
+        this.startNodes = LongHashSet.newSetWith(startNodes) ;
+        this.maxLevel = maxLevel ;
+        this.resultLimit = resultLimit ;
+        this.timeoutMs = timeout * 1000 ;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void setMemoryLimit(MemoryLimit memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void setProfile(ImpactProfile profile) {
+        this.profile = profile;
+    }
+
+    //start nodes absent from 'startStates' are FAILED
+    public void setStartStates(StateStore startStates) {
+        this.startStates = startStates;
+    }
+
+    public void propagate() throws InterruptedException, ExecutionException {
+        ForkJoinPool pool = new ForkJoinPool(this.graphs.size());
+        try {
+            //level 0 : the start nodes changed (to their start state)
+            long[] changed = this.startNodes.toArray();
+            for (long start : changed) {
+                this.nodesMap.reserve(-1);
+                this.nodesMap.put(start, (this.startStates == null) ? Impact.State.FAILED
+                        : this.startStates.getOrDefault(start, Impact.State.FAILED));
+                this.nodesMap.discover(start);
+            }
+            LongArrayList frontier = new LongArrayList();
+            ImpactGraph graph = this.graphs.get(0);
+            for (long start : changed) { expand(graph, start, 0, frontier); }
+
+            int level = 1;
+            while (!frontier.isEmpty()) {
+                if (timedOut()) {
+                    this.profile.timeoutPrunes++;
+                    break;
+                }
+                if (!this.memoryLimit.check(this.nodesMap.memoryUsage() + frontier.size() * (long) Long.BYTES)) break;
+                frontier = evaluateLevel(pool, frontier.toArray(), level++);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private boolean timedOut() {
+        return this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs);
+    }
+
+    //evaluates the frontier in parallel, returns the next frontier
+    private LongArrayList evaluateLevel(ForkJoinPool pool, long[] frontier, int level) throws InterruptedException, ExecutionException {
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Future<LongArrayList>> workers = new ArrayList<>();
+        int workerCount = Math.min(this.graphs.size(), (frontier.length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        for (int w = 0; w < workerCount; w++) {
+            ImpactGraph graph = this.graphs.get(w);
+            workers.add(pool.submit(() -> {
+                GroupAccumulator groups = new GroupAccumulator();
+                LongArrayList next = new LongArrayList();
+                int chunk;
+                while ((chunk = nextChunk.getAndIncrement() * CHUNK_SIZE) < frontier.length && !timedOut()
+                        && this.memoryLimit.check(this.nodesMap.memoryUsage() + frontier.length * (long) Long.BYTES)) {
+                    int end = Math.min(chunk + CHUNK_SIZE, frontier.length);
+                    for (int i = chunk; i < end; i++) {
+                        evaluate(graph, groups, frontier[i], level, next);
+                    }
+                }
+                return next;
+            }));
+        }
+        LongArrayList next = new LongArrayList();
+        for (Future<LongArrayList> worker : workers) { next.addAll(worker.get()); }
+        return next;
+    }
+
+    private void evaluate(ImpactGraph graph, GroupAccumulator groups, long node, int level, LongArrayList next) {
+        this.nodesMap.dequeue(node);
+        Impact.State previousState = this.nodesMap.get(node);
+        //FAILED start nodes can't change state, no need to compute their incoming impact state
+        if (this.startNodes.contains(node) && previousState == Impact.State.FAILED) return;
+
+        if (previousState == null) {
+            //first evaluation of that node : it adds a result, unless the result limit is reached
+            if (!this.nodesMap.reserve(this.resultLimit)) {
+                this.profile.resultLimitPrunes.increment();
+                return;
+            }
+        } else if (previousState == Impact.State.FAILED) {
+            //already failed, it (& its impacted nodes) can't change state anymore
+            this.profile.failedPrunes.increment();
+            return;
+        }
+
+        this.profile.evaluated(node);
+        groups.reset();
+        ImpactGraph.RelationshipCursor impacting = graph.impacting(node);
+        while (impacting.next()) {
+            groups.add(impacting.groupKey(), this.nodesMap.getOrDefault(impacting.otherNodeId(), Impact.State.WORKING));
+        }
+        Impact.State state = groups.result();
+        //the first evaluation always counts as a change, so that the impacted nodes get discovered
+        if (this.nodesMap.worsen(node, state) || previousState == null) {
+            expand(graph, node, level, next);
+        }
+    }
+
+    //queues the nodes impacted by 'node' in the next frontier.
+    //Nodes beyond the hop limit are not discovered, but already known nodes are always re-evaluated
+    private void expand(ImpactGraph graph, long node, int level, LongArrayList next) {
+        boolean canDiscover = this.maxLevel < 0 || level < this.maxLevel;
+        ImpactGraph.RelationshipCursor impacted = graph.impacted(node);
+        while (impacted.next()) {
+            long impactedNode = impacted.otherNodeId();
+            if (!this.nodesMap.isDiscovered(impactedNode)) {
+                if (!canDiscover) continue;
+                this.nodesMap.discover(impactedNode);
+            }
+            if (this.nodesMap.enqueue(impactedNode)) {
+                next.add(impactedNode);
+            }
+        }
+    }
+}
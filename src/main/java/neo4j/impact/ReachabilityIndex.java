@@ -0,0 +1,141 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.kernel.api.KernelTransaction;
+import org.neo4j.kernel.impl.coreapi.InternalTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Upstream reachability index of the impact relationships of a relationship filter (ReachabilityLabels) : which nodes
+ * can impact a node, without traversing the graph.
+ * Kept up to date after each commit by the ReachabilityIndexListener : created impact relationships are added to the
+ * labels, deleted ones (and created ones making two components impact each other) make the index stale, its labels
+ * being built again, in a new transaction, by the next call reading it.
+ */
+public class ReachabilityIndex {
+    //per database name & index name
+    private static final ConcurrentMap<String, ReachabilityIndex> INDEXES = new ConcurrentHashMap<>();
+
+    final String databaseName;
+    final String name;
+    final String relationshipFilter;
+    final List<Pair<RelationshipType, Direction>> relsAndDirs;
+    ReachabilityLabels labels;
+    boolean stale;
+    long buildCount;
+    long insertCount;
+    long lastBuildMillis;
+
+    ReachabilityIndex(String databaseName, String name, String relationshipFilter, List<Pair<RelationshipType, Direction>> relsAndDirs) {
+        this.databaseName = databaseName;
+        this.name = name;
+        this.relationshipFilter = relationshipFilter;
+        this.relsAndDirs = relsAndDirs;
+    }
+
+    private static String key(String databaseName, String name) {
+        return databaseName + "/" + name;
+    }
+
+    public static void register(ReachabilityIndex index) {
+        if (INDEXES.putIfAbsent(key(index.databaseName, index.name), index) != null) {
+            throw new QueryExecutionException("reachability index '" + index.name + "' already exists, drop it first", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+    }
+
+    public static ReachabilityIndex get(String databaseName, String name) {
+        ReachabilityIndex index = INDEXES.get(key(databaseName, name));
+        if (index == null) {
+            throw new QueryExecutionException("reachability index '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return index;
+    }
+
+    public static ReachabilityIndex drop(String databaseName, String name) {
+        ReachabilityIndex index = INDEXES.remove(key(databaseName, name));
+        if (index == null) {
+            throw new QueryExecutionException("reachability index '" + name + "' doesn't exist", null, "Neo.ClientError.Procedure.ProcedureCallFailed");
+        }
+        return index;
+    }
+
+    public static List<ReachabilityIndex> list(String databaseName) {
+        List<ReachabilityIndex> indexes = new ArrayList<>();
+        for (ReachabilityIndex index : INDEXES.values()) {
+            if (index.databaseName.equals(databaseName)) indexes.add(index);
+        }
+        return indexes;
+    }
+
+    //loads the impact relationships of the filter, and labels them
+    public synchronized void build(KernelTransaction ktx) {
+        long startTime = System.currentTimeMillis();
+        this.labels = ReachabilityLabels.of(CsrImpactGraph.load(ktx, this.relsAndDirs, new GroupDictionary()));
+        this.stale = false;
+        this.buildCount++;
+        this.lastBuildMillis = System.currentTimeMillis() - startTime;
+    }
+
+    //the labels, built again first if the index is stale : in a transaction of its own, that only sees committed changes
+    private ReachabilityLabels labels(GraphDatabaseService db) {
+        if (this.stale) {
+            try (Transaction tx = db.beginTx()) {
+                build(((InternalTransaction) tx).kernelTransaction());
+            }
+        }
+        return this.labels;
+    }
+
+    public synchronized boolean canImpact(GraphDatabaseService db, long fromNodeId, long toNodeId) {
+        return labels(db).canImpact(fromNodeId, toNodeId);
+    }
+
+    public synchronized long[] upstream(GraphDatabaseService db, long nodeId) {
+        return labels(db).upstream(nodeId);
+    }
+
+    //the impact relationships of the filter created by a transaction, and whether it deleted some, read before it's committed
+    public Changes changes(TransactionData data) {
+        Changes changes = new Changes();
+        for (Relationship relationship : data.createdRelationships()) {
+            for (Pair<RelationshipType, Direction> relAndDir : this.relsAndDirs) {
+                if (!relationship.isType(relAndDir.first())) continue;
+                boolean incoming = relAndDir.other() == Direction.INCOMING;
+                changes.created.add(incoming ? relationship.getEndNodeId() : relationship.getStartNodeId());
+                changes.created.add(incoming ? relationship.getStartNodeId() : relationship.getEndNodeId());
+            }
+        }
+        for (Relationship relationship : data.deletedRelationships()) {
+            for (Pair<RelationshipType, Direction> relAndDir : this.relsAndDirs) {
+                if (relationship.isType(relAndDir.first())) changes.deleted = true;
+            }
+        }
+        return changes;
+    }
+
+    //adds the created relationships to the labels, after they're committed
+    public synchronized void update(Changes changes) {
+        if (changes.deleted) this.stale = true;
+        for (int i = 0; i < changes.created.size() && !this.stale; i += 2) {
+            this.stale = !this.labels.insert(changes.created.get(i), changes.created.get(i + 1));
+            this.insertCount++;
+        }
+    }
+
+    public static class Changes {
+        //(impacting node, impacted node) pairs
+        final LongArrayList created = new LongArrayList();
+        boolean deleted;
+
+        public boolean isEmpty() {
+            return created.isEmpty() && !deleted;
+        }
+    }
+}
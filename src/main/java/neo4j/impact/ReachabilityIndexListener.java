@@ -0,0 +1,52 @@
+package neo4j.impact;
+
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListener;
+import org.neo4j.kernel.database.NamedDatabaseId;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the ReachabilityIndexes of a database up to date : the impact relationships created & deleted are collected
+ * before the commit, and added to the labels after it (or make the index stale).
+ * Registered on a database when its first reachability index is created.
+ */
+public class ReachabilityIndexListener implements TransactionEventListener<Map<ReachabilityIndex, ReachabilityIndex.Changes>> {
+    //per database id : the procedures get a new GraphDatabaseService for each call
+    private static final Set<NamedDatabaseId> REGISTERED = new HashSet<>();
+
+    public static synchronized void registerOn(GraphDatabaseAPI db) {
+        if (!REGISTERED.add(db.databaseId())) return;
+        db.getDependencyResolver().resolveDependency(DatabaseManagementService.class)
+                .registerTransactionEventListener(db.databaseName(), new ReachabilityIndexListener());
+    }
+
+    @Override
+    public Map<ReachabilityIndex, ReachabilityIndex.Changes> beforeCommit(TransactionData data, Transaction transaction, GraphDatabaseService databaseService) {
+        Map<ReachabilityIndex, ReachabilityIndex.Changes> changes = new HashMap<>();
+        for (ReachabilityIndex index : ReachabilityIndex.list(databaseService.databaseName())) {
+            ReachabilityIndex.Changes indexChanges = index.changes(data);
+            if (!indexChanges.isEmpty()) changes.put(index, indexChanges);
+        }
+        return changes.isEmpty() ? null : changes;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Map<ReachabilityIndex, ReachabilityIndex.Changes> changes, GraphDatabaseService databaseService) {
+        if (changes == null) return;
+        for (Map.Entry<ReachabilityIndex, ReachabilityIndex.Changes> indexChanges : changes.entrySet()) {
+            indexChanges.getKey().update(indexChanges.getValue());
+        }
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, Map<ReachabilityIndex, ReachabilityIndex.Changes> changes, GraphDatabaseService databaseService) {
+    }
+}
@@ -0,0 +1,336 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+import java.util.Arrays;
+
+/**
+ * 2-hop reachability labels of an impact graph (pruned landmark labeling), on the DAG of its strongly connected
+ * components : every component is a hub, ranked by the product of its in & out degrees. Each component keeps the
+ * ranks of the hubs it reaches (out labels) and of the hubs reaching it (in labels), both sorted, so that a node
+ * can impact another if their components are the same, or if an out label of one is an in label of the other.
+ * A hub is only added to the labels of the components it reaches (is reached by) that the higher ranked hubs don't
+ * already cover, which keeps the labels small on impact graphs. Per hub, the components whose out labels hold it
+ * list the nodes that can impact a node without any traversal.
+ * Relationships can be added afterwards (insert) : the pruned searches of the hubs concerned are resumed from the new
+ * relationship, unless it creates a cycle between components, which requires building the labels again.
+ */
+public class ReachabilityLabels {
+    //node index <-> node id, component of each node index
+    final LongArrayList nodeIds = new LongArrayList();
+    final LongIntHashMap indexes = new LongIntHashMap();
+    final IntArrayList componentOf = new IntArrayList();
+    //per component : node indexes of its members, impacted & impacting components (condensed DAG)
+    final IntLists members = new IntLists();
+    final IntLists impacted = new IntLists();
+    final IntLists impacting = new IntLists();
+    //per component : ranks of the hubs it reaches & of the hubs reaching it, ascending
+    final IntLists outLabels = new IntLists();
+    final IntLists inLabels = new IntLists();
+    //per rank : the hub's component, and the components whose out labels hold it
+    final IntArrayList hubs = new IntArrayList();
+    final IntLists hubAncestors = new IntLists();
+    //search scratch structures : queue, and visit marks (the search number of the last visit)
+    private int[] queue = new int[16];
+    private int[] visited = new int[16];
+    private int search;
+
+    private ReachabilityLabels() {
+    }
+
+    public static ReachabilityLabels of(CsrImpactGraph graph) {
+        return of(graph.nodeIds, graph.impactedOffsets, graph.impactedNodes, graph.impactedKeys);
+    }
+
+    //impacted relationships of node index i : [offsets[i], offsets[i+1]) in impactedNodes
+    static ReachabilityLabels of(long[] nodeIds, int[] offsets, int[] impactedNodes) {
+        return of(nodeIds, offsets, impactedNodes, new int[impactedNodes.length]);
+    }
+
+    private static ReachabilityLabels of(long[] nodeIds, int[] offsets, int[] impactedNodes, int[] impactedKeys) {
+        ReachabilityLabels labels = new ReachabilityLabels();
+        StronglyConnectedComponents components = StronglyConnectedComponents.of(offsets, impactedNodes, impactedKeys, key -> true);
+        int componentCount = components.count();
+        for (int index = 0; index < nodeIds.length; index++) {
+            labels.nodeIds.add(nodeIds[index]);
+            labels.indexes.put(nodeIds[index], index);
+            labels.componentOf.add(components.componentOf(index));
+        }
+        //condensed DAG, without duplicate relationships : marked with the last component that added them
+        int[] addedBy = new int[componentCount];
+        Arrays.fill(addedBy, -1);
+        for (int c = 0; c < componentCount; c++) {
+            labels.addComponent();
+            for (int m = components.offsets[c]; m < components.offsets[c + 1]; m++) {
+                labels.members.add(c, components.members[m]);
+            }
+        }
+        for (int c = 0; c < componentCount; c++) {
+            for (int m = components.offsets[c]; m < components.offsets[c + 1]; m++) {
+                int node = components.members[m];
+                for (int r = offsets[node]; r < offsets[node + 1]; r++) {
+                    int other = components.componentOf(impactedNodes[r]);
+                    if (other == c || addedBy[other] == c) continue;
+                    addedBy[other] = c;
+                    labels.impacted.add(c, other);
+                    labels.impacting.add(other, c);
+                }
+            }
+        }
+
+        //hubs by decreasing (in degree + 1) * (out degree + 1), then by component
+        long[] order = new long[componentCount];
+        for (int c = 0; c < componentCount; c++) {
+            long score = Math.min(Integer.MAX_VALUE, (labels.impacted.size(c) + 1L) * (labels.impacting.size(c) + 1L));
+            order[c] = ((Integer.MAX_VALUE - score) << 32) | c;
+        }
+        Arrays.sort(order);
+        for (int rank = 0; rank < componentCount; rank++) {
+            int hub = (int) order[rank];
+            labels.hubs.add(hub);
+            labels.hubAncestors.addList();
+            labels.searchImpacted(rank, hub);
+            labels.searchImpacting(rank, hub);
+        }
+        return labels;
+    }
+
+    //empty lists for a new component
+    private int addComponent() {
+        this.members.addList();
+        this.impacted.addList();
+        this.impacting.addList();
+        this.outLabels.addList();
+        return this.inLabels.addList();
+    }
+
+    //the component of the node, -1 if it has no impact relationship
+    private int componentOfNode(long nodeId) {
+        int index = this.indexes.getIfAbsent(nodeId, -1);
+        return (index < 0) ? -1 : this.componentOf.get(index);
+    }
+
+    //the component of the node, a new one (its own hub, ranked last) if it had no impact relationship
+    private int addNode(long nodeId) {
+        int component = componentOfNode(nodeId);
+        if (component >= 0) return component;
+        int index = this.nodeIds.size();
+        this.nodeIds.add(nodeId);
+        this.indexes.put(nodeId, index);
+        component = addComponent();
+        this.componentOf.add(component);
+        this.members.add(component, index);
+        int rank = this.hubs.size();
+        this.hubs.add(component);
+        this.hubAncestors.addList();
+        this.inLabels.add(component, rank);
+        this.outLabels.add(component, rank);
+        this.hubAncestors.add(rank, component);
+        return component;
+    }
+
+    boolean reaches(int from, int to) {
+        return from == to || covered(from, to);
+    }
+
+    //whether the labels say that the component 'from' reaches the component 'to' : a merge of two sorted lists
+    private boolean covered(int from, int to) {
+        int[] out = this.outLabels.array(from), in = this.inLabels.array(to);
+        int i = 0, j = 0, outSize = this.outLabels.size(from), inSize = this.inLabels.size(to);
+        while (i < outSize && j < inSize) {
+            if (out[i] == in[j]) return true;
+            if (out[i] < in[j]) i++; else j++;
+        }
+        return false;
+    }
+
+    //whether a path of impact relationships leads from a node to another (distinct) node
+    public boolean canImpact(long fromNodeId, long toNodeId) {
+        if (fromNodeId == toNodeId) return false;
+        int from = componentOfNode(fromNodeId), to = componentOfNode(toNodeId);
+        return from >= 0 && to >= 0 && reaches(from, to);
+    }
+
+    //ids of the nodes that can impact the node (itself excluded) : the components holding an in label of its
+    //component in their out labels, read from the hubs' lists
+    public long[] upstream(long nodeId) {
+        int component = componentOfNode(nodeId);
+        LongArrayList upstream = new LongArrayList();
+        if (component < 0) return upstream.toArray();
+        IntHashSet ancestors = new IntHashSet();
+        int[] hubRanks = this.inLabels.array(component);
+        for (int h = 0; h < this.inLabels.size(component); h++) {
+            int[] components = this.hubAncestors.array(hubRanks[h]);
+            for (int a = 0; a < this.hubAncestors.size(hubRanks[h]); a++) {
+                if (!ancestors.add(components[a])) continue;
+                int[] nodes = this.members.array(components[a]);
+                for (int m = 0; m < this.members.size(components[a]); m++) {
+                    long ancestor = this.nodeIds.get(nodes[m]);
+                    if (ancestor != nodeId) upstream.add(ancestor);
+                }
+            }
+        }
+        return upstream.toArray();
+    }
+
+    //adds an impact relationship. False if it makes two components impact each other : the labels must be built again
+    public boolean insert(long impactingNodeId, long impactedNodeId) {
+        int from = addNode(impactingNodeId), to = addNode(impactedNodeId);
+        if (reaches(from, to)) return true;
+        if (reaches(to, from)) return false;
+        this.impacted.add(from, to);
+        this.impacting.add(to, from);
+        //the hubs reaching 'from' now reach what 'to' reaches, and the hubs reached by 'to' are reached by what reaches 'from'
+        int[] inHubs = Arrays.copyOf(this.inLabels.array(from), this.inLabels.size(from));
+        int[] outHubs = Arrays.copyOf(this.outLabels.array(to), this.outLabels.size(to));
+        for (int rank : inHubs) { searchImpacted(rank, to); }
+        for (int rank : outHubs) { searchImpacting(rank, from); }
+        return true;
+    }
+
+    //pruned breadth-first search of the components impacted by the hub, from 'start' : the components it doesn't
+    //already reach through the labels get it as an in label
+    private void searchImpacted(int rank, int start) {
+        int hub = this.hubs.get(rank);
+        int head = 0, tail = 0;
+        int mark = nextSearch();
+        this.queue[tail++] = start;
+        this.visited[start] = mark;
+        while (head < tail) {
+            int component = this.queue[head++];
+            if (covered(hub, component)) continue;
+            this.inLabels.insert(component, rank);
+            int[] next = this.impacted.array(component);
+            for (int n = 0; n < this.impacted.size(component); n++) {
+                if (this.visited[next[n]] == mark) continue;
+                this.visited[next[n]] = mark;
+                this.queue[tail++] = next[n];
+            }
+        }
+    }
+
+    //same, towards the components impacting the hub : they get it as an out label
+    private void searchImpacting(int rank, int start) {
+        int hub = this.hubs.get(rank);
+        int head = 0, tail = 0;
+        int mark = nextSearch();
+        this.queue[tail++] = start;
+        this.visited[start] = mark;
+        while (head < tail) {
+            int component = this.queue[head++];
+            if (covered(component, hub)) continue;
+            this.outLabels.insert(component, rank);
+            this.hubAncestors.add(rank, component);
+            int[] next = this.impacting.array(component);
+            for (int n = 0; n < this.impacting.size(component); n++) {
+                if (this.visited[next[n]] == mark) continue;
+                this.visited[next[n]] = mark;
+                this.queue[tail++] = next[n];
+            }
+        }
+    }
+
+    //grows the scratch structures to the number of components, returns the mark of a new search
+    private int nextSearch() {
+        int componentCount = this.members.count();
+        if (this.queue.length < componentCount) {
+            int capacity = Math.max(componentCount, this.queue.length * 2);
+            this.queue = new int[capacity];
+            this.visited = Arrays.copyOf(this.visited, capacity);
+        }
+        return ++this.search;
+    }
+
+    public int nodeCount() {
+        return this.nodeIds.size();
+    }
+
+    public int componentCount() {
+        return this.members.count();
+    }
+
+    //in & out labels
+    public long labelCount() {
+        return this.inLabels.total() + this.outLabels.total();
+    }
+
+    //approximate heap usage, in bytes : node ids & index table, lists, scratch structures
+    public long memoryUsage() {
+        return this.nodeIds.size() * (Long.BYTES + 24L + Integer.BYTES) + this.hubs.size() * (long) Integer.BYTES
+                + this.members.memoryUsage() + this.impacted.memoryUsage() + this.impacting.memoryUsage()
+                + this.outLabels.memoryUsage() + this.inLabels.memoryUsage() + this.hubAncestors.memoryUsage()
+                + this.queue.length * 2L * Integer.BYTES;
+    }
+
+    /**
+     * Growable lists of ints, by list number : a shared empty array until the first value
+     */
+    static class IntLists {
+        private static final int[] EMPTY = new int[0];
+        private int[][] lists = new int[16][];
+        private int[] sizes = new int[16];
+        private int count;
+        private long total;
+
+        int addList() {
+            if (this.count == this.lists.length) {
+                this.lists = Arrays.copyOf(this.lists, this.count * 2);
+                this.sizes = Arrays.copyOf(this.sizes, this.count * 2);
+            }
+            this.lists[this.count] = EMPTY;
+            return this.count++;
+        }
+
+        int count() {
+            return this.count;
+        }
+
+        int size(int list) {
+            return this.sizes[list];
+        }
+
+        //the list's values are the first size(list) ones
+        int[] array(int list) {
+            return this.lists[list];
+        }
+
+        void add(int list, int value) {
+            insertAt(list, this.sizes[list], value);
+        }
+
+        //inserts the value in a sorted list, keeping it sorted
+        void insert(int list, int value) {
+            int position = Arrays.binarySearch(this.lists[list], 0, this.sizes[list], value);
+            insertAt(list, position < 0 ? -position - 1 : position, value);
+        }
+
+        private void insertAt(int list, int position, int value) {
+            int[] values = this.lists[list];
+            int size = this.sizes[list];
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.max(2, size + (size >> 1)));
+                this.lists[list] = values;
+            }
+            System.arraycopy(values, position, values, position + 1, size - position);
+            values[position] = value;
+            this.sizes[list]++;
+            this.total++;
+        }
+
+        long total() {
+            return this.total;
+        }
+
+        //list references & sizes, arrays (header & capacity)
+        long memoryUsage() {
+            long usage = this.lists.length * (8L + Integer.BYTES);
+            for (int list = 0; list < this.count; list++) {
+                if (this.lists[list] != EMPTY) usage += 16L + this.lists[list].length * (long) Integer.BYTES;
+            }
+            return usage;
+        }
+    }
+}
@@ -2,13 +2,15 @@ package neo4j.impact;
 
 import org.neo4j.graphdb.*;
 import org.neo4j.graphdb.traversal.BranchState;
-import org.neo4j.internal.helpers.collection.Iterators;
 import org.neo4j.internal.helpers.collection.NestingIterator;
 import org.neo4j.internal.helpers.collection.Pair;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * An expander for repeating sequences of relationships. The sequence provided should be a string consisting of
@@ -20,35 +22,22 @@ import java.util.List;
  * of the sequence, so when `beginSequenceAtStart` is false, then the first relationship step in the sequence given will not
  * actually be used as part of the sequence, but will only be used once to reach the starting node of the sequence.
  * The remaining relationship steps will be used as the repeating relationship sequence.
+ * Each step is compiled into the fewest relationship reads (overlapping patterns merged, one read per direction for all
+ * its types), and the relationships are returned lazily : nothing is copied before the traverser consumes them.
  */
 public class RelationshipSequenceExpander implements PathExpander {
     private final List<List<Pair<RelationshipType, Direction>>> relSequences = new ArrayList<>();
     private List<Pair<RelationshipType, Direction>> initialRels = null;
+    //the same steps, compiled into their relationship reads
+    private final List<Read[]> readSequences = new ArrayList<>();
+    private Read[] initialReads = null;
 
 
     public List<Pair<RelationshipType, Direction>> getRelSequences() {
         return this.relSequences.get(0);
     }
     public RelationshipSequenceExpander(String relSequenceString, boolean beginSequenceAtStart) {
-        int index = 0;
-
-        for (String sequenceStep : relSequenceString.split(",")) {
-            sequenceStep = sequenceStep.trim();
-            Iterable<Pair<RelationshipType, Direction>> relDirIterable = RelationshipTypeAndDirections.parse(sequenceStep);
-
-            List<Pair<RelationshipType, Direction>> stepRels = new ArrayList<>();
-            for (Pair<RelationshipType, Direction> pair : relDirIterable) {
-                stepRels.add(pair);
-            }
-
-            if (!beginSequenceAtStart && index == 0) {
-                initialRels = stepRels;
-            } else {
-                relSequences.add(stepRels);
-            }
-
-            index++;
-        }
+        this(Arrays.asList(relSequenceString.split(",")), beginSequenceAtStart);
     }
 
     public RelationshipSequenceExpander(List<String> relSequenceList, boolean beginSequenceAtStart) {
@@ -65,8 +54,10 @@ public class RelationshipSequenceExpander implements PathExpander {
 
             if (!beginSequenceAtStart && index == 0) {
                 initialRels = stepRels;
+                initialReads = compile(stepRels);
             } else {
                 relSequences.add(stepRels);
+                readSequences.add(compile(stepRels));
             }
 
             index++;
@@ -77,37 +68,94 @@ public class RelationshipSequenceExpander implements PathExpander {
     public Iterable<Relationship> expand(Path path, BranchState state ) {
         final Node node = path.endNode();
         int depth = path.length();
-        List<Pair<RelationshipType, Direction>> stepRels;
+        Read[] stepReads;
 
-        if (depth == 0 && initialRels != null) {
-            stepRels = initialRels;
+        if (depth == 0 && initialReads != null) {
+            stepReads = initialReads;
         } else {
-            stepRels = relSequences.get((initialRels == null ? depth : depth - 1) % relSequences.size());
+            stepReads = readSequences.get((initialReads == null ? depth : depth - 1) % readSequences.size());
         }
 
-        return Iterators.asList(
-         new NestingIterator<Relationship, Pair<RelationshipType, Direction>>(
-                stepRels.iterator() )
+        if (stepReads.length == 1) {
+            return stepReads[0].relationships(node);
+        }
+        return () -> new NestingIterator<Relationship, Read>(Arrays.asList(stepReads).iterator())
         {
             @Override
-            protected Iterator<Relationship> createNestedIterator(
-                    Pair<RelationshipType, Direction> entry )
+            protected Iterator<Relationship> createNestedIterator(Read read)
             {
-                RelationshipType type = entry.first();
-                Direction dir = entry.other();
-                if (type != null) {
-                    return ((dir == Direction.BOTH) ? node.getRelationships(type) :
-                            node.getRelationships(dir, type)).iterator();
-                } else {
-                    return ((dir == Direction.BOTH) ? node.getRelationships() :
-                            node.getRelationships(dir)).iterator();
-                }
+                return read.relationships(node).iterator();
             }
-        });
+        };
     }
 
     @Override
     public PathExpander reverse() {
         throw new RuntimeException("Not implemented");
     }
+
+    //merges the patterns of a step into at most one read per direction : a type in both directions is read with BOTH,
+    //a pattern without type (all types) covers the types of its direction
+    static Read[] compile(List<Pair<RelationshipType, Direction>> stepRels) {
+        Map<Direction, Map<String, RelationshipType>> types = new LinkedHashMap<>();
+        Map<Direction, Boolean> allTypes = new LinkedHashMap<>();
+        for (Direction direction : new Direction[]{Direction.BOTH, Direction.OUTGOING, Direction.INCOMING}) {
+            types.put(direction, new LinkedHashMap<>());
+            allTypes.put(direction, false);
+        }
+        for (Pair<RelationshipType, Direction> relAndDir : stepRels) {
+            if (relAndDir.first() == null) {
+                allTypes.put(relAndDir.other(), true);
+            } else {
+                types.get(relAndDir.other()).putIfAbsent(relAndDir.first().name(), relAndDir.first());
+            }
+        }
+        if (allTypes.get(Direction.OUTGOING) && allTypes.get(Direction.INCOMING)) allTypes.put(Direction.BOTH, true);
+        if (allTypes.get(Direction.BOTH)) return new Read[]{new Read(Direction.BOTH, new RelationshipType[0])};
+
+        //a type in both directions
+        for (RelationshipType type : new ArrayList<>(types.get(Direction.OUTGOING).values())) {
+            if (types.get(Direction.INCOMING).remove(type.name()) != null) {
+                types.get(Direction.OUTGOING).remove(type.name());
+                types.get(Direction.BOTH).putIfAbsent(type.name(), type);
+            }
+        }
+        //BOTH types are read in each direction that doesn't read all types
+        for (Direction direction : new Direction[]{Direction.OUTGOING, Direction.INCOMING}) {
+            if (allTypes.get(direction)) {
+                types.get(direction.reverse()).putAll(types.get(Direction.BOTH));
+                types.get(Direction.BOTH).clear();
+            }
+        }
+        for (RelationshipType type : types.get(Direction.BOTH).values()) {
+            types.get(Direction.OUTGOING).remove(type.name());
+            types.get(Direction.INCOMING).remove(type.name());
+        }
+
+        List<Read> reads = new ArrayList<>();
+        for (Map.Entry<Direction, Map<String, RelationshipType>> entry : types.entrySet()) {
+            if (allTypes.get(entry.getKey())) {
+                reads.add(new Read(entry.getKey(), new RelationshipType[0]));
+            } else if (!entry.getValue().isEmpty()) {
+                reads.add(new Read(entry.getKey(), entry.getValue().values().toArray(new RelationshipType[0])));
+            }
+        }
+        return reads.toArray(new Read[0]);
+    }
+
+    //the relationships of a direction, of some types (all if none) : read in one pass, the store choosing how
+    //(the relationship groups of the types on a dense node, one scan of the chain on a sparse node)
+    static class Read {
+        final Direction direction;
+        final RelationshipType[] types;
+
+        Read(Direction direction, RelationshipType[] types) {
+            this.direction = direction;
+            this.types = types;
+        }
+
+        Iterable<Relationship> relationships(Node node) {
+            return this.types.length == 0 ? node.getRelationships(this.direction) : node.getRelationships(this.direction, this.types);
+        }
+    }
 }
@@ -50,11 +50,28 @@ public abstract class RelationshipTypeAndDirections {
 		return BOTH;
 	}
 
+	//'TYPE:RULE[:group]' declares the propagation rule (& group) of all the relationships of the type.
+	//A colon before the type name is only a prefix, as in ':TYPE' or '<:TYPE'
 	public static RelationshipType relationshipTypeFor(String name) {
+		String declaration = null;
+		int start = 0;
+		while (start < name.length() && (name.charAt(start) == '<' || name.charAt(start) == ':' || Character.isWhitespace(name.charAt(start)))) start++;
+		int nameEnd = start;
+		if (start < name.length() && name.charAt(start) == BACKTICK) {
+			int closing = name.indexOf(BACKTICK, start + 1);
+			nameEnd = (closing < 0) ? name.length() : closing + 1;
+		}
+		int colon = name.indexOf(':', nameEnd);
+		//a declaration follows a non-empty type name
+		if (colon > start) {
+			declaration = name.substring(colon + 1).replaceAll("[<>]", "").trim();
+			name = name.substring(0, colon) + name.substring(colon).replaceAll("[^<>]", "");
+		}
 		if (name.indexOf(BACKTICK) > -1) name = name.substring(name.indexOf(BACKTICK)+1,name.lastIndexOf(BACKTICK));
 		else {
 			name = name.replaceAll("[<>:]", "");
 		}
-		return name.trim().isEmpty() ? null : RelationshipType.withName(name);
+		if (name.trim().isEmpty()) return null;
+		return (declaration == null || declaration.isEmpty()) ? RelationshipType.withName(name) : RuledRelationshipType.parse(name, declaration);
 	}
 }
@@ -0,0 +1,55 @@
+package neo4j.impact;
+
+import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.Arrays;
+
+/**
+ * Relationship type of the relationshipFilter declaring the propagation rule, and optionally the impact group, of all
+ * its relationships (as in '<RUNS_ON:PROTECTION' or '<RUNS_ON:PROTECTION:rack1') : their impact_propagation &
+ * impact_group properties are not read.
+ */
+public class RuledRelationshipType implements RelationshipType {
+    //group key of the relationships of a type that declares no rule : read from their properties
+    public static final int NO_KEY = -1;
+
+    private final String name;
+    private final Impact.PropagationRule rule;
+    private final String group;
+
+    RuledRelationshipType(String name, Impact.PropagationRule rule, String group) {
+        this.name = name;
+        this.rule = rule;
+        this.group = group;
+    }
+
+    //declaration : 'RULE' or 'RULE:group'
+    static RuledRelationshipType parse(String name, String declaration) {
+        String[] parts = declaration.split(":", 2);
+        Impact.PropagationRule rule = Impact.PropagationRule.parse(parts[0].trim());
+        if (rule == null) {
+            throw new QueryExecutionException("relationship type '" + name + "' declares an unknown propagation rule '" + parts[0].trim() +
+                    "', expected one of " + Arrays.toString(Impact.PropagationRule.values()), null, "Neo.ClientError.Statement.SyntaxError");
+        }
+        String group = (parts.length > 1 && !parts[1].trim().isEmpty()) ? parts[1].trim() : null;
+        return new RuledRelationshipType(name, rule, group);
+    }
+
+    @Override
+    public String name() {
+        return this.name;
+    }
+
+    //group key of all the relationships of the type (see GroupAccumulator.key), NO_KEY if it declares no rule
+    public static int groupKey(RelationshipType type, GroupDictionary groupIds) {
+        if (!(type instanceof RuledRelationshipType)) return NO_KEY;
+        RuledRelationshipType ruled = (RuledRelationshipType) type;
+        return GroupAccumulator.key(ruled.rule, groupIds.idOf(ruled.group));
+    }
+
+    @Override
+    public String toString() {
+        return this.name + ":" + this.rule + (this.group == null ? "" : ":" + this.group);
+    }
+}
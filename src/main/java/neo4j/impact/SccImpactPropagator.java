@@ -0,0 +1,273 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.set.mutable.primitive.LongHashSet;
+
+/**
+ * Cycle-aware propagation engine : the impact subgraph reachable from the start nodes (within the hop limit) is
+ * condensed into its strongly connected components, which are then solved in topological order.
+ * When a component is solved, the nodes impacting it from upstream components already have their final state : a node
+ * outside of any cycle is evaluated exactly once, and the nodes of a cycle are solved locally to their fixpoint, with
+ * group counters.
+ * The cost is linear in the number of impact relationships, and the result is the least fixpoint, whatever the order
+ * of the relationships : the same as the worklist engine, without a result limit. With a result limit, nodes are
+ * evaluated in topological order until it's reached.
+ * The whole subgraph is discovered & condensed before the first component is solved, including when streaming.
+ * Start nodes have their start state in nodesMap : a start node that isn't FAILED gets worse as any other node.
+ */
+public class SccImpactPropagator {
+    StateStore nodesMap;
+    LongHashSet startNodes;
+    ImpactGraph graph;
+    GroupAccumulator groups = new GroupAccumulator();
+    GroupCounters counters = new GroupCounters();
+    long maxLevel;
+    long resultLimit;
+    long timeoutMs;
+    long startTime;
+    MemoryLimit memoryLimit = new MemoryLimit(-1);
+    ImpactProfile profile = new ImpactProfile(false);
+    ImpactCauses causes;
+
+    //reachable subgraph : dense index <-> node id, impacted relationships in compressed sparse row arrays
+    LongIntHashMap indexes = new LongIntHashMap();
+    LongArrayList nodeIds = new LongArrayList();
+    int[] offsets;
+    int[] impactedNodes;
+    int[] impactedKeys;
+    boolean[] queued;
+    StronglyConnectedComponents components;
+    int nextComponent;
+
+    public SccImpactPropagator(ImpactGraph graph, long[] startNodes, StateStore nodesMap,
+                               long maxLevel, long resultLimit, long timeout) {
+        this.graph = graph ;
+        this.nodesMap = nodesMap ;
+        this.startNodes = LongHashSet.newSetWith(startNodes) ;
+        this.maxLevel = maxLevel ;
+        this.resultLimit = resultLimit ;
+        this.timeoutMs = timeout * 1000 ;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    public void setMemoryLimit(MemoryLimit memoryLimit) {
+        this.memoryLimit = memoryLimit;
+    }
+
+    public void setProfile(ImpactProfile profile) {
+        this.profile = profile;
+    }
+
+    //records the cause of each state change
+    public void setCauses(ImpactCauses causes) {
+        this.causes = causes;
+    }
+
+    public void propagate() {
+        prepare();
+        while (solveNext()) { }
+    }
+
+    //streaming : the reachable subgraph is discovered & condensed first (within the hop & memory limits), then the
+    //components are solved one at a time, as the nodes are consumed.
+    //A node is returned once the component it belongs to is solved : its state is final
+    public StateStore.Cursor settledNodes() {
+        prepare();
+        return new StateStore.Cursor() {
+            int position;
+            int end;
+            long nodeId;
+            Impact.State state;
+
+            @Override
+            public boolean next() {
+                while (true) {
+                    while (this.position < this.end) {
+                        this.nodeId = nodeIds.get(components.members[this.position++]);
+                        this.state = nodesMap.get(this.nodeId);
+                        if (this.state != null) return true;
+                    }
+                    int component = nextComponent;
+                    if (!solveNext()) return false;
+                    this.position = components.offsets[component];
+                    this.end = components.offsets[component + 1];
+                }
+            }
+
+            @Override
+            public long nodeId() {
+                return this.nodeId;
+            }
+
+            @Override
+            public Impact.State state() {
+                return this.state;
+            }
+        };
+    }
+
+    private void prepare() {
+        discover();
+        this.queued = new boolean[this.nodeIds.size()];
+        this.components = StronglyConnectedComponents.of(this.offsets, this.impactedNodes, this.impactedKeys, key -> true);
+        //upstream components first
+        this.nextComponent = this.components.count() - 1;
+    }
+
+    //solves the next component in topological order, false if there's none left or the time limit is reached
+    private boolean solveNext() {
+        if (this.nextComponent < 0) return false;
+        if (this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs)) {
+            this.profile.timeoutPrunes++;
+            return false;
+        }
+        if (!this.memoryLimit.check(this.nodesMap.memoryUsage() + this.counters.memoryUsage() + subgraphMemoryUsage()
+                + (this.causes == null ? 0 : this.causes.memoryUsage()))) {
+            return false;
+        }
+        int component = this.nextComponent--;
+        int first = this.components.offsets[component];
+        if (this.components.size(component) == 1 && !impactsItself(this.components.members[first])) {
+            evaluate(this.components.members[first]);
+        } else {
+            solve(this.components, component);
+        }
+        return true;
+    }
+
+    //breadth-first discovery of the nodes within the hop limit, and of the impact relationships between them
+    private void discover() {
+        IntArrayList sources = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        IntArrayList keys = new IntArrayList();
+        IntArrayList depths = new IntArrayList();
+        this.startNodes.forEach(start -> { indexOf(start); depths.add(0); });
+        for (int index = 0; index < this.nodeIds.size(); index++) {
+            boolean canDiscover = this.maxLevel < 0 || depths.get(index) < this.maxLevel;
+            ImpactGraph.RelationshipCursor impacted = this.graph.impacted(this.nodeIds.get(index));
+            while (impacted.next()) {
+                int other = this.indexes.getIfAbsent(impacted.otherNodeId(), -1);
+                if (other < 0) {
+                    if (!canDiscover) continue;
+                    //over the memory limit, the nodes already discovered are solved, as if they were at the hop limit.
+                    //Each node is counted with its future state & component entries, so that they can be solved within the limit
+                    if (!this.memoryLimit.check(this.nodeIds.size() * 72L + sources.size() * 12L)) continue;
+                    other = indexOf(impacted.otherNodeId());
+                    depths.add(depths.get(index) + 1);
+                }
+                sources.add(index);
+                targets.add(other);
+                keys.add(impacted.groupKey());
+            }
+        }
+        this.offsets = CsrImpactGraph.offsets(sources, this.nodeIds.size());
+        this.impactedNodes = new int[sources.size()];
+        this.impactedKeys = new int[sources.size()];
+        //discovered in order of their source : already sorted
+        for (int r = 0; r < sources.size(); r++) {
+            this.impactedNodes[r] = targets.get(r);
+            this.impactedKeys[r] = keys.get(r);
+        }
+    }
+
+    //discovered subgraph : node index table & ids, relationship arrays, component arrays
+    private long subgraphMemoryUsage() {
+        return this.indexes.size() * 24L + this.nodeIds.size() * (Long.BYTES + 4L * Integer.BYTES + 1)
+                + this.impactedNodes.length * 2L * Integer.BYTES;
+    }
+
+    private int indexOf(long nodeId) {
+        int index = this.indexes.getIfAbsent(nodeId, -1);
+        if (index < 0) {
+            index = this.nodeIds.size();
+            this.nodeIds.add(nodeId);
+            this.indexes.put(nodeId, index);
+        }
+        return index;
+    }
+
+    private boolean impactsItself(int index) {
+        for (int r = this.offsets[index]; r < this.offsets[index + 1]; r++) {
+            if (this.impactedNodes[r] == index) return true;
+        }
+        return false;
+    }
+
+    //first evaluation of that node : it adds a result, unless it's a start node or the result limit is reached.
+    //A start node that isn't FAILED is evaluated, from its start state
+    private boolean isEvaluable(long node) {
+        if (this.startNodes.contains(node)) {
+            Impact.State startState = this.nodesMap.get(node);
+            return startState != null && startState != Impact.State.FAILED;
+        }
+        if (this.resultLimit > 0 && this.nodesMap.size() >= this.resultLimit) {
+            this.profile.resultLimitPrunes.increment();
+            return false;
+        }
+        return true;
+    }
+
+    //node outside of any cycle : all its impacting nodes have their final state
+    private void evaluate(int index) {
+        long node = this.nodeIds.get(index);
+        if (!isEvaluable(node)) return;
+        this.profile.evaluated(node);
+        this.groups.reset();
+        ImpactGraph.RelationshipCursor impacting = this.graph.impacting(node);
+        while (impacting.next()) {
+            this.groups.add(impacting.groupKey(), this.nodesMap.getOrDefault(impacting.otherNodeId(), Impact.State.WORKING), impacting.otherNodeId());
+        }
+        Impact.State previousState = this.nodesMap.get(node);
+        Impact.State state = this.groups.result();
+        if (previousState != null && state.compare(previousState) <= 0) return;
+        this.nodesMap.put(node, state);
+        if (this.causes != null) { this.causes.record(node, this.groups); }
+    }
+
+    //fixpoint of a cycle, starting from WORKING : members only get worse, and only re-evaluated when one of their
+    //impacting members changed state
+    private void solve(StronglyConnectedComponents components, int component) {
+        IntArrayList worklist = new IntArrayList();
+        for (int m = components.offsets[component]; m < components.offsets[component + 1]; m++) {
+            int index = components.members[m];
+            long node = this.nodeIds.get(index);
+            //members that aren't evaluated stay WORKING
+            if (!isEvaluable(node)) continue;
+            this.counters.initialize(node);
+            ImpactGraph.RelationshipCursor impacting = this.graph.impacting(node);
+            while (impacting.next()) {
+                this.counters.add(node, impacting.groupKey(), this.nodesMap.getOrDefault(impacting.otherNodeId(), Impact.State.WORKING));
+            }
+            //reserves its result, so that the members counted as WORKING so far can't exceed the result limit
+            if (!this.nodesMap.contains(node)) this.nodesMap.put(node, Impact.State.WORKING);
+            worklist.add(index);
+        }
+        boolean[] queued = this.queued;
+        for (int i = 0; i < worklist.size(); i++) { queued[worklist.get(i)] = true; }
+
+        for (int i = 0; i < worklist.size(); i++) {
+            int index = worklist.get(i);
+            queued[index] = false;
+            long node = this.nodeIds.get(index);
+            Impact.State previousState = this.nodesMap.get(node);
+            this.profile.evaluated(node);
+            Impact.State state = this.counters.state(node);
+            if (state.compare(previousState) <= 0) continue;
+            this.nodesMap.put(node, state);
+            if (this.causes != null) { this.causes.record(node, this.graph, this.nodesMap); }
+            for (int r = this.offsets[index]; r < this.offsets[index + 1]; r++) {
+                int impacted = this.impactedNodes[r];
+                long impactedNode = this.nodeIds.get(impacted);
+                //only the members of the cycle are left to solve (& evaluated)
+                if (components.componentOf(impacted) != component || !this.counters.isInitialized(impactedNode)) continue;
+                this.counters.update(impactedNode, this.impactedKeys[r], previousState, state);
+                if (!queued[impacted]) {
+                    queued[impacted] = true;
+                    worklist.add(impacted);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+import java.util.Arrays;
+
+/**
+ * Bit-parallel propagation of up to 64 independent failure scenarios in one sweep of the graph.
+ * Each reached node holds its state in every scenario as 2 bit-planes (see BitGroupAccumulator), so that one read
+ * of an impact relationship serves all scenarios.
+ * Level-synchronous, like ParallelImpactPropagator : a node is first evaluated in a scenario at the level of its hop
+ * distance from that scenario's start nodes, which gives the same hop limit semantics as the single-scenario engines.
+ */
+public class ScenarioPropagator {
+    public static final int MAX_SCENARIOS = Long.SIZE;
+
+    ImpactGraph graph;
+    long maxLevel;
+    long resultLimit;
+    long timeoutMs;
+    long startTime;
+
+    //per reached node, one bit per scenario
+    LongIntHashMap indexes = new LongIntHashMap();
+    long[] nodeIds = new long[64];
+    long[] discovered = new long[64];
+    long[] evaluated = new long[64];
+    long[] starts = new long[64];
+    long[] hi = new long[64];
+    long[] lo = new long[64];
+    int nodeCount;
+    boolean complete;
+    int[] resultCounts = new int[MAX_SCENARIOS];
+
+    BitGroupAccumulator groups = new BitGroupAccumulator();
+    LongArrayList nextFrontier = new LongArrayList();
+    LongLongHashMap nextDirtyLanes = new LongLongHashMap();
+
+    public ScenarioPropagator(ImpactGraph graph, long maxLevel, long resultLimit, long timeout) {
+        this.graph = graph ;
+        this.maxLevel = maxLevel ;
+        this.resultLimit = resultLimit ;
+        this.timeoutMs = timeout * 1000 ;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    //startSets : start node ids of each scenario (at most 64)
+    public void propagate(long[][] startSets) {
+        if (startSets.length > MAX_SCENARIOS) throw new IllegalArgumentException("at most " + MAX_SCENARIOS + " scenarios per sweep");
+        for (int lane = 0; lane < startSets.length; lane++) {
+            long bit = 1L << lane;
+            for (long start : startSets[lane]) {
+                int index = indexOf(start);
+                if ((this.starts[index] & bit) != 0) continue;
+                this.starts[index] |= bit;
+                this.discovered[index] |= bit;
+                this.evaluated[index] |= bit;
+                this.hi[index] |= bit;
+                this.lo[index] |= bit;
+                this.resultCounts[lane]++;
+            }
+        }
+        //level 0 : the start nodes changed (to FAILED)
+        for (int index = 0, startCount = this.nodeCount; index < startCount; index++) {
+            expand(this.nodeIds[index], this.starts[index], 0);
+        }
+        int level = 1;
+        while (!this.nextFrontier.isEmpty()) {
+            if (this.timeoutMs > 0 && (System.currentTimeMillis()-this.startTime >= this.timeoutMs)) break;
+            long[] frontier = this.nextFrontier.toArray();
+            LongLongHashMap dirtyLanes = this.nextDirtyLanes;
+            this.nextFrontier = new LongArrayList();
+            this.nextDirtyLanes = new LongLongHashMap();
+            for (long node : frontier) {
+                evaluate(node, dirtyLanes.get(node), level);
+            }
+            level++;
+        }
+        //not cut short by the time limit
+        this.complete = this.nextFrontier.isEmpty();
+    }
+
+    private int indexOf(long nodeId) {
+        int index = this.indexes.getIfAbsent(nodeId, -1);
+        if (index < 0) {
+            if (this.nodeCount == this.nodeIds.length) {
+                int capacity = this.nodeCount << 1;
+                this.nodeIds = Arrays.copyOf(this.nodeIds, capacity);
+                this.discovered = Arrays.copyOf(this.discovered, capacity);
+                this.evaluated = Arrays.copyOf(this.evaluated, capacity);
+                this.starts = Arrays.copyOf(this.starts, capacity);
+                this.hi = Arrays.copyOf(this.hi, capacity);
+                this.lo = Arrays.copyOf(this.lo, capacity);
+            }
+            index = this.nodeCount++;
+            this.nodeIds[index] = nodeId;
+            this.indexes.put(nodeId, index);
+        }
+        return index;
+    }
+
+    private void evaluate(long node, long lanes, int level) {
+        int index = this.indexes.get(node);
+        //FAILED lanes can't change anymore
+        lanes &= ~(this.hi[index] & this.lo[index]);
+        long firstLanes = lanes & ~this.evaluated[index];
+        //first evaluation in a scenario : it adds a result to it, unless its result limit is reached
+        if (this.resultLimit > 0) {
+            for (long remaining = firstLanes; remaining != 0; remaining &= remaining - 1) {
+                int lane = Long.numberOfTrailingZeros(remaining);
+                if (this.resultCounts[lane] >= this.resultLimit) {
+                    lanes &= ~(1L << lane);
+                    firstLanes &= ~(1L << lane);
+                } else {
+                    this.resultCounts[lane]++;
+                }
+            }
+        } else {
+            for (long remaining = firstLanes; remaining != 0; remaining &= remaining - 1) {
+                this.resultCounts[Long.numberOfTrailingZeros(remaining)]++;
+            }
+        }
+        if (lanes == 0) return;
+
+        this.groups.reset();
+        ImpactGraph.RelationshipCursor impacting = this.graph.impacting(node);
+        while (impacting.next()) {
+            int other = this.indexes.getIfAbsent(impacting.otherNodeId(), -1);
+            //nodes not reached in any scenario are WORKING in all of them
+            this.groups.add(impacting.groupKey(), other < 0 ? 0L : this.hi[other], other < 0 ? 0L : this.lo[other]);
+        }
+        this.groups.result();
+        long worse = BitGroupAccumulator.greaterThan(this.groups.resultHi(), this.groups.resultLo(), this.hi[index], this.lo[index]) & lanes;
+        this.hi[index] = (this.groups.resultHi() & worse) | (this.hi[index] & ~worse);
+        this.lo[index] = (this.groups.resultLo() & worse) | (this.lo[index] & ~worse);
+        this.evaluated[index] |= firstLanes;
+
+        //the first evaluation always counts as a change, so that the impacted nodes get discovered
+        long changed = worse | firstLanes;
+        if (changed != 0) expand(node, changed, level);
+    }
+
+    //queues the nodes impacted by 'node' in the scenarios of 'lanes', for the next level.
+    //Nodes beyond the hop limit are not discovered, but already known nodes are always re-evaluated
+    private void expand(long node, long lanes, int level) {
+        boolean canDiscover = this.maxLevel < 0 || level < this.maxLevel;
+        ImpactGraph.RelationshipCursor impacted = this.graph.impacted(node);
+        while (impacted.next()) {
+            long impactedNode = impacted.otherNodeId();
+            int index = canDiscover ? indexOf(impactedNode) : this.indexes.getIfAbsent(impactedNode, -1);
+            if (index < 0) continue;
+            if (canDiscover) this.discovered[index] |= lanes;
+            long dirty = lanes & this.discovered[index] & ~this.starts[index];
+            if (dirty == 0) continue;
+            long pending = this.nextDirtyLanes.get(impactedNode);
+            if (pending == 0) this.nextFrontier.add(impactedNode);
+            this.nextDirtyLanes.put(impactedNode, pending | dirty);
+        }
+    }
+
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    //number of reached nodes, over all scenarios
+    public int nodeCount() {
+        return this.nodeCount;
+    }
+
+    public long nodeId(int index) {
+        return this.nodeIds[index];
+    }
+
+    //scenarios in which the node has a result
+    public long resultLanes(int index) {
+        return this.evaluated[index];
+    }
+
+    public Impact.State state(int index, int lane) {
+        return BitGroupAccumulator.laneState(this.hi[index], this.lo[index], lane);
+    }
+}
@@ -0,0 +1,36 @@
+package neo4j.impact;
+
+/**
+ * Node states of a propagation, keyed by node id.
+ * Only the nodes reached by the propagation are stored : absent nodes are WORKING.
+ */
+public interface StateStore {
+
+    //state of the node, or null if the node was not reached by the propagation
+    Impact.State get(long nodeId);
+
+    //state of the node, or the default state if the node was not reached by the propagation
+    default Impact.State getOrDefault(long nodeId, Impact.State defaultState) {
+        Impact.State state = get(nodeId);
+        return (state == null) ? defaultState : state;
+    }
+
+    boolean contains(long nodeId);
+
+    void put(long nodeId, Impact.State state);
+
+    //number of nodes reached by the propagation
+    int size();
+
+    //approximate heap usage, in bytes
+    long memoryUsage();
+
+    //iterates over the stored (nodeId, state) entries, in no particular order
+    Cursor cursor();
+
+    interface Cursor {
+        boolean next();
+        long nodeId();
+        Impact.State state();
+    }
+}
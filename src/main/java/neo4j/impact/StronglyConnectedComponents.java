@@ -0,0 +1,109 @@
+package neo4j.impact;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Strongly connected components of a graph in compressed sparse row arrays (ex: CsrImpactGraph), following the impact
+ * relationships whose group key is accepted by a filter (iterative Tarjan, on primitive arrays).
+ * Components are numbered in the order Tarjan completes them, which is a reverse topological order of the condensed
+ * graph : the components impacted by a component always come before it.
+ */
+public class StronglyConnectedComponents {
+    //node index -> component
+    final int[] components;
+    //members of component c : [offsets[c], offsets[c+1]) in the members array
+    final int[] offsets;
+    final int[] members;
+
+    private StronglyConnectedComponents(int[] components, int count) {
+        this.components = components;
+        this.offsets = new int[count + 1];
+        for (int component : components) { this.offsets[component + 1]++; }
+        for (int c = 0; c < count; c++) { this.offsets[c + 1] += this.offsets[c]; }
+        this.members = new int[components.length];
+        int[] positions = Arrays.copyOf(this.offsets, count);
+        for (int node = 0; node < components.length; node++) {
+            this.members[positions[components[node]]++] = node;
+        }
+    }
+
+    public static StronglyConnectedComponents of(CsrImpactGraph graph, IntPredicate followedKeys) {
+        return of(graph.impactedOffsets, graph.impactedNodes, graph.impactedKeys, followedKeys);
+    }
+
+    //impacted relationships of node i : [offsets[i], offsets[i+1]) in the impacted nodes & keys arrays
+    public static StronglyConnectedComponents of(int[] offsets, int[] impactedNodes, int[] impactedKeys, IntPredicate followedKeys) {
+        int nodeCount = offsets.length - 1;
+        int[] components = new int[nodeCount];
+        int[] order = new int[nodeCount];
+        int[] low = new int[nodeCount];
+        Arrays.fill(order, -1);
+        boolean[] onStack = new boolean[nodeCount];
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        //explicit call stack : node & position in its impacted relationships
+        int[] callNodes = new int[nodeCount];
+        int[] callPositions = new int[nodeCount];
+        int next = 0;
+        int count = 0;
+
+        for (int root = 0; root < nodeCount; root++) {
+            if (order[root] >= 0) continue;
+            order[root] = low[root] = next++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callNodes[0] = root;
+            callPositions[0] = offsets[root];
+            int depth = 1;
+            while (depth > 0) {
+                int node = callNodes[depth - 1];
+                int position = callPositions[depth - 1];
+                if (position < offsets[node + 1]) {
+                    callPositions[depth - 1]++;
+                    if (!followedKeys.test(impactedKeys[position])) continue;
+                    int impacted = impactedNodes[position];
+                    if (order[impacted] < 0) {
+                        order[impacted] = low[impacted] = next++;
+                        stack[stackSize++] = impacted;
+                        onStack[impacted] = true;
+                        callNodes[depth] = impacted;
+                        callPositions[depth] = offsets[impacted];
+                        depth++;
+                    } else if (onStack[impacted]) {
+                        low[node] = Math.min(low[node], order[impacted]);
+                    }
+                } else {
+                    depth--;
+                    if (low[node] == order[node]) {
+                        //root of a component : pop its members
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            components[member] = count;
+                        } while (member != node);
+                        count++;
+                    }
+                    if (depth > 0) {
+                        int caller = callNodes[depth - 1];
+                        low[caller] = Math.min(low[caller], low[node]);
+                    }
+                }
+            }
+        }
+        return new StronglyConnectedComponents(components, count);
+    }
+
+    public int count() {
+        return this.offsets.length - 1;
+    }
+
+    public int componentOf(int node) {
+        return this.components[node];
+    }
+
+    public int size(int component) {
+        return this.offsets[component + 1] - this.offsets[component];
+    }
+}
@@ -0,0 +1,68 @@
+package neo4j.impact;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentStateStoreTest {
+
+    @Test
+    public void testConcurrentPagesAndGrowth() throws Exception {
+        int threads = 8;
+        int pages = 256; //node ids up to 2^24 : the directory grows several times while pages are created
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 200; round++) {
+                ConcurrentStateStore states = new ConcurrentStateStore();
+                CountDownLatch ready = new CountDownLatch(threads);
+                List<Future<?>> workers = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    Random random = new Random(round * 31L + t);
+                    workers.add(pool.submit(() -> {
+                        //each thread writes its own slot of every page : half of them in increasing page order, so that
+                        //pages get created while the directory grows, the others in random order
+                        List<Long> ids = new ArrayList<>();
+                        for (long page = 0; page < pages; page++) { ids.add((page << 16) + thread); }
+                        if (thread % 2 == 1) Collections.shuffle(ids, random);
+                        ready.countDown();
+                        ready.await();
+                        for (long id : ids) {
+                            assertTrue(states.worsen(id, Impact.State.of((int) (id % 3) + 1)));
+                            assertTrue(states.discover(id));
+                            assertTrue(states.enqueue(id));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> worker : workers) { worker.get(); }
+
+                assertEquals(threads * pages, states.size());
+                Set<Long> seen = new HashSet<>();
+                StateStore.Cursor cursor = states.cursor();
+                while (cursor.next()) {
+                    assertEquals(Impact.State.of((int) (cursor.nodeId() % 3) + 1), cursor.state());
+                    seen.add(cursor.nodeId());
+                }
+                assertEquals(threads * pages, seen.size());
+                for (long id : seen) {
+                    assertTrue(states.isDiscovered(id));
+                    assertFalse(states.enqueue(id));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package neo4j.impact;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static neo4j.impact.Impact.PropagationRule.*;
+import static neo4j.impact.Impact.State.*;
+import static org.junit.Assert.*;
+
+public class GroupAccumulatorTest {
+
+    @Test
+    public void testRules() {
+        GroupAccumulator groups = new GroupAccumulator();
+        groups.add(PROTECTION, 1, FAILED);
+        groups.add(PROTECTION, 1, WORKING);
+        assertEquals(AT_RISK, groups.result());
+        //reused for another node
+        groups.reset();
+        groups.add(PROTECTION, 1, FAILED);
+        groups.add(PROTECTION, 1, WORKING);
+        groups.add(PROTECTION, 1, WORKING);
+        assertEquals(WORKING, groups.result());
+        groups.reset();
+        groups.add(LEAST_SEVERE, 0, FAILED);
+        groups.add(LEAST_SEVERE, 0, DEGRADED);
+        groups.add(DEGRADATION, 0, FAILED);
+        groups.add(RISK_PROPAGATION, 2, FAILED);
+        assertEquals(DEGRADED, groups.result());
+        groups.reset();
+        assertEquals(WORKING, groups.result());
+    }
+
+    @Test
+    public void testDecidingGroup() {
+        GroupAccumulator groups = new GroupAccumulator();
+        groups.add(GroupAccumulator.key(PROTECTION, 1), FAILED, 10);
+        groups.add(GroupAccumulator.key(PROTECTION, 1), WORKING, 11);
+        groups.add(GroupAccumulator.key(RISK_PROPAGATION, 0), WORKING, 12);
+        assertEquals(AT_RISK, groups.result());
+        assertEquals(GroupAccumulator.key(PROTECTION, 1), groups.decidingKey());
+        assertEquals(10, groups.decidingNode());
+        groups.reset();
+        //the least severe node decides a LEAST_SEVERE group
+        groups.add(GroupAccumulator.key(LEAST_SEVERE, 0), FAILED, 20);
+        groups.add(GroupAccumulator.key(LEAST_SEVERE, 0), DEGRADED, 21);
+        groups.add(GroupAccumulator.key(DEGRADATION, 2), AT_RISK, 22);
+        assertEquals(DEGRADED, groups.result());
+        assertEquals(GroupAccumulator.key(LEAST_SEVERE, 0), groups.decidingKey());
+        assertEquals(21, groups.decidingNode());
+        groups.reset();
+        groups.add(GroupAccumulator.key(MOST_SEVERE, 0), WORKING, 30);
+        assertEquals(-1, groups.decidingKey());
+        assertEquals(-1, groups.decidingNode());
+    }
+
+    @Test
+    public void testBitParallelMatchesScalar() {
+        Random random = new Random(42);
+        GroupAccumulator scalar = new GroupAccumulator();
+        BitGroupAccumulator bits = new BitGroupAccumulator();
+        for (int round = 0; round < 200; round++) {
+            //64 lanes, each with the same relationships (group keys) but its own impacting states
+            int relationships = 1 + random.nextInt(6);
+            int[] keys = new int[relationships];
+            Impact.State[][] states = new Impact.State[relationships][64];
+            for (int r = 0; r < relationships; r++) {
+                keys[r] = GroupAccumulator.key(Impact.PropagationRule.of(random.nextInt(5)), random.nextInt(3));
+                for (int lane = 0; lane < 64; lane++) { states[r][lane] = Impact.State.of(random.nextInt(4)); }
+            }
+            bits.reset();
+            for (int r = 0; r < relationships; r++) {
+                long hi = 0L, lo = 0L;
+                for (int lane = 0; lane < 64; lane++) {
+                    hi |= (long) (states[r][lane].getStateValue() >> 1) << lane;
+                    lo |= (long) (states[r][lane].getStateValue() & 1) << lane;
+                }
+                bits.add(keys[r], hi, lo);
+            }
+            bits.result();
+            for (int lane = 0; lane < 64; lane++) {
+                scalar.reset();
+                for (int r = 0; r < relationships; r++) { scalar.add(keys[r], states[r][lane]); }
+                assertEquals(scalar.result(), BitGroupAccumulator.laneState(bits.resultHi(), bits.resultLo(), lane));
+            }
+        }
+    }
+
+    @Test
+    public void testManyGroups() {
+        GroupAccumulator groups = new GroupAccumulator();
+        //one working PROTECTION member per group : every group is AT_RISK
+        for (int group = 0; group < 1000; group++) {
+            groups.add(PROTECTION, group, WORKING);
+            groups.add(LEAST_SEVERE, group, FAILED);
+            groups.add(LEAST_SEVERE, group, WORKING);
+        }
+        assertEquals(AT_RISK, groups.result());
+        groups.add(MOST_SEVERE, 999, FAILED);
+        assertEquals(FAILED, groups.result());
+    }
+}
@@ -10,12 +10,24 @@ import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.neo4j.internal.helpers.collection.Iterators;
+import org.neo4j.internal.helpers.collection.Pair;
+import org.neo4j.internal.kernel.api.security.AccessMode;
+import org.neo4j.internal.kernel.api.security.AuthSubject;
+import org.neo4j.internal.kernel.api.security.AuthenticationResult;
+import org.neo4j.internal.kernel.api.security.SecurityContext;
 import org.neo4j.kernel.api.procedure.GlobalProcedures;
 import org.neo4j.kernel.internal.GraphDatabaseAPI;
 import org.neo4j.test.rule.DbmsRule;
@@ -252,6 +264,50 @@ public class ImpactTest {
                 r -> assertImpactResult_nodeState(r, "C", "FAILED"));
     }
 
+    @Test
+    public void testImpact_declaredRules() throws Exception {
+        System.out.println("testImpact_declaredRules...");
+        db.executeTransactionally(SETUP_NETWORK);
+        String start = "MATCH (loc:Location {name:'loc1'}) ";
+        Map<String, String> expected = new HashMap<>();
+        testResult(db, start + "CALL neo4j.impact.compute(loc) yield node, state RETURN node, state", null,
+                r -> expected.putAll(resultStates(r)));
+        assertEquals("AT_RISK", expected.get("circ"));
+        //the protection relationships get their own type, without properties : their rule & group are declared in the filter
+        db.executeTransactionally("MATCH (a)-[r:IMPACTS {impact_propagation: 'PROTECTION'}]->(b) CREATE (a)-[:PROTECTS]->(b) DELETE r");
+        String call = start + "CALL neo4j.impact.compute(loc, 'IMPACTS>|PROTECTS>:PROTECTION:1', '10hops,60s,1000results', $options) " +
+                "yield node, state RETURN node, state";
+        for (String options : Arrays.asList("", "worklist", "kernel", "scc", "stream", "severity")) {
+            testResult(db, call, Map.of("options", options), r -> assertEquals(options, expected, resultStates(r)));
+        }
+        testResult(db, "CALL neo4j.impact.projection.create('declared', 'IMPACTS>|PROTECTS>:PROTECTION:1') yield name RETURN name", null, r -> r.next());
+        try {
+            testResult(db, call, Map.of("options", "projection:declared"), r -> assertEquals(expected, resultStates(r)));
+        } finally {
+            testResult(db, "CALL neo4j.impact.projection.drop('declared') yield name RETURN name", null, r -> r.next());
+        }
+        //without a declaration, the relationships without properties are MOST_SEVERE
+        testResult(db, start + "CALL neo4j.impact.compute(loc, 'IMPACTS>|PROTECTS>') yield node, state RETURN node, state", null,
+                r -> assertImpactResult_nodeState(r, "circ", "FAILED"));
+
+        //every type declaring its rule : no property is read
+        for (String options : Arrays.asList("", "worklist", "kernel")) {
+            testResult(db, start + "CALL neo4j.impact.profile(loc, 'IMPACTS>:MOST_SEVERE|PROTECTS>:PROTECTION', '10hops,60s,1000results', $options) " +
+                            "yield relationshipsRead, propertyReads RETURN *", Map.of("options", options),
+                    r -> {
+                        Map<String, Object> row = r.next();
+                        assertTrue(options, (Long) row.get("relationshipsRead") > 0);
+                        assertEquals(options, 0L, row.get("propertyReads"));
+                    });
+        }
+        try {
+            testResult(db, start + "CALL neo4j.impact.compute(loc, 'IMPACTS>|PROTECTS>:PROTECT') yield node RETURN node", null, r -> r.next());
+            fail("unknown propagation rule should be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("unknown propagation rule 'PROTECT'"));
+        }
+    }
+
     @Test
     public void testImpact_limits() throws Exception {
         System.out.println("testImpact_limits...");
@@ -283,6 +339,35 @@ public class ImpactTest {
 
     }
 
+    @Test
+    public void testImpact_memoryLimit() throws Exception {
+        System.out.println("testImpact_memoryLimit...");
+        db.executeTransactionally("CREATE (s:S {name: 'S'}) WITH s UNWIND range(1, 40000) AS i CREATE (s)-[:IMPACTS]->(:S {name: 'N' + i})");
+        String call = "MATCH (s:S {name: 'S'}) CALL neo4j.impact.compute(s, null, $limits, $options) yield node, stoppedBy " +
+                "RETURN count(node) as count, collect(DISTINCT stoppedBy) as stoppedBy";
+        for (String options : new String[]{"", "worklist", "severity", "scc", "stream"}) {
+            testResult(db, call, Map.of("limits", "60s,64MB", "options", options), r -> {
+                Map<String, Object> row = r.next();
+                assertEquals(options, 40001L, row.get("count"));
+                assertEquals(options, List.of(), row.get("stoppedBy"));
+            });
+            //stops cleanly, with the results computed so far, and says so (streamed, only the results returned after it stopped)
+            testResult(db, call, Map.of("limits", "60s,1MB", "options", options), r -> {
+                Map<String, Object> row = r.next();
+                long count = (Long) row.get("count");
+                assertTrue(options + " : " + count, count > 0 && count < 40001L);
+                if (!options.equals("stream")) assertEquals(options, List.of("memory"), row.get("stoppedBy"));
+            });
+        }
+        testResult(db, call, Map.of("limits", "60s,100results", "options", "worklist"), r -> {
+            Map<String, Object> row = r.next();
+            assertEquals(100L, row.get("count"));
+            assertEquals(List.of("results"), row.get("stoppedBy"));
+        });
+        testResult(db, "MATCH (s:S {name: 'S'}) CALL neo4j.impact.computeAndWrite(s, null, '60s,100results') yield stoppedBy RETURN stoppedBy", null,
+                r -> assertEquals("results", r.next().get("stoppedBy")));
+    }
+
     @Test
     public void testImpact_loops() throws Exception {
         System.out.println("testImpact_loops...");
@@ -304,6 +389,766 @@ public class ImpactTest {
                 r -> assertImpactResult_resultCount(r, 4)
         );
     }
+    @Test
+    public void testImpact_worklist() throws Exception {
+        System.out.println("testImpact_worklist...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        //the worklist engine gives the same results as the traversal engine
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}), (p:Port {name:'X-1-1'}) " +
+                "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}) " +
+                "CALL neo4j.impact.compute(loc, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}) " +
+                "CALL neo4j.impact.compute(loc, null, '3hops', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        assertSameResults(db, "MATCH (c:Card) WHERE c.name='B-C1' " +
+                "CALL neo4j.impact.compute(c, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        assertSameResults(db, "MATCH (s:X {name:'START'}) " +
+                "CALL neo4j.impact.compute(s, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                        "CALL neo4j.impact.compute(loc, null, '2hops,3results', 'worklist') yield node, state " +
+                        "RETURN  node, state", null,
+                r -> assertImpactResult_resultCount(r, 3));
+        testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                        "CALL neo4j.impact.compute(loc, '<UNKNOWN_TYPE|IMPACTS>', '2hops', 'kernel') yield node, state " +
+                        "RETURN  node, state", null,
+                r -> assertImpactResult_resultCount(r, 5));
+        try {
+            testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                            "CALL neo4j.impact.compute(loc, null, '3hops', 'BS') yield node, state " +
+                            "RETURN  node, state", null,
+                    r -> assertImpactResult_resultCount(r, 9));
+            fail("unknown option should be rejected");
+        } catch (Exception e) {
+            assertTrue( e.getMessage().contains(" parameter 'options' expects "));
+        }
+    }
+
+    @Test
+    public void testImpact_worklist_supernode() throws Exception {
+        System.out.println("testImpact_worklist_supernode...");
+        //49 of the 50 protecting feeders of the hub fail, one by one
+        db.executeTransactionally("CREATE (r:Root {name:'R'}), (h:Hub {name:'H'}), (s:Spare {name:'S'}) " +
+                "WITH r, h, s UNWIND range(1, 50) as i " +
+                "CREATE (f:Feeder {name:'F'+i})-[:IMPACTS {impact_propagation:'PROTECTION', impact_group:'feeders'}]->(h) ");
+        db.executeTransactionally("MATCH (r:Root), (f:Feeder) WHERE f.name <> 'F50' CREATE (r)-[:IMPACTS]->(f)");
+        db.executeTransactionally("MATCH (s:Spare), (f:Feeder {name:'F50'}) CREATE (s)-[:IMPACTS]->(f)");
+        assertSameResults(db, "MATCH (r:Root) " +
+                "CALL neo4j.impact.compute(r, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "worklist", "kernel");
+        testResult(db, "MATCH (r:Root) " +
+                        "CALL neo4j.impact.compute(r, null, '10hops,60s,1000results', 'worklist') yield node, state " +
+                        "RETURN  node, state", null,
+                r -> assertImpactResult_nodeState(r, "H", "AT_RISK"));
+        //the last feeder fails too
+        testResult(db, "MATCH (r:Root), (s:Spare) " +
+                        "CALL neo4j.impact.compute([r, s], null, '10hops,60s,1000results', 'worklist') yield node, state " +
+                        "RETURN  node, state", null,
+                r -> assertImpactResult_nodeState(r, "H", "FAILED"));
+    }
+
+    @Test
+    public void testImpact_parallel() throws Exception {
+        System.out.println("testImpact_parallel...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        //a wide fan-out, to get frontiers of several chunks
+        db.executeTransactionally("CREATE (r:Root {name:'R'}), (h:Hub {name:'H'}) WITH r, h UNWIND range(1, 2000) as i " +
+                "CREATE (r)-[:IMPACTS]->(f:Feeder {name:'F'+i})-[:IMPACTS {impact_propagation:'PROTECTION'}]->(h) " +
+                "CREATE (f)-[:IMPACTS]->(:Leaf {name:'L'+i})");
+        for (String start : new String[]{"(n:Location {name:'loc1'})", "(n:X {name:'START'})", "(n:Root)"}) {
+            String call = "MATCH " + start + " CALL neo4j.impact.compute(n, null, $limits, $options) yield node, state RETURN node, state";
+            Map<String, String> expected = new HashMap<>();
+            testResult(db, call, Map.of("limits", "10hops,60s,10000results", "options", "worklist"), r -> expected.putAll(resultStates(r)));
+            for (String options : new String[]{"worklist", "kernel"}) {
+                testResult(db, call, Map.of("limits", "10hops,60s,10000results,4threads", "options", options),
+                        r -> assertEquals(options, expected, resultStates(r)));
+            }
+        }
+        testResult(db, "MATCH (r:Root) CALL neo4j.impact.compute(r, null, '1hops,4threads', 'kernel') yield node, state RETURN node, state", null,
+                r -> assertImpactResult_resultCount(r, 2001));
+        testResult(db, "MATCH (r:Root) CALL neo4j.impact.compute(r, null, '100results,4threads', 'kernel') yield node, state RETURN node, state", null,
+                r -> assertImpactResult_resultCount(r, 100));
+        //the workers can't read the changes of the calling transaction : the worklist engine runs instead, and sees them
+        String created = "MATCH (r:Root) CREATE (r)-[:IMPACTS]->(:Leaf {name:'NEW'}) WITH r ";
+        testResult(db, created + "CALL neo4j.impact.compute(r, null, '1hops,4threads', 'kernel') yield node, state RETURN node, state", null,
+                r -> assertImpactResult_resultCount(r, 2002));
+        testResult(db, created + "CALL neo4j.impact.profile(r, null, '1hops,4threads', 'kernel') yield engine RETURN engine", null,
+                r -> assertEquals("worklist", r.next().get("engine")));
+    }
+
+    @Test
+    public void testImpact_scenarios() throws Exception {
+        System.out.println("testImpact_scenarios...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        List<List<Long>> scenarios = new ArrayList<>();
+        for (String start : new String[]{"(n:Location {name:'loc1'})", "(n:Card {name:'B-C1'})",
+                "(n) WHERE n.name IN ['loc1', 'X-1-1']", "(n:X {name:'START'})", "(n:Port {name:'X-1-1'})"}) {
+            testResult(db, "MATCH " + start + " RETURN collect(id(n)) as ids", null,
+                    r -> scenarios.add((List<Long>) r.next().get("ids")));
+        }
+        //70 scenarios : 2 sweeps
+        while (scenarios.size() < 70) { scenarios.add(scenarios.get(scenarios.size() % 5)); }
+        for (String limits : new String[]{"10hops,60s,1000results", "3hops", "4results"}) {
+            Map<Long, Map<String, String>> actual = new HashMap<>();
+            testResult(db, "CALL neo4j.impact.computeScenarios($scenarios, null, $limits) yield scenario, node, state " +
+                            "RETURN scenario, node, state", Map.of("scenarios", scenarios, "limits", limits),
+                    r -> r.forEachRemaining(row -> actual.computeIfAbsent((Long) row.get("scenario"), k -> new HashMap<>())
+                            .put(((Node) row.get("node")).getProperty("name").toString(), (String) row.get("state"))));
+            assertEquals(70, actual.size());
+            for (long i = 0; i < 70; i++) {
+                Map<String, String> expected = new HashMap<>();
+                testResult(db, "CALL neo4j.impact.compute($start, null, $limits, 'worklist') yield node, state RETURN node, state",
+                        Map.of("start", scenarios.get((int) i), "limits", limits), r -> expected.putAll(resultStates(r)));
+                if (limits.equals("4results")) {
+                    //truncated results : same size, but which nodes of the last level make it depends on the visit order
+                    assertEquals("scenario " + i + " with " + limits, expected.size(), actual.get(i).size());
+                } else {
+                    assertEquals("scenario " + i + " with " + limits, expected, actual.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testImpact_scc() throws Exception {
+        System.out.println("testImpact_scc...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}), (p:Port {name:'X-1-1'}) " +
+                "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "scc", "scc,kernel");
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}) " +
+                "CALL neo4j.impact.compute(loc, null, '3hops', $options) yield node, state " +
+                "RETURN  node, state", "scc", "scc,kernel");
+        assertSameResults(db, "MATCH (s:X {name:'START'}) " +
+                "CALL neo4j.impact.compute(s, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "scc", "scc,kernel");
+        testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                        "CALL neo4j.impact.compute(loc, null, '2hops,3results', 'scc') yield node, state " +
+                        "RETURN  node, state", null,
+                r -> assertImpactResult_resultCount(r, 3));
+
+        //mixed rules in cycles : same fixpoint as the worklist engine, from every start node
+        db.executeTransactionally("UNWIND range(0, 29) AS i CREATE (:G {name: 'G' + i, i: i})");
+        db.executeTransactionally("MATCH (a:G), (b:G) WHERE b.i IN [(a.i * 7 + 3) % 30, (a.i * 11 + 5) % 30, (a.i + 1) % 30] " +
+                "CREATE (a)-[:IMPACTS {impact_propagation: ['MOST_SEVERE', 'DEGRADATION', 'RISK_PROPAGATION', 'LEAST_SEVERE', 'PROTECTION'][a.i % 5], " +
+                "impact_group: a.i % 2}]->(b)");
+        for (int i = 0; i < 30; i++) {
+            Map<String, String> expected = new HashMap<>();
+            String call = "MATCH (g:G {i: $i}) CALL neo4j.impact.compute(g, null, '60s', $options) yield node, state RETURN node, state";
+            testResult(db, call, Map.of("i", i, "options", "worklist"), r -> expected.putAll(resultStates(r)));
+            testResult(db, call, Map.of("i", i, "options", "scc,kernel"), r -> assertEquals(expected, resultStates(r)));
+        }
+    }
+
+    @Test
+    public void testImpact_startStates() throws Exception {
+        System.out.println("testImpact_startStates...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally("MATCH (n {name:'A'}) SET n:Alarmed, n.severity = 'minor'");
+        db.executeTransactionally("MATCH (n {name:'B-C1'}) SET n:Alarmed, n.severity = 'major'");
+        db.executeTransactionally("MATCH (n {name:'X-1-1'}) SET n:Alarmed, n.severity = 'critical'");
+        db.executeTransactionally("MATCH (n {name:'prev circ'}) SET n:Alarmed, n.severity = 'info'");
+        db.executeTransactionally("MATCH (n {name:'loc1'}) SET n:Alarmed");
+        String call = "CALL neo4j.impact.compute($start, null, $limits, $options) yield node, state RETURN node, state";
+        Map<String, Object> states = Map.of("critical", "FAILED", "major", "DEGRADED", "minor", "AT_RISK");
+
+        //same results from every engine
+        Map<String, Object> start = Map.of("label", "Alarmed", "property", "severity", "states", states);
+        Map<String, String> expected = new HashMap<>();
+        testResult(db, call, Map.of("start", start, "limits", "60s", "options", ""), r -> expected.putAll(resultStates(r)));
+        assertEquals("AT_RISK", expected.get("A"));
+        assertEquals("AT_RISK", expected.get("A-C1-2"));
+        assertEquals("DEGRADED", expected.get("B-C1"));
+        assertEquals("DEGRADED", expected.get("B-C1-2"));
+        assertEquals("FAILED", expected.get("X-1-1"));
+        assertNull(expected.get("loc1"));
+        assertNull(expected.get("prev circ"));
+        for (String options : new String[]{"worklist", "severity", "scc", "stream", "kernel", "explain", "worklist,kernel"}) {
+            testResult(db, call, Map.of("start", start, "limits", "60s", "options", options), r -> assertEquals(options, expected, resultStates(r)));
+        }
+        testResult(db, call, Map.of("start", start, "limits", "60s,4threads", "options", ""), r -> assertEquals(expected, resultStates(r)));
+
+        //a start node that isn't FAILED gets worse from its impacting nodes
+        Map<String, Object> withDefault = Map.of("label", "Alarmed", "property", "severity", "states", states, "state", "FAILED");
+        for (String options : new String[]{"", "worklist", "scc", "explain"}) {
+            testResult(db, call, Map.of("start", withDefault, "limits", "60s", "options", options), r -> {
+                Map<String, String> results = resultStates(r);
+                assertEquals(options, "FAILED", results.get("loc1"));
+                assertEquals(options, "FAILED", results.get("prev circ"));
+                assertEquals(options, "FAILED", results.get("A"));
+                assertEquals(options, "FAILED", results.get("B-C1"));
+            });
+        }
+        testResult(db, call, Map.of("start", withDefault, "limits", "60s,4threads", "options", ""),
+                r -> assertEquals("FAILED", resultStates(r).get("A")));
+
+        //label only : FAILED, as a list of start nodes
+        Map<String, String> failed = new HashMap<>();
+        testResult(db, "MATCH (n:Alarmed) WITH collect(n) as starts " +
+                "CALL neo4j.impact.compute(starts, null, '60s') yield node, state RETURN node, state", null, r -> failed.putAll(resultStates(r)));
+        testResult(db, call, Map.of("start", Map.of("label", "Alarmed"), "limits", "60s", "options", "worklist"),
+                r -> assertEquals(failed, resultStates(r)));
+        //values as state names, unknown label
+        db.executeTransactionally("MATCH (n {name:'next circ'}) SET n:Status, n.status = 'degraded'");
+        testResult(db, call, Map.of("start", Map.of("label", "Status", "property", "status"), "limits", "60s", "options", ""),
+                r -> assertEquals(Map.of("next circ", "DEGRADED", "e2e", "DEGRADED"), resultStates(r)));
+        testResult(db, call, Map.of("start", Map.of("label", "Unknown"), "limits", "60s", "options", ""), r -> assertFalse(r.hasNext()));
+
+        try {
+            testResult(db, call, Map.of("start", Map.of("label", "Alarmed", "property", "severity", "states", Map.of("major", "BROKEN")),
+                    "limits", "60s", "options", ""), r -> r.hasNext());
+            fail("unknown state");
+        } catch (QueryExecutionException e) {
+            assertTrue(e.getMessage().contains("unknown state 'BROKEN'"));
+        }
+    }
+
+    @Test
+    public void testImpact_stream() throws Exception {
+        System.out.println("testImpact_stream...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}), (p:Port {name:'X-1-1'}) " +
+                "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "stream", "stream,kernel");
+        assertSameResults(db, "MATCH (loc:Location {name:'loc1'}) " +
+                "CALL neo4j.impact.compute(loc, null, '3hops', $options) yield node, state " +
+                "RETURN  node, state", "stream");
+        assertSameResults(db, "MATCH (s:X {name:'START'}) " +
+                "CALL neo4j.impact.compute(s, null, '10hops,60s,1000results', $options) yield node, state " +
+                "RETURN  node, state", "stream");
+        //nodes are returned in topological order, as soon as they're final
+        testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                        "CALL neo4j.impact.compute(loc, null, '60s', 'stream') yield node, state " +
+                        "RETURN node.name as name, state LIMIT 2", null,
+                r -> {
+                    assertEquals("loc1", r.next().get("name"));
+                    assertTrue(Arrays.asList("A", "B").contains(r.next().get("name")));
+                    assertFalse(r.hasNext());
+                });
+    }
+
+    @Test
+    public void testImpact_explain() throws Exception {
+        System.out.println("testImpact_explain...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        for (String options : new String[]{"", "worklist", "scc", "stream", "severity", "kernel"}) {
+            //the cause of each impacted node is another impacted node, except for the start node
+            testResult(db, "MATCH (loc:Location {name:'loc1'}) CALL neo4j.impact.compute(loc, null, '10hops,60s,1000results', $options) " +
+                            "yield node, state, cause, rule, group RETURN node.name as name, cause.name as cause, rule, group",
+                    Map.of("options", options.isEmpty() ? "explain" : options + ",explain"), r -> {
+                        Map<String, List<Object>> causes = new HashMap<>();
+                        r.forEachRemaining(row -> causes.put((String) row.get("name"), Arrays.asList(row.get("cause"), row.get("rule"), row.get("group"))));
+                        assertEquals(Arrays.asList(null, null, null), causes.get("loc1"));
+                        assertEquals(Arrays.asList("link A-B", "PROTECTION", "1"), causes.get("circ"));
+                        assertEquals(Arrays.asList("circ", "MOST_SEVERE", null), causes.get("e2e"));
+                        for (Map.Entry<String, List<Object>> entry : causes.entrySet()) {
+                            if (!entry.getKey().equals("loc1")) assertTrue(entry.getKey(), causes.containsKey(entry.getValue().get(0)));
+                        }
+                    });
+            testResult(db, "MATCH (loc:Location {name:'loc1'}), (n) WHERE n.name IN ['e2e', 'A-C1', 'X-1-1'] " +
+                            "WITH loc, collect(n) as nodes CALL neo4j.impact.explain(loc, nodes, null, '10hops,60s,1000results', $options) " +
+                            "yield node, state, chain, rules, groups RETURN node.name as name, state, [n IN chain | n.name] as chain, rules, groups",
+                    Map.of("options", options), r -> {
+                        Map<String, Map<String, Object>> explanations = new HashMap<>();
+                        r.forEachRemaining(row -> explanations.put((String) row.get("name"), row));
+                        assertEquals(Arrays.asList("A-C1", "A", "loc1"), explanations.get("A-C1").get("chain"));
+                        Map<String, Object> e2e = explanations.get("e2e");
+                        assertEquals("AT_RISK", e2e.get("state"));
+                        List<String> chain = (List<String>) e2e.get("chain");
+                        assertEquals(Arrays.asList("e2e", "circ", "link A-B"), chain.subList(0, 3));
+                        assertEquals("loc1", chain.get(chain.size() - 1));
+                        assertEquals(Arrays.asList("MOST_SEVERE", "PROTECTION"), ((List<String>) e2e.get("rules")).subList(0, 2));
+                        assertEquals("1", ((List<String>) e2e.get("groups")).get(1));
+                        assertNull(((List<String>) e2e.get("rules")).get(chain.size() - 1));
+                        //not impacted
+                        assertEquals("WORKING", explanations.get("X-1-1").get("state"));
+                        assertEquals(Arrays.asList("X-1-1"), explanations.get("X-1-1").get("chain"));
+                    });
+            //a cycle : the chain leads back to the start node
+            testResult(db, "MATCH (s:X {name:'START'}), (c:X {name:'C'}) CALL neo4j.impact.explain(s, c, null, '10hops,60s,1000results', $options) " +
+                            "yield chain RETURN [n IN chain | n.name] as chain",
+                    Map.of("options", options), r -> assertEquals(Arrays.asList("C", "B", "A", "START"), r.next().get("chain")));
+        }
+    }
+
+    @Test
+    public void testImpact_summary() throws Exception {
+        System.out.println("testImpact_summary...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally("MATCH (c:Circuit) SET c.customer = 'ACME'");
+        String start = "MATCH (loc:Location {name:'loc1'}), (p:Port {name:'X-1-1'}) ";
+        //same counts as aggregating the results of compute
+        for (String options : Arrays.asList("", "worklist", "scc", "stream")) {
+            Map<String, Object> params = Map.of("options", options);
+            assertSameSummary(start + "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                            "UNWIND labels(node) as group RETURN group, state, count(*) as count",
+                    start + "CALL neo4j.impact.summary([loc,p], null, '10hops,60s,1000results', $options) yield group, state, count " +
+                            "RETURN group, state, count", params);
+            assertSameSummary(start + "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                            "RETURN node.customer as group, state, count(*) as count",
+                    start + "CALL neo4j.impact.summary([loc,p], null, '10hops,60s,1000results', $options, 'customer') yield group, state, count " +
+                            "RETURN group, state, count", params);
+            assertSameSummary(start + "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                            "RETURN null as group, state, count(*) as count",
+                    start + "CALL neo4j.impact.summary([loc,p], null, '10hops,60s,1000results', $options, '') yield group, state, count " +
+                            "RETURN group, state, count", params);
+        }
+    }
+
+    private void assertSameSummary(String expectedQuery, String query, Map<String, Object> params) {
+        Set<List<Object>> expected = new HashSet<>();
+        testResult(db, expectedQuery, params, r -> r.forEachRemaining(row -> expected.add(Arrays.asList(row.get("group"), row.get("state"), row.get("count")))));
+        testResult(db, query, params, r -> {
+            Set<List<Object>> actual = new HashSet<>();
+            r.forEachRemaining(row -> actual.add(Arrays.asList(row.get("group"), row.get("state"), row.get("count"))));
+            assertEquals(expected, actual);
+        });
+        assertFalse(expected.isEmpty());
+    }
+
+    @Test
+    public void testImpact_profile() throws Exception {
+        System.out.println("testImpact_profile...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        String start = "MATCH (loc:Location {name:'loc1'}), (s:X {name:'START'}) ";
+        for (String options : Arrays.asList("", "worklist", "severity", "scc", "stream", "kernel")) {
+            Map<String, Object> params = Map.of("options", options);
+            long[] resultCount = new long[1];
+            testResult(db, start + "CALL neo4j.impact.compute([loc,s], null, '10hops,60s,1000results', $options) yield node RETURN count(node) as count", params,
+                    r -> resultCount[0] = (Long) r.next().get("count"));
+            testResult(db, start + "CALL neo4j.impact.profile([loc,s], null, '10hops,60s,1000results', $options) yield engine, results, evaluations, " +
+                            "nodesEvaluated, maxEvaluationsPerNode, relationshipsRead, propertyReads, pathsExpanded, peakMemoryBytes " +
+                            "RETURN *", params,
+                    r -> {
+                        Map<String, Object> row = r.next();
+                        assertEquals(options, resultCount[0], row.get("results"));
+                        //every impacted node is evaluated, at least once
+                        assertEquals(options, resultCount[0] - 2, row.get("nodesEvaluated"));
+                        assertTrue(options, (Long) row.get("evaluations") >= (Long) row.get("nodesEvaluated"));
+                        assertTrue(options, (Long) row.get("maxEvaluationsPerNode") >= 1);
+                        assertTrue(options, (Long) row.get("relationshipsRead") > 0);
+                        assertTrue(options, (Long) row.get("propertyReads") > 0);
+                        assertEquals(options, row.get("engine").equals("traversal"), (Long) row.get("pathsExpanded") > 0);
+                        assertTrue(options, (Long) row.get("peakMemoryBytes") > 0);
+                    });
+        }
+        testResult(db, start + "CALL neo4j.impact.profile([loc,s], null, '2hops,3results', $options) yield resultLimitPrunes RETURN resultLimitPrunes",
+                Map.of("options", "worklist"), r -> assertTrue((Long) r.next().get("resultLimitPrunes") > 0));
+
+        //every call is counted in the metrics
+        Map<String, Long> before = new HashMap<>();
+        testResult(db, "CALL neo4j.impact.metrics() yield name, value RETURN name, value", null,
+                r -> r.forEachRemaining(row -> before.put((String) row.get("name"), (Long) row.get("value"))));
+        testResult(db, start + "CALL neo4j.impact.compute([loc,s]) yield node RETURN count(node) as count", null, r -> r.next());
+        testResult(db, "CALL neo4j.impact.metrics() yield name, value RETURN name, value", null, r -> {
+            Map<String, Long> after = new HashMap<>();
+            r.forEachRemaining(row -> after.put((String) row.get("name"), (Long) row.get("value")));
+            assertEquals(before.get("calls") + 1, (long) after.get("calls"));
+            assertTrue(after.get("relationshipsRead") > before.get("relationshipsRead"));
+        });
+    }
+
+    @Test
+    public void testImpact_cache() throws Exception {
+        System.out.println("testImpact_cache...");
+        db.executeTransactionally(SETUP_NETWORK);
+        String start = "MATCH (loc:Location {name:'loc1'}) ";
+        String compute = start + "CALL neo4j.impact.compute(loc, null, '10hops,60s,1000results', 'worklist,cache') yield node, state RETURN node, state";
+        String profile = start + "CALL neo4j.impact.profile(loc, null, '10hops,60s,1000results', 'worklist,cache') yield engine RETURN engine";
+        Map<String, String> expected = new HashMap<>();
+        testResult(db, compute, null, r -> expected.putAll(resultStates(r)));
+        assertEquals("AT_RISK", expected.get("circ"));
+        //same call : returned from the cache
+        testResult(db, profile, null, r -> assertEquals("cache", r.next().get("engine")));
+        testResult(db, compute, null, r -> assertEquals(expected, resultStates(r)));
+        //other limits : computed
+        testResult(db, start + "CALL neo4j.impact.profile(loc, null, '2hops', 'worklist,cache') yield engine RETURN engine", null,
+                r -> assertEquals("worklist", r.next().get("engine")));
+
+        //commits of other relationship types don't invalidate it
+        db.executeTransactionally("CREATE (:Other)-[:OTHER]->(:Other)");
+        testResult(db, profile, null, r -> assertEquals("cache", r.next().get("engine")));
+        //changes of impact properties do
+        db.executeTransactionally("MATCH ()-[r:IMPACTS {impact_propagation: 'PROTECTION'}]->() REMOVE r.impact_propagation");
+        testResult(db, compute, null, r -> assertImpactResult_nodeState(r, "circ", "FAILED"));
+        testResult(db, profile, null, r -> assertEquals("cache", r.next().get("engine")));
+        //and so do new impact relationships
+        db.executeTransactionally("MATCH (e2e:Circuit {name:'e2e'}) CREATE (e2e)-[:IMPACTS]->(:Service {name:'svc'})");
+        testResult(db, compute, null, r -> assertEquals("FAILED", resultStates(r).get("svc")));
+        //changes of the calling transaction aren't cached
+        testResult(db, "CREATE (:Tmp) WITH 1 AS one " + profile, null, r -> assertEquals("worklist", r.next().get("engine")));
+
+        testResult(db, "CALL neo4j.impact.cache.stats() yield name, value RETURN name, value", null, r -> {
+            Map<String, Long> stats = new HashMap<>();
+            r.forEachRemaining(row -> stats.put((String) row.get("name"), (Long) row.get("value")));
+            assertEquals(4L, (long) stats.get("hits"));
+            assertEquals(2L, (long) stats.get("invalidations"));
+            assertEquals(2L, (long) stats.get("entries"));
+        });
+        testResult(db, "CALL neo4j.impact.cache.clear() yield value RETURN value", null, r -> assertEquals(2L, r.next().get("value")));
+
+        //calls stopped by their result limit aren't cached
+        String limited = start + "CALL neo4j.impact.profile(loc, null, '3results', 'worklist,cache') yield engine RETURN engine";
+        testResult(db, limited, null, r -> assertEquals("worklist", r.next().get("engine")));
+        testResult(db, limited, null, r -> assertEquals("worklist", r.next().get("engine")));
+
+        //results read with the privileges of a user aren't returned to another user, or to another access mode
+        List<Pair<RelationshipType, Direction>> relsAndDirs = List.of(Pair.of(RelationshipType.withName("IMPACTS"), Direction.OUTGOING));
+        long[] limits = {10, 60, 1000, 1, -1};
+        ImpactOptions options = ImpactOptions.parse("worklist,cache");
+        SecurityContext alice = new SecurityContext(user("alice"), AccessMode.Static.READ);
+        assertEquals(new ImpactCache.Key(new long[]{1, 2}, relsAndDirs, limits, options, alice),
+                new ImpactCache.Key(new long[]{2, 1}, relsAndDirs, limits, options, new SecurityContext(user("alice"), AccessMode.Static.READ)));
+        assertNotEquals(new ImpactCache.Key(new long[]{1, 2}, relsAndDirs, limits, options, alice),
+                new ImpactCache.Key(new long[]{1, 2}, relsAndDirs, limits, options, new SecurityContext(user("bob"), AccessMode.Static.READ)));
+        assertNotEquals(new ImpactCache.Key(new long[]{1, 2}, relsAndDirs, limits, options, alice),
+                new ImpactCache.Key(new long[]{1, 2}, relsAndDirs, limits, options, new SecurityContext(user("alice"), AccessMode.Static.FULL)));
+    }
+
+    private static AuthSubject user(String username) {
+        return new AuthSubject() {
+            @Override
+            public void logout() { }
+
+            @Override
+            public AuthenticationResult getAuthenticationResult() {
+                return AuthenticationResult.SUCCESS;
+            }
+
+            @Override
+            public void setPasswordChangeNoLongerRequired() { }
+
+            @Override
+            public boolean hasUsername(String name) {
+                return username.equals(name);
+            }
+
+            @Override
+            public String username() {
+                return username;
+            }
+        };
+    }
+
+    @Test
+    public void testImpact_computeAndWrite() throws Exception {
+        System.out.println("testImpact_computeAndWrite...");
+        db.executeTransactionally(SETUP_NETWORK);
+        String write = "MATCH (start {name: $name}) CALL neo4j.impact.computeAndWrite(start, null, '10hops,60s,1000results', $options, 'impact_state', 3, 2) " +
+                "yield impactedCount, writtenCount, unchangedCount, clearedCount, batchCount " +
+                "RETURN [impactedCount, writtenCount, unchangedCount, clearedCount, batchCount] as counts";
+        String written = "MATCH (n) WHERE n.impact_state IS NOT NULL RETURN n as node, n.impact_state as state";
+        String compute = "MATCH (start {name: $name}) CALL neo4j.impact.compute(start, null, '10hops,60s,1000results', $options) " +
+                "yield node, state RETURN node, state";
+        Map<String, Object> loc = Map.of("name", "loc1", "options", "");
+        Map<String, Object> b = Map.of("name", "B", "options", "worklist");
+        Map<String, String> locStates = new HashMap<>();
+        Map<String, String> bStates = new HashMap<>();
+        testResult(db, compute, loc, r -> locStates.putAll(resultStates(r)));
+        testResult(db, compute, b, r -> bStates.putAll(resultStates(r)));
+        long locCount = locStates.size();
+        long bCount = bStates.size();
+
+        testResult(db, write, loc, r -> assertEquals(List.of(locCount, locCount, 0L, 0L, (locCount + 2) / 3), r.next().get("counts")));
+        testResult(db, written, null, r -> assertEquals(locStates, resultStates(r)));
+        //same states : nothing written
+        testResult(db, write, loc, r -> assertEquals(List.of(locCount, 0L, locCount, 0L, (locCount + 2) / 3), r.next().get("counts")));
+        //states of the previous run that aren't impacted anymore are removed
+        long changed = bStates.entrySet().stream().filter(e -> !e.getValue().equals(locStates.get(e.getKey()))).count();
+        long cleared = locStates.keySet().stream().filter(name -> !bStates.containsKey(name)).count();
+        assertTrue(cleared > 0);
+        testResult(db, write, b, r -> assertEquals(List.of(bCount, changed, bCount - changed, cleared, (bCount + cleared + 2) / 3), r.next().get("counts")));
+        testResult(db, written, null, r -> assertEquals(bStates, resultStates(r)));
+
+        //the batches can't wait for the locks of the calling transaction
+        try {
+            testResult(db, "CREATE (:Tmp) WITH 1 AS one " + write, loc, r -> r.next());
+            fail("computeAndWrite in a transaction with changes");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("transaction with changes"));
+        }
+    }
+
+    @Test
+    public void testImpact_projection() throws Exception {
+        System.out.println("testImpact_projection...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        testResult(db, "CALL neo4j.impact.projection.estimate() yield relationshipCount, memoryBytes RETURN relationshipCount, memoryBytes", null,
+                r -> assertEquals(20L, r.next().get("relationshipCount")));
+        testResult(db, "CALL neo4j.impact.projection.create('network') yield name, nodeCount, relationshipCount RETURN name, nodeCount, relationshipCount", null,
+                r -> {
+                    Map<String, Object> row = r.next();
+                    assertEquals("network", row.get("name"));
+                    assertEquals(20L, row.get("nodeCount"));
+                    assertEquals(20L, row.get("relationshipCount"));
+                });
+        testResult(db, "CALL neo4j.impact.projection.list() yield name RETURN collect(name) as names", null,
+                r -> assertEquals(List.of("network"), r.next().get("names")));
+        try {
+            //the projection is the same as the database
+            assertSameResults(db, "MATCH (loc:Location {name:'loc1'}), (p:Port {name:'X-1-1'}) " +
+                    "CALL neo4j.impact.compute([loc,p], null, '10hops,60s,1000results', $options) yield node, state " +
+                    "RETURN  node, state", "projection:network", "scc,projection:network");
+            assertSameResults(db, "MATCH (s:X {name:'START'}) " +
+                    "CALL neo4j.impact.compute(s, null, '10hops,60s,1000results', $options) yield node, state " +
+                    "RETURN  node, state", "projection:network", "scc,projection:network");
+            assertSameResults(db, "MATCH (loc:Location {name:'loc1'}) " +
+                    "CALL neo4j.impact.compute(loc, null, '3hops,4threads', $options) yield node, state " +
+                    "RETURN  node, state", "projection:network");
+            Map<Long, Object> expected = new HashMap<>();
+            String criticality = "CALL neo4j.impact.criticality(null, '60s', $options) yield node, failedCount, degradedCount, atRiskCount " +
+                    "RETURN id(node) as id, [failedCount, degradedCount, atRiskCount] as counts";
+            testResult(db, criticality, Map.of("options", ""), r -> r.forEachRemaining(row -> expected.put((Long) row.get("id"), row.get("counts"))));
+            testResult(db, criticality, Map.of("options", "projection:network"), r -> {
+                Map<Long, Object> actual = new HashMap<>();
+                r.forEachRemaining(row -> actual.put((Long) row.get("id"), row.get("counts")));
+                assertEquals(expected, actual);
+            });
+        } finally {
+            testResult(db, "CALL neo4j.impact.projection.drop('network') yield name RETURN name", null,
+                    r -> assertEquals("network", r.next().get("name")));
+        }
+        try {
+            testResult(db, "MATCH (loc:Location {name:'loc1'}) " +
+                            "CALL neo4j.impact.compute(loc, null, '3hops', 'projection:network') yield node, state " +
+                            "RETURN  node, state", null,
+                    r -> assertImpactResult_resultCount(r, 9));
+            fail("dropped projection should be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("projection 'network' doesn't exist"));
+        }
+    }
+
+    @Test
+    public void testImpact_index() throws Exception {
+        System.out.println("testImpact_index...");
+        db.executeTransactionally(SETUP_NETWORK);
+        testResult(db, "CALL neo4j.impact.index.create('outage', 'Down') yield failedCount, impactedCount RETURN failedCount, impactedCount", null,
+                r -> assertEquals(0L, r.next().get("impactedCount")));
+        try {
+            //each commit updates the index : same results as a full computation from the failed nodes
+            for (String change : new String[]{
+                    "MATCH (n {name:'loc1'}) SET n:Down",
+                    "MATCH (n {name:'X-1-1'}) SET n:Down",
+                    "MATCH (:Card {name:'A-C1'})-[r:IMPACTS]->(:Port {name:'A-C1-1'}) DELETE r",
+                    "MATCH (c:Circuit {name:'circ'}), (l:Link {name:'protection link A-B'}) CREATE (c)-[:IMPACTS]->(l)",
+                    "MATCH (:Link {name:'link A-B'})-[r:IMPACTS]->() SET r.impact_propagation = 'MOST_SEVERE'",
+                    "MATCH (:Circuit {name:'circ'})-[r:IMPACTS]->(:Link) DELETE r",
+                    "MATCH (n {name:'loc1'}) REMOVE n:Down",
+                    "MATCH (a:Card {name:'A-C1'}), (p:Port {name:'A-C1-1'}) CREATE (a)-[:IMPACTS]->(p)",
+                    "MATCH (n {name:'A'}) SET n:Down",
+                    "MATCH (n {name:'X-1-1'}) DETACH DELETE n"}) {
+                db.executeTransactionally(change);
+                Map<String, String> expected = new HashMap<>();
+                testResult(db, "MATCH (n:Down) WITH collect(n) as starts " +
+                                "CALL neo4j.impact.compute(starts, null, '60s', 'worklist') yield node, state RETURN node, state", null,
+                        r -> expected.putAll(resultStates(r)));
+                testResult(db, "CALL neo4j.impact.index.get('outage') yield node, state RETURN node, state", null,
+                        r -> assertEquals(change, expected, resultStates(r)));
+            }
+            testResult(db, "CALL neo4j.impact.index.list() yield name, updateCount, lastError RETURN name, updateCount, lastError", null,
+                    r -> {
+                        Map<String, Object> row = r.next();
+                        assertEquals("outage", row.get("name"));
+                        assertEquals(10L, row.get("updateCount"));
+                        assertNull(row.get("lastError"));
+                    });
+        } finally {
+            testResult(db, "CALL neo4j.impact.index.drop('outage')", null, r -> assertEquals("outage", r.next().get("name")));
+        }
+    }
+
+    @Test
+    public void testImpact_index_listener() throws Exception {
+        System.out.println("testImpact_index_listener...");
+        db.executeTransactionally(SETUP_NETWORK);
+        //one listener per database, whatever the number of indexes : each commit updates each index once
+        testResult(db, "CALL neo4j.impact.index.create('down', 'Down') yield name RETURN name", null, r -> r.next());
+        testResult(db, "CALL neo4j.impact.index.create('failed', 'Failed') yield name RETURN name", null, r -> r.next());
+        try {
+            db.executeTransactionally("MATCH (n {name:'loc1'}) SET n:Down:Failed");
+            testResult(db, "CALL neo4j.impact.index.list() yield name, updateCount RETURN name, updateCount ORDER BY name", null, r -> {
+                assertEquals(Map.of("name", "down", "updateCount", 1L), r.next());
+                assertEquals(Map.of("name", "failed", "updateCount", 1L), r.next());
+            });
+        } finally {
+            testResult(db, "CALL neo4j.impact.index.drop('down')", null, r -> r.next());
+            testResult(db, "CALL neo4j.impact.index.drop('failed')", null, r -> r.next());
+        }
+    }
+
+    @Test
+    public void testImpact_reachability() throws Exception {
+        System.out.println("testImpact_reachability...");
+        db.executeTransactionally(SETUP_NETWORK);
+        testResult(db, "CALL neo4j.impact.reachability.create('upstream') yield nodeCount, componentCount, buildCount " +
+                        "RETURN nodeCount, componentCount, buildCount", null,
+                r -> {
+                    Map<String, Object> row = r.next();
+                    assertEquals(16L, row.get("nodeCount"));
+                    assertEquals(16L, row.get("componentCount"));
+                    assertEquals(1L, row.get("buildCount"));
+                });
+        try {
+            testResult(db, "MATCH (n {name:'e2e'}) CALL neo4j.impact.reachability.upstream('upstream', n) yield node " +
+                            "RETURN node.name as name ORDER BY name", null,
+                    r -> assertEquals(Arrays.asList("A", "A-C1", "A-C1-1", "B", "B-C1", "B-C1-1", "X-1-1", "circ", "link A-B",
+                            "loc1", "next circ", "prev circ", "protection link A-B"),
+                            r.stream().map(row -> row.get("name")).collect(Collectors.toList())));
+            String canImpact = "MATCH (a {name:$from}), (b {name:$to}) " +
+                    "CALL neo4j.impact.reachability.canImpact('upstream', a, b) yield canImpact RETURN canImpact";
+            testResult(db, canImpact, Map.of("from", "loc1", "to", "e2e"), r -> assertEquals(true, r.next().get("canImpact")));
+            testResult(db, canImpact, Map.of("from", "A-C1-2", "to", "e2e"), r -> assertEquals(false, r.next().get("canImpact")));
+            testResult(db, canImpact, Map.of("from", "e2e", "to", "loc1"), r -> assertEquals(false, r.next().get("canImpact")));
+
+            //created relationship : inserted in the labels after the commit
+            db.executeTransactionally("MATCH (p:Port {name:'A-C1-2'}), (c:Circuit {name:'next circ'}) CREATE (p)-[:IMPACTS]->(c)");
+            testResult(db, canImpact, Map.of("from", "A-C1-2", "to", "e2e"), r -> assertEquals(true, r.next().get("canImpact")));
+            //deleted relationship : built again when read
+            db.executeTransactionally("MATCH (:NE {name:'A'})-[r:IMPACTS]->(:Card) DELETE r");
+            testResult(db, "CALL neo4j.impact.reachability.list() yield name, stale, insertCount RETURN name, stale, insertCount", null,
+                    r -> {
+                        Map<String, Object> row = r.next();
+                        assertEquals("upstream", row.get("name"));
+                        assertEquals(true, row.get("stale"));
+                        assertEquals(1L, row.get("insertCount"));
+                    });
+            testResult(db, canImpact, Map.of("from", "A", "to", "e2e"), r -> assertEquals(false, r.next().get("canImpact")));
+            testResult(db, canImpact, Map.of("from", "loc1", "to", "e2e"), r -> assertEquals(true, r.next().get("canImpact")));
+            testResult(db, "CALL neo4j.impact.reachability.list() yield stale, buildCount, memoryBytes RETURN stale, buildCount, memoryBytes", null,
+                    r -> {
+                        Map<String, Object> row = r.next();
+                        assertEquals(false, row.get("stale"));
+                        assertEquals(2L, row.get("buildCount"));
+                        assertTrue((Long) row.get("memoryBytes") > 0);
+                    });
+        } finally {
+            testResult(db, "CALL neo4j.impact.reachability.drop('upstream')", null, r -> assertEquals("upstream", r.next().get("name")));
+        }
+    }
+
+    @Test
+    public void testImpact_session() throws Exception {
+        System.out.println("testImpact_session...");
+        db.executeTransactionally(SETUP_NETWORK);
+        testResult(db, "CALL neo4j.impact.session.create('incident')", null, r -> assertEquals("incident", r.next().get("name")));
+        try {
+            List<String> failed = new ArrayList<>();
+            Map<String, String> previous = new HashMap<>();
+            for (String step : new String[]{"fail X-1-1", "fail A-C1", "fail A", "fail B-C1-1", "recover A-C1", "recover X-1-1", "recover A"}) {
+                String[] operation = step.split(" ");
+                if (operation[0].equals("fail")) failed.add(operation[1]); else failed.remove(operation[1]);
+                //only the changes are returned
+                Map<String, List<String>> changes = new HashMap<>();
+                testResult(db, "MATCH (n {name: $name}) CALL neo4j.impact.session." + operation[0] + "('incident', n) yield node, previousState, state " +
+                                "RETURN node.name as name, previousState, state", Map.of("name", operation[1]),
+                        r -> r.forEachRemaining(row -> changes.put((String) row.get("name"),
+                                Arrays.asList((String) row.get("previousState"), (String) row.get("state")))));
+                //same states as a full computation
+                Map<String, String> expected = new HashMap<>();
+                testResult(db, "MATCH (n) WHERE n.name IN $failed WITH collect(n) as starts " +
+                                "CALL neo4j.impact.compute(starts, null, '60s', 'worklist') yield node, state RETURN node, state", Map.of("failed", failed),
+                        r -> expected.putAll(resultStates(r)));
+                testResult(db, "CALL neo4j.impact.session.get('incident') yield node, state RETURN node, state", null,
+                        r -> assertEquals(step, expected, resultStates(r)));
+                Map<String, List<String>> expectedChanges = new HashMap<>();
+                Set<String> names = new HashSet<>(expected.keySet());
+                names.addAll(previous.keySet());
+                for (String name : names) {
+                    if (!Objects.equals(previous.get(name), expected.get(name))) expectedChanges.put(name, Arrays.asList(previous.get(name), expected.get(name)));
+                }
+                assertEquals(step, expectedChanges, changes);
+                previous = expected;
+            }
+        } finally {
+            testResult(db, "CALL neo4j.impact.session.drop('incident')", null, r -> assertEquals("incident", r.next().get("name")));
+        }
+    }
+
+    @Test
+    public void testImpact_severity() throws Exception {
+        System.out.println("testImpact_severity...");
+        //mixed rules & cycles : same fixpoint as breadth-first, hop limits included
+        db.executeTransactionally("UNWIND range(0, 29) AS i CREATE (:G {name: 'G' + i, i: i})");
+        db.executeTransactionally("MATCH (a:G), (b:G) WHERE b.i IN [(a.i * 7 + 3) % 30, (a.i * 11 + 5) % 30, (a.i + 1) % 30] " +
+                "CREATE (a)-[:IMPACTS {impact_propagation: ['MOST_SEVERE', 'DEGRADATION', 'RISK_PROPAGATION', 'LEAST_SEVERE', 'PROTECTION'][a.i % 5], " +
+                "impact_group: a.i % 2}]->(b)");
+        for (String limits : new String[]{"60s", "2hops", "4hops"}) {
+            for (int i = 0; i < 30; i++) {
+                Map<String, String> expected = new HashMap<>();
+                String call = "MATCH (g:G {i: $i}) CALL neo4j.impact.compute(g, null, $limits, $options) yield node, state RETURN node, state";
+                testResult(db, call, Map.of("i", i, "limits", limits, "options", "worklist"), r -> expected.putAll(resultStates(r)));
+                testResult(db, call, Map.of("i", i, "limits", limits, "options", "severity"), r -> assertEquals(limits, expected, resultStates(r)));
+            }
+        }
+        //under a result limit, the failure chain is kept rather than the nearby AT_RISK nodes
+        db.executeTransactionally("CREATE (s:S {name: 'S'}) WITH s UNWIND range(1, 5) AS i " +
+                "CREATE (s)-[:IMPACTS {impact_propagation: 'RISK_PROPAGATION'}]->(:S {name: 'R' + i})");
+        db.executeTransactionally("MATCH (s:S {name: 'S'}) CREATE (s)-[:IMPACTS]->(:S {name: 'F1'})-[:IMPACTS]->(:S {name: 'F2'})-[:IMPACTS]->(:S {name: 'F3'})");
+        testResult(db, "MATCH (s:S {name: 'S'}) CALL neo4j.impact.compute(s, null, '10hops,4results', 'severity') yield node, state " +
+                        "RETURN node, state", null,
+                r -> {
+                    Map<String, String> states = resultStates(r);
+                    assertEquals(4, states.size());
+                    assertEquals("FAILED", states.get("F3"));
+                });
+    }
+
+    @Test
+    public void testImpact_criticality() throws Exception {
+        System.out.println("testImpact_criticality...");
+        db.executeTransactionally(SETUP_NETWORK);
+        db.executeTransactionally(SETUP_ABC_LOOP);
+        //mixed rules & cycles, with chains of MOST_SEVERE relationships
+        db.executeTransactionally("UNWIND range(0, 29) AS i CREATE (:G {name: 'G' + i, i: i})");
+        db.executeTransactionally("MATCH (a:G), (b:G) WHERE b.i IN [(a.i * 7 + 3) % 30, (a.i * 11 + 5) % 30] " +
+                "CREATE (a)-[:IMPACTS {impact_propagation: ['MOST_SEVERE', 'DEGRADATION', 'RISK_PROPAGATION', 'LEAST_SEVERE', 'PROTECTION'][a.i % 5]}]->(b)");
+        db.executeTransactionally("MATCH (a:G) WHERE a.i < 10 CREATE (:G {name: 'HH' + a.i})-[:IMPACTS]->(:G {name: 'H' + a.i})-[:IMPACTS]->(a)");
+        for (String limits : new String[]{"60s", "3hops", "60s,4threads"}) {
+            Map<Long, List<Long>> actual = new HashMap<>();
+            testResult(db, "CALL neo4j.impact.criticality(null, $limits) yield node, failedCount, degradedCount, atRiskCount " +
+                            "RETURN id(node) as id, [failedCount, degradedCount, atRiskCount] as counts", Map.of("limits", limits),
+                    r -> r.forEachRemaining(row -> actual.put((Long) row.get("id"), (List<Long>) row.get("counts"))));
+            //every node with an impact relationship
+            testResult(db, "MATCH (n) WHERE (n)-[:IMPACTS]-() RETURN count(n) as count", null,
+                    r -> assertEquals(r.next().get("count"), (long) actual.size()));
+            for (Map.Entry<Long, List<Long>> entry : actual.entrySet()) {
+                testResult(db, "CALL neo4j.impact.compute($id, null, $limits, 'worklist') yield state " +
+                                "RETURN [sum(CASE state WHEN 'FAILED' THEN 1 ELSE 0 END), " +
+                                "sum(CASE state WHEN 'DEGRADED' THEN 1 ELSE 0 END), " +
+                                "sum(CASE state WHEN 'AT_RISK' THEN 1 ELSE 0 END)] as counts",
+                        Map.of("id", entry.getKey(), "limits", limits.replace(",4threads", "")),
+                        r -> assertEquals("node " + entry.getKey() + " with " + limits, r.next().get("counts"), entry.getValue()));
+            }
+        }
+    }
+
+    private void assertSameResults(GraphDatabaseService db, String call, String... optionsList) {
+        Map<String, String> expected = new HashMap<>();
+        testResult(db, call, Collections.singletonMap("options", ""), r -> expected.putAll(resultStates(r)));
+        for (String options : optionsList) {
+            testResult(db, call, Collections.singletonMap("options", options), r -> assertEquals(options, expected, resultStates(r)));
+        }
+    }
+    private Map<String, String> resultStates(Result r) {
+        Map<String, String> states = new HashMap<>();
+        for (Map<String, Object> map : Iterators.asList(r)) {
+            states.put(((Node) map.get("node")).getProperty("name").toString(), (String) map.get("state"));
+        }
+        return states;
+    }
     private void assert_Network(Result r, String e2eState) {
         assertImpactResult_nodeState(r, "e2e", e2eState);
     }
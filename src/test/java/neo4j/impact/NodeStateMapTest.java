@@ -0,0 +1,62 @@
+package neo4j.impact;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class NodeStateMapTest {
+
+    @Test
+    public void testPutGet() {
+        NodeStateMap states = new NodeStateMap();
+        assertNull(states.get(42));
+        assertEquals(Impact.State.WORKING, states.getOrDefault(42, Impact.State.WORKING));
+        states.put(42, Impact.State.AT_RISK);
+        states.put(0, Impact.State.FAILED);
+        states.put(42, Impact.State.DEGRADED);
+        assertEquals(2, states.size());
+        assertTrue(states.contains(0));
+        assertEquals(Impact.State.DEGRADED, states.get(42));
+        assertEquals(Impact.State.FAILED, states.get(0));
+    }
+
+    @Test
+    public void testResizeAndCursor() {
+        NodeStateMap states = new NodeStateMap();
+        Map<Long, Impact.State> expected = new HashMap<>();
+        for (long id = 0; id < 100_000; id += 7) {
+            Impact.State state = Impact.State.of((int) (id % 4));
+            states.put(id, state);
+            expected.put(id, state);
+        }
+        assertEquals(expected.size(), states.size());
+        Map<Long, Impact.State> actual = new HashMap<>();
+        StateStore.Cursor cursor = states.cursor();
+        while (cursor.next()) {
+            actual.put(cursor.nodeId(), cursor.state());
+        }
+        assertEquals(expected, actual);
+        assertFalse(states.contains(1));
+    }
+
+    @Test
+    public void testRemove() {
+        NodeStateMap states = new NodeStateMap();
+        Map<Long, Impact.State> expected = new HashMap<>();
+        for (long id = 0; id < 10_000; id++) {
+            states.put(id, Impact.State.of((int) (id % 4)));
+            expected.put(id, Impact.State.of((int) (id % 4)));
+        }
+        for (long id = 0; id < 10_000; id += 3) {
+            assertEquals(expected.remove(id), states.remove(id));
+        }
+        assertNull(states.remove(0));
+        assertEquals(expected.size(), states.size());
+        for (long id = 0; id < 10_000; id++) {
+            assertEquals(expected.get(id), states.get(id));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package neo4j.impact;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReachabilityLabelsTest {
+
+    @Test
+    public void testMatchesSearch() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int nodeCount = 2 + random.nextInt(40);
+            List<int[]> relationships = randomRelationships(random, nodeCount, random.nextInt(3 * nodeCount));
+            ReachabilityLabels labels = labels(nodeCount, relationships);
+            assertSameReachability(labels, nodeCount, relationships);
+
+            //relationships added afterwards, some of them creating cycles : built again
+            for (int[] relationship : randomRelationships(random, nodeCount + 5, 1 + random.nextInt(nodeCount))) {
+                relationships.add(relationship);
+                if (!labels.insert(id(relationship[0]), id(relationship[1]))) {
+                    labels = labels(nodeCount + 5, relationships);
+                }
+                assertSameReachability(labels, nodeCount + 5, relationships);
+            }
+        }
+    }
+
+    @Test
+    public void testUpstream() {
+        //0 -> 1 -> 2 <-> 3 -> 4, 5 -> 4
+        List<int[]> relationships = new ArrayList<>(List.of(new int[]{0, 1}, new int[]{1, 2}, new int[]{2, 3},
+                new int[]{3, 2}, new int[]{3, 4}, new int[]{5, 4}));
+        ReachabilityLabels labels = labels(6, relationships);
+        assertEquals(5, labels.componentCount());
+        assertArrayEquals(new long[]{id(0), id(1), id(2), id(3), id(5)}, sorted(labels.upstream(id(4))));
+        assertArrayEquals(new long[]{id(0), id(1), id(3)}, sorted(labels.upstream(id(2))));
+        assertArrayEquals(new long[0], labels.upstream(id(0)));
+        assertFalse(labels.canImpact(id(4), id(3)));
+        assertFalse(labels.canImpact(id(0), id(0)));
+        //unknown node
+        assertArrayEquals(new long[0], labels.upstream(id(9)));
+        assertTrue(labels.insert(id(9), id(0)));
+        assertTrue(labels.canImpact(id(9), id(4)));
+    }
+
+    private static void assertSameReachability(ReachabilityLabels labels, int nodeCount, List<int[]> relationships) {
+        for (int from = 0; from < nodeCount; from++) {
+            boolean[] reached = search(from, nodeCount, relationships);
+            IntArrayList expectedUpstream = new IntArrayList();
+            for (int to = 0; to < nodeCount; to++) {
+                if (from != to) assertEquals(from + " -> " + to, reached[to], labels.canImpact(id(from), id(to)));
+                if (from != to && search(to, nodeCount, relationships)[from]) expectedUpstream.add(to);
+            }
+            long[] expected = Arrays.stream(expectedUpstream.toArray()).mapToLong(ReachabilityLabelsTest::id).toArray();
+            assertArrayEquals("upstream of " + from, expected, sorted(labels.upstream(id(from))));
+        }
+    }
+
+    //nodes reached from 'from' through at least one relationship
+    private static boolean[] search(int from, int nodeCount, List<int[]> relationships) {
+        boolean[] reached = new boolean[nodeCount];
+        IntArrayList queue = IntArrayList.newListWith(from);
+        for (int i = 0; i < queue.size(); i++) {
+            for (int[] relationship : relationships) {
+                if (relationship[0] == queue.get(i) && !reached[relationship[1]]) {
+                    reached[relationship[1]] = true;
+                    queue.add(relationship[1]);
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static List<int[]> randomRelationships(Random random, int nodeCount, int count) {
+        List<int[]> relationships = new ArrayList<>();
+        for (int r = 0; r < count; r++) {
+            //mostly downwards, as impact graphs : a few cycles
+            int from = random.nextInt(nodeCount), to = random.nextInt(nodeCount);
+            if (from > to && random.nextInt(10) > 0) { int swap = from; from = to; to = swap; }
+            relationships.add(new int[]{from, to});
+        }
+        return relationships;
+    }
+
+    //node indexes in relationship order, as CsrImpactGraph.load
+    private static ReachabilityLabels labels(int nodeCount, List<int[]> relationships) {
+        int[] offsets = new int[nodeCount + 1];
+        for (int[] relationship : relationships) { offsets[relationship[0] + 1]++; }
+        for (int i = 0; i < nodeCount; i++) { offsets[i + 1] += offsets[i]; }
+        int[] positions = Arrays.copyOf(offsets, nodeCount);
+        int[] impactedNodes = new int[relationships.size()];
+        for (int[] relationship : relationships) { impactedNodes[positions[relationship[0]]++] = relationship[1]; }
+        long[] nodeIds = new long[nodeCount];
+        for (int i = 0; i < nodeCount; i++) { nodeIds[i] = id(i); }
+        return ReachabilityLabels.of(nodeIds, offsets, impactedNodes);
+    }
+
+    //sparse node ids
+    private static long id(int index) {
+        return 1000L + index * 7L;
+    }
+
+    private static long[] sorted(long[] ids) {
+        Arrays.sort(ids);
+        return ids;
+    }
+}
@@ -0,0 +1,54 @@
+package neo4j.impact;
+
+import org.junit.Test;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RelationshipSequenceExpanderTest {
+
+    @Test
+    public void testCompile() {
+        //one read for the types of a direction
+        assertEquals(List.of("INCOMING[A, B]"), reads("<A|<B"));
+        //duplicates & patterns covered by another are merged
+        assertEquals(List.of("BOTH[IMPACTS]"), reads("IMPACTS|IMPACTS>"));
+        assertEquals(List.of("OUTGOING[A]"), reads("A>|A>"));
+        assertEquals(List.of("BOTH[A]", "OUTGOING[B]"), reads("A>|<A|B>"));
+        //all types
+        assertEquals(List.of("BOTH[]"), reads("A>|>|<"));
+        assertEquals(List.of("OUTGOING[]", "INCOMING[A]"), reads(">|A|B>"));
+    }
+
+    @Test
+    public void testTypeDeclarations() {
+        //a leading colon is a plain type prefix
+        assertEquals("DEPENDS_ON", RelationshipTypeAndDirections.relationshipTypeFor(":DEPENDS_ON").name());
+        assertEquals("DEPENDS_ON", RelationshipTypeAndDirections.relationshipTypeFor("<:DEPENDS_ON").name());
+        assertFalse(RelationshipTypeAndDirections.relationshipTypeFor("<:DEPENDS_ON") instanceof RuledRelationshipType);
+        assertEquals("INCOMING[DEPENDS_ON]", reads("<:DEPENDS_ON").get(0));
+        //a colon after the type name declares its rule
+        RelationshipType ruled = RelationshipTypeAndDirections.relationshipTypeFor("<:RUNS_ON:PROTECTION:rack1");
+        assertEquals("RUNS_ON:PROTECTION:rack1", ruled.toString());
+        assertEquals("RUNS_ON:PROTECTION", RelationshipTypeAndDirections.relationshipTypeFor("RUNS_ON:PROTECTION>").toString());
+        //colons of a quoted type name are part of it
+        RelationshipType quoted = RelationshipTypeAndDirections.relationshipTypeFor("`A:B`:PROTECTION");
+        assertEquals("A:B", quoted.name());
+        assertEquals("A:B:PROTECTION", quoted.toString());
+        assertEquals("A:B", RelationshipTypeAndDirections.relationshipTypeFor("<`A:B`").name());
+        assertFalse(RelationshipTypeAndDirections.relationshipTypeFor("<`A:B`") instanceof RuledRelationshipType);
+    }
+
+    private static List<String> reads(String step) {
+        List<String> reads = new ArrayList<>();
+        for (RelationshipSequenceExpander.Read read : RelationshipSequenceExpander.compile(RelationshipTypeAndDirections.parse(step))) {
+            List<String> types = new ArrayList<>();
+            for (RelationshipType type : read.types) { types.add(type.name()); }
+            reads.add(read.direction + types.toString());
+        }
+        return reads;
+    }
+}